@@ -1,36 +1,73 @@
 package org.danielli.common.batch;
 
-import com.google.common.collect.Lists;
+import com.google.common.base.Preconditions;
 import org.danielli.common.clock.Clock;
 
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.RandomAccess;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
- * 批量转发器（同步聚合单个元素到批量）。
+ * 批量转发器（同步聚合单个元素到批量）。非线程安全，每个线程使用单独的实例。
+ * <pre>
+ * 元素聚合在预分配的数组批量中，创建时分配两个批量交替使用：转发时把正在聚合的批量整个交给processor，
+ * 换另一个批量继续聚合下一批。processor拥有交给它的批量，可以直接保留而无需复制，
+ * 处理完后通过{@link #release(List)}归还（可在任意线程调用），转发器在下次换批量时复用；
+ * 没有已归还的批量时分配新的批量，及时归还时稳定状态下不分配对象。
+ * 达到batchSize时转发；每checkInterval次添加检查一次时间，批量中第一个元素等待超过duration时转发，
+ * 默认每次添加都检查。空闲时通过{@link #flush()}转发剩余元素，或通过{@link #flushIfExpired()}由定时任务检查时间。
+ * </pre>
  *
  * @author Daniel Li
  * @since 8 August 2015
  */
 public class BatchForwarder<E> {
 
+    /**
+     * 空闲时会调用{@link #flush()}的使用方（如刷新器的BatchEventListener）使用的时间检查间隔。
+     */
+    public static final int IDLE_FLUSH_CHECK_INTERVAL = 64;
+
+    private static final int SPARE_BATCHES = 2;
+
     protected final int batchSize;
     protected final long duration;
+    protected final int checkInterval;
     protected final Clock clock;
     protected final Processor<E> processor;
 
-    protected final List<E> events;
+    /**
+     * 正在聚合的批量，转发后替换为另一个批量。
+     */
+    protected List<E> events;
+
+    protected long batchEndTime;
 
-    protected volatile long batchEndTime;
+    /**
+     * 已归还的批量，处理线程归还、添加线程取出。
+     */
+    private final AtomicReferenceArray<Batch<E>> spares = new AtomicReferenceArray<>(SPARE_BATCHES);
+    private int sinceCheck;
 
     public BatchForwarder(int batchSize, long duration, TimeUnit timeUnit, Clock clock, Processor<E> processor) {
-        this.events = Lists.newArrayListWithCapacity(batchSize);
+        this(batchSize, duration, timeUnit, 1, clock, processor);
+    }
+
+    public BatchForwarder(int batchSize, long duration, TimeUnit timeUnit, int checkInterval, Clock clock, Processor<E> processor) {
+        Preconditions.checkArgument(batchSize > 0);
+        Preconditions.checkArgument(checkInterval > 0);
         this.batchSize = batchSize;
         this.duration = timeUnit.toMillis(duration);
-        this.clock = clock;
-        this.processor = processor;
+        this.checkInterval = checkInterval;
+        this.clock = Preconditions.checkNotNull(clock);
+        this.processor = Preconditions.checkNotNull(processor);
 
-        this.batchEndTime = clock.currentTimeMillis() + this.duration;
+        this.spares.set(0, new Batch<>(this, batchSize));
+        this.events = new Batch<>(this, batchSize);
     }
 
     public void add(E event) {
@@ -38,29 +75,159 @@ public class BatchForwarder<E> {
     }
 
     public void add(E event, boolean force) {
+        if (events.isEmpty()) {
+            batchEndTime = clock.currentTimeMillis() + duration;
+        }
         doAdd(event);
         if (force || forward()) {
-            processor.process(events);
-            reset();
+            forwardEvents();
         }
     }
 
+    /**
+     * 转发剩余元素。
+     */
+    public void flush() {
+        if (!events.isEmpty()) {
+            forwardEvents();
+        }
+    }
+
+    /**
+     * 第一个元素等待超过duration时转发剩余元素，用于定时检查。
+     *
+     * @return 是否转发。
+     */
+    public boolean flushIfExpired() {
+        if (!events.isEmpty() && clock.currentTimeMillis() > batchEndTime) {
+            forwardEvents();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 未转发的元素个数。
+     */
+    public int size() {
+        return events.size();
+    }
+
     protected void doAdd(E event) {
         this.events.add(event);
     }
 
+    /**
+     * 换一个空批量聚合下一批，优先复用已归还的批量。
+     */
     protected void reset() {
-        this.events.clear();
-        this.batchEndTime = this.clock.currentTimeMillis() + this.duration;
+        Batch<E> batch = null;
+        for (int i = 0; i < SPARE_BATCHES && batch == null; i++) {
+            if (spares.get(i) != null) {
+                batch = spares.getAndSet(i, null);
+            }
+        }
+        this.events = batch != null ? batch : new Batch<>(this, batchSize);
+        this.sinceCheck = 0;
     }
 
     protected boolean forward() {
-        return this.events.size() > this.batchSize || this.clock.currentTimeMillis() > this.batchEndTime;
+        if (this.events.size() >= this.batchSize) {
+            return true;
+        }
+        if (++this.sinceCheck >= this.checkInterval) {
+            this.sinceCheck = 0;
+            return this.clock.currentTimeMillis() > this.batchEndTime;
+        }
+        return false;
+    }
+
+    private void forwardEvents() {
+        // 先换批量，processor在process中归还或继续添加都不影响交出的批量
+        List<E> events = this.events;
+        if (events instanceof Batch) {
+            ((Batch<E>) events).handedOut.set(true);
+        }
+        reset();
+        processor.process(events);
+    }
+
+    /**
+     * 归还转发器交给processor的批量，由产生它的转发器复用。归还后不能再访问，每个批量只能归还一次；
+     * 不是转发器产生的列表直接忽略。可在任意线程调用。
+     *
+     * @param events 批量。
+     */
+    public static void release(List<?> events) {
+        if (events instanceof Batch) {
+            ((Batch<?>) events).release();
+        }
     }
 
     public interface Processor<E> {
 
+        /**
+         * 处理一个批量，调用后批量归processor所有，处理完后可通过{@link BatchForwarder#release(List)}归还。
+         */
         void process(List<E> events);
 
     }
+
+    /**
+     * 预分配数组的批量。
+     */
+    private static class Batch<E> extends AbstractList<E> implements RandomAccess {
+
+        private final BatchForwarder<E> owner;
+        private final AtomicBoolean handedOut = new AtomicBoolean();
+        private Object[] elements;
+        private int size;
+
+        Batch(BatchForwarder<E> owner, int capacity) {
+            this.owner = owner;
+            this.elements = new Object[capacity];
+        }
+
+        void release() {
+            Preconditions.checkState(handedOut.compareAndSet(true, false), "batch is not handed out.");
+            clear();
+            for (int i = 0; i < SPARE_BATCHES; i++) {
+                if (owner.spares.compareAndSet(i, null, this)) {
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public boolean add(E element) {
+            // 子类可能推迟转发，超过batchSize时扩容
+            if (size == elements.length) {
+                elements = Arrays.copyOf(elements, size * 2);
+            }
+            elements[size++] = element;
+            modCount++;
+            return true;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E get(int index) {
+            if (index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return (E) elements[index];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public void clear() {
+            Arrays.fill(elements, 0, size, null);
+            size = 0;
+            modCount++;
+        }
+    }
 }
@@ -0,0 +1,109 @@
+package org.danielli.common.clock;
+
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 时钟服务。由后台线程按resolution更新当前时间，读取时只有一次volatile读，没有共享写。
+ * <pre>
+ * coarseNanoTime为true时同时缓存System.nanoTime()，精度同样为resolution。
+ * 未启动或已停止时直接返回System.currentTimeMillis()/System.nanoTime()。
+ * </pre>
+ *
+ * @author Daniel Li
+ * @since 19 October 2026
+ */
+public class ClockService implements Clock {
+
+    private static final long STOPPED = -1L;
+
+    private final long resolutionNanos;
+    private final boolean coarseNanoTime;
+
+    private volatile long current = STOPPED;
+    private volatile long nanoTime;
+    private volatile Thread updater;
+
+    public ClockService(long resolution, TimeUnit timeUnit, boolean coarseNanoTime) {
+        Preconditions.checkArgument(resolution > 0);
+        this.resolutionNanos = timeUnit.toNanos(resolution);
+        this.coarseNanoTime = coarseNanoTime;
+    }
+
+    /**
+     * 共享的默认时钟服务，精度1毫秒，首次使用时启动。
+     */
+    public static ClockService getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    public synchronized ClockService start() {
+        if (updater != null) {
+            return this;
+        }
+        update();
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (updater == Thread.currentThread()) {
+                    update();
+                    LockSupport.parkNanos(resolutionNanos);
+                }
+            }
+        }, "ClockService Updater Thread");
+        thread.setDaemon(true);
+        updater = thread;
+        thread.start();
+        return this;
+    }
+
+    public synchronized void stop() {
+        Thread thread = updater;
+        if (thread == null) {
+            return;
+        }
+        updater = null;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        current = STOPPED;
+    }
+
+    public boolean isRunning() {
+        return updater != null;
+    }
+
+    private void update() {
+        if (coarseNanoTime) {
+            nanoTime = System.nanoTime();
+        }
+        current = System.currentTimeMillis();
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        long current = this.current;
+        return current != STOPPED ? current : System.currentTimeMillis();
+    }
+
+    /**
+     * 粗粒度的System.nanoTime()，coarseNanoTime为false时直接返回System.nanoTime()。
+     */
+    public long nanoTime() {
+        if (coarseNanoTime && current != STOPPED) {
+            return nanoTime;
+        }
+        return System.nanoTime();
+    }
+
+    private static class DefaultHolder {
+
+        private static final ClockService INSTANCE = new ClockService(1, TimeUnit.MILLISECONDS, false).start();
+
+    }
+}
@@ -0,0 +1,41 @@
+package org.danielli.common.concurrent;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 共享的后台调度线程，刷新器的空闲检查（idleTimeout）和日志文件的后台刷新（maxFlushLatency）共用一个守护线程。
+ * 任务应尽快返回，不能阻塞；可能阻塞的工作（如磁盘IO）通过{@link #execute}交给共享的IO线程，不占用调度线程。
+ *
+ * @author Daniel Li
+ * @since 19 October 2026
+ */
+public final class SharedScheduler {
+
+    private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("shared-scheduler").setDaemon(true).build());
+    private static final ExecutorService IO_EXECUTOR = Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder().setNameFormat("shared-io-%d").setDaemon(true).build());
+
+    private SharedScheduler() {
+    }
+
+    /**
+     * 按固定间隔执行task，首次执行在period之后。
+     */
+    public static ScheduledFuture<?> schedule(Runnable task, long period, TimeUnit timeUnit) {
+        return EXECUTOR.scheduleWithFixedDelay(task, period, period, timeUnit);
+    }
+
+    /**
+     * 在IO线程中执行可能阻塞的task，空闲的IO线程一段时间后退出。
+     */
+    public static void execute(Runnable task) {
+        IO_EXECUTOR.execute(task);
+    }
+}
@@ -0,0 +1,123 @@
+package org.danielli.common.concurrent.async;
+
+import com.google.common.base.Preconditions;
+import com.lmax.disruptor.AlertException;
+import com.lmax.disruptor.Sequence;
+import com.lmax.disruptor.SequenceBarrier;
+import com.lmax.disruptor.WaitStrategy;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 自适应等待策略。先自旋spinTries次，再让出CPU yieldTries次，之后以1纳秒起、逐次翻倍至maxParkNanos的间隔睡眠，
+ * 空闲超过idleTimeout后在条件上阻塞。生产者只在有消费者阻塞时才加锁唤醒。
+ * <pre>
+ * 只有等待生产者（cursor）时才会阻塞；等待前置消费者时只睡眠，前置消费者不会唤醒阻塞的线程。
+ * 生产者发布与消费者阻塞之间没有全内存屏障，极端情况下唤醒可能丢失，阻塞线程每idleTimeout会自行检查一次。
+ * </pre>
+ *
+ * @author Daniel Li
+ * @since 19 October 2026
+ */
+public final class AdaptiveWaitStrategy implements WaitStrategy {
+
+    private final int spinTries;
+    private final int yieldTries;
+    private final long maxParkNanos;
+    private final long idleNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition processorNotifyCondition = lock.newCondition();
+    private final AtomicInteger sleepers = new AtomicInteger();
+
+    public AdaptiveWaitStrategy() {
+        this(100, 100, TimeUnit.MILLISECONDS.toNanos(1), TimeUnit.MILLISECONDS.toNanos(10), TimeUnit.NANOSECONDS);
+    }
+
+    public AdaptiveWaitStrategy(int spinTries, int yieldTries, long maxPark, long idleTimeout, TimeUnit timeUnit) {
+        Preconditions.checkArgument(spinTries >= 0 && yieldTries >= 0);
+        Preconditions.checkArgument(maxPark > 0 && idleTimeout > 0);
+        this.spinTries = spinTries;
+        this.yieldTries = yieldTries;
+        this.maxParkNanos = timeUnit.toNanos(maxPark);
+        this.idleNanos = timeUnit.toNanos(idleTimeout);
+    }
+
+    @Override
+    public long waitFor(long sequence, Sequence cursor, Sequence dependentSequence, SequenceBarrier barrier)
+            throws AlertException, InterruptedException {
+        long availableSequence;
+        int counter = 0;
+        long parkNanos = 1;
+        boolean parking = false;
+        long idleStart = 0;
+
+        while ((availableSequence = dependentSequence.get()) < sequence) {
+            barrier.checkAlert();
+
+            if (counter < spinTries) {
+                counter++;
+            } else if (counter < spinTries + yieldTries) {
+                counter++;
+                Thread.yield();
+            } else {
+                long now = System.nanoTime();
+                // 空闲起点与睡眠间隔分开记录，maxParkNanos为1时也会进入阻塞
+                if (!parking) {
+                    parking = true;
+                    idleStart = now;
+                } else if (now - idleStart >= idleNanos && cursor.get() < sequence) {
+                    block(sequence, cursor, barrier);
+                    counter = 0;
+                    parkNanos = 1;
+                    parking = false;
+                    continue;
+                }
+                LockSupport.parkNanos(parkNanos);
+                parkNanos = Math.min(parkNanos << 1, maxParkNanos);
+            }
+        }
+
+        return availableSequence;
+    }
+
+    private void block(long sequence, Sequence cursor, SequenceBarrier barrier) throws AlertException, InterruptedException {
+        lock.lock();
+        try {
+            sleepers.incrementAndGet();
+            try {
+                while (cursor.get() < sequence) {
+                    barrier.checkAlert();
+                    processorNotifyCondition.awaitNanos(idleNanos);
+                }
+            } finally {
+                sleepers.decrementAndGet();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 阻塞中的消费线程数。
+     */
+    int sleepers() {
+        return sleepers.get();
+    }
+
+    @Override
+    public void signalAllWhenBlocking() {
+        if (sleepers.get() != 0) {
+            lock.lock();
+            try {
+                processorNotifyCondition.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
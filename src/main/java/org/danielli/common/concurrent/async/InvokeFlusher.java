@@ -10,11 +10,23 @@ import com.lmax.disruptor.dsl.EventHandlerGroup;
 import com.lmax.disruptor.dsl.ProducerType;
 import org.danielli.common.batch.BatchForwarder;
 import org.danielli.common.clock.Clock;
+import org.danielli.common.concurrent.SharedScheduler;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * 异步刷新器，生产者/消费者模式（无锁队列）。同一事件被所有消费者消费，多消费者之间可控制消费顺序（通过Group）。批量”通知“模式。
@@ -24,16 +36,46 @@ import java.util.concurrent.TimeUnit;
  *  YieldingWaitStrategy: 忙循环等待，默认前100次只检测，之后让出CPU，等待下次调度；低延迟，平衡了资源占用；需要高性能和处理线程小于逻辑内核(开启超线程)推荐使用。
  *  SleepingWaitStrategy: 忙循环等待，默认前100次只检测，后100次让出CPU，等待下次调度，之后每次睡1纳秒；平衡了使用率，延迟不均衡。
  *  BlockingWaitStrategy: 锁和条件；CPU使用率最低，延迟最大。
+ *  AdaptiveWaitStrategy: 先自旋、再让出CPU、再逐步加长睡眠，空闲超过idleTimeout后使用锁和条件；生产者只在消费者阻塞时唤醒。负载高时延迟低，空闲时不占用CPU。
  * </pre>
  * <pre>
  * 生产者类型：
  *  SINGLE: 但生产者。
  *  MULTI: 多生产者。
+ *  设置idleTimeout时空闲事件由后台调度线程发布，是另一个生产者，只能使用MULTI，build()拒绝SINGLE。
  * </pre>
  * <pre>
  * 事件监听器：
  *  EventListener：接口，提供处理单个实体。
- *  BatchEventListener：抽象类，EventListener实现，提供聚合为批量。
+ *  BatchEventListener：抽象类，EventListener实现，提供聚合为批量，批次结束（endOfBatch）和关闭时转发剩余事件。
+ *  设置idleTimeout后，批量监听器中有未转发的事件时每idleTimeout发布一个空闲事件，各Group的批量监听器（包括条带化的）收到后转发剩余事件，
+ *  没有新事件时剩余事件也会在约idleTimeout内转发；没有未转发的事件时不发布，不会唤醒空闲的消费者。
+ *  SlotEventListener：抽象类，EventListener实现，可访问事件所在槽位，通过槽位附件在多个Group之间传递处理结果。
+ *  FlushableListener：接口，批次的最后一个槽位不交给监听器（批量写入时未填充的槽位、空闲事件）时，以flush()代替endOfBatch。
+ *  StripedEventListener：SlotEventListener实现，同一Group内的多个消费者按序号取模各自处理一部分事件。
+ * </pre>
+ * <pre>
+ * 添加方式：
+ *  add：RingBuffer已满时自旋等待（LockSupport.parkNanos(1)），关闭后通过onException报告。
+ *  tryAdd：RingBuffer已满时直接返回false。
+ *  offer：RingBuffer已满时在{@link Condition}上挂起，由最后一个Group在批次结束时唤醒；基于java.util.concurrent，虚拟线程挂起时不占用载体线程。
+ *  add(size, filler)/tryAdd(size, filler)：批量写入，一次申请连续序号、原地填充槽位、一次发布，减少逐条申请的CAS开销。
+ * </pre>
+ * <pre>
+ * 槽位清理（clearPolicy）：最后一个Group处理完后清除槽位中的引用，突发写入后已消费的事件不会因RingBuffer较大而长期无法回收。
+ *  NONE：不清除，直到槽位被覆盖；EVENT：清除事件；ALL（默认）：清除事件和附件，实现{@link Reusable}的附件调用release()后保留复用。
+ *  最后一个Group有多个消费者时，槽位中有一个计数，最后处理完的消费者清除。
+ * </pre>
+ * <pre>
+ * 扩容（maxBufferSize大于bufferSize时开启）：RingBuffer从bufferSize开始，写满时创建两倍大小的RingBuffer并切换，直到maxBufferSize，
+ * 低流量的刷新器只占用较小的RingBuffer（Disruptor在创建时分配全部槽位）。
+ *  切换后新的写入进入新RingBuffer，后台线程等待已进入旧RingBuffer的生产者发布完、旧消费者消费完后停止旧消费者，
+ *  新RingBuffer的消费者在旧消费者全部退出后才开始处理，事件顺序不变，监听器不会被并发调用。
+ *  扩容期间新RingBuffer也写满时不再扩容，等待或返回false。开启扩容后每次写入多一次计数（进入/退出当前RingBuffer）。
+ * </pre>
+ * <pre>
+ * 关闭：先拒绝新的写入，再等待最后一个Group追上已申请的序号（最多shutdownTimeout），之后停止消费线程并返回未消费的个数。
+ * 与关闭并发、在终止之后才发布的事件，add通过onException报告，tryAdd/offer返回false。
  * </pre>
  *
  * @param <E> 实体。
@@ -42,60 +84,111 @@ import java.util.concurrent.TimeUnit;
  */
 public class InvokeFlusher<E> {
 
-    private final Disruptor<Holder> disruptor;
+    private static final int RUNNING = 0;
+    private static final int DRAINING = 1;
+    private static final int TERMINATED = 2;
+    private static final long UNKNOWN = Long.MIN_VALUE;
+    private static final long MAX_DRAIN_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<InvokeFlusher.Holder> REMAINING = AtomicIntegerFieldUpdater.newUpdater(
+            InvokeFlusher.Holder.class, "remaining");
+
     private final List<EventListener<E>[]> listenerGroups;
-    private final EventTranslatorOneArg<Holder, E> eventTranslator;
     private final ExecutorService executorService;
-    private volatile RingBuffer<Holder> ringBuffer;
+    private final int threads;
+    private final long shutdownTimeoutNanos;
+    private final ReentrantLock capacityLock = new ReentrantLock();
+    private final Condition notFull = capacityLock.newCondition();
+    private final AtomicInteger capacityWaiters = new AtomicInteger();
+    private final List<BatchEventListener<E>> batchListeners = Lists.newArrayList();
+    private final ClearPolicy clearPolicy;
+    private final int lastGroupSize;
+    private final ProducerType producerType;
+    private final WaitStrategy waitStrategy;
+    private final int notifySize;
+    private final int maxBufferSize;
+    private final boolean growable;
+    private final AtomicBoolean growing = new AtomicBoolean();
+    private final ThreadFactory growThreadFactory;
+    private final ScheduledFuture<?> idleTask;
+    /**
+     * 尚未停止的Ring，包括扩容后等待消费完的旧Ring。关闭时逐个记录终止位置。
+     */
+    private final List<Ring> rings = new CopyOnWriteArrayList<>();
+    private volatile Ring ring;
+    private volatile int state = RUNNING;
 
     private InvokeFlusher(Builder<E> builder) {
-        this.executorService = Executors.newFixedThreadPool(builder.getThreads(), new ThreadFactoryBuilder().
+        this.threads = builder.getThreads();
+        this.executorService = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder().
                 setNameFormat("invokeflusher-" + builder.namePrefix + "-pool-%d").build());
 
-        EventFactory<Holder> eventFactory = new HolderEventFactory();
-
         this.listenerGroups = builder.listenerGroups;
-        this.eventTranslator = new HolderEventTranslator();
-
-        int bufferSize = builder.bufferSize;
-        ProducerType producerType = builder.producerType;
-        WaitStrategy waitStrategy = builder.waitStrategy;
-        Disruptor<Holder> disruptor = new Disruptor<>(eventFactory, bufferSize, executorService, producerType, waitStrategy);
-        disruptor.handleExceptionsWith(new HolderExceptionHandler());
-
-        final int notifySize = builder.notifySize;
-        List<EventHandler<Holder>[]> handlerGroups = Lists.transform(listenerGroups,
-                new Function<EventListener<E>[], EventHandler<Holder>[]>() {
-                    @Override
-                    public EventHandler<Holder>[] apply(EventListener<E>[] input) {
-                        @SuppressWarnings("unchecked") EventHandler<Holder>[] result = new EventHandler[input.length];
-                        for (int i = 0, length = input.length; i < length; i++) {
-                            result[i] = new HolderEventHandler(input[i], notifySize);
-                        }
-                        return result;
-                    }
-                });
+        this.shutdownTimeoutNanos = builder.shutdownTimeoutNanos;
+        this.clearPolicy = builder.clearPolicy;
+        this.lastGroupSize = listenerGroups.get(listenerGroups.size() - 1).length;
+        this.producerType = builder.producerType;
+        this.waitStrategy = builder.waitStrategy;
+        this.notifySize = builder.notifySize;
+        this.maxBufferSize = Math.max(builder.bufferSize, builder.maxBufferSize);
+        this.growable = maxBufferSize > builder.bufferSize;
+        this.growThreadFactory = growable ? new ThreadFactoryBuilder().setNameFormat("invokeflusher-" + builder.namePrefix + "-grow-%d")
+                .setDaemon(true).build() : null;
 
-        EventHandlerGroup<Holder> handlerGroup = disruptor.handleEventsWith(handlerGroups.get(0));
-        for (int i = 1, length = listenerGroups.size(); i < length; i++) {
-            handlerGroup = handlerGroup.then(handlerGroups.get(i));
+        for (EventListener<E>[] listeners : listenerGroups) {
+            for (EventListener<E> listener : listeners) {
+                BatchEventListener<E> batchListener = batchListener(listener);
+                if (batchListener != null) {
+                    batchListeners.add(batchListener);
+                }
+            }
         }
 
-        this.ringBuffer = disruptor.start();
-        this.disruptor = disruptor;
-    }
+        this.ring = new Ring(builder.bufferSize, null);
 
-    private static boolean hasAvailableCapacity(RingBuffer<?> ringBuffer) {
-        return !ringBuffer.hasAvailableCapacity(ringBuffer.getBufferSize());
+        if (builder.idleTimeoutNanos > 0 && !batchListeners.isEmpty()) {
+            this.idleTask = SharedScheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    publishIdle();
+                }
+            }, builder.idleTimeoutNanos, TimeUnit.NANOSECONDS);
+        } else {
+            this.idleTask = null;
+        }
     }
 
-    @SafeVarargs
-    private static <E> void process(List<EventListener<E>[]> listenerGroups, Throwable e, E... events) {
-        for (E event : events) {
-            process(listenerGroups, e, event);
+    /**
+     * 批量监听器中有未转发的事件时发布一个空闲事件，RingBuffer已满时跳过。
+     */
+    private void publishIdle() {
+        for (BatchEventListener<E> listener : batchListeners) {
+            if (listener.hasPending()) {
+                Ring ring = enter();
+                try {
+                    long sequence = tryNext(ring, 1);
+                    if (sequence >= 0) {
+                        ring.ringBuffer.get(sequence).setIdle();
+                        ring.ringBuffer.publish(sequence);
+                    }
+                } finally {
+                    exit(ring);
+                }
+                return;
+            }
         }
     }
 
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <E> EventListener<E>[] newListeners(int size) {
+        return new EventListener[size];
+    }
+
+    private static <E> BatchEventListener<E> batchListener(EventListener<E> listener) {
+        EventListener<E> target = listener instanceof StripedEventListener ? ((StripedEventListener<E>) listener).listener : listener;
+        return target instanceof BatchEventListener ? (BatchEventListener<E>) target : null;
+    }
+
     private static <E> void process(List<EventListener<E>[]> listenerGroups, Throwable e, E event) {
         for (EventListener<E>[] listeners : listenerGroups) {
             for (EventListener<E> listener : listeners) {
@@ -110,95 +203,436 @@ public class InvokeFlusher<E> {
         }
     }
 
-    public void add(E event) {
-        RingBuffer<Holder> temp = ringBuffer;
-        if (temp == null) {
-            process(this.listenerGroups, new IllegalStateException("distruptor is closed."), event);
-            return;
+    private static <E> void process(List<EventListener<E>[]> listenerGroups, Throwable e, int from, int to, Filler<? extends E> filler) {
+        for (int i = from; i < to; i++) {
+            process(listenerGroups, e, filler.fill(i));
         }
+    }
 
-        // 关闭后回产生NPE
-        try {
-            // 不使用临时变量，确保及时设置null
-            ringBuffer.publishEvent(eventTranslator, event);
-        } catch (NullPointerException e) {
-            process(this.listenerGroups, new IllegalStateException("distruptor is closed.", e), event);
+    private static IllegalStateException closed() {
+        return new IllegalStateException("distruptor is closed.");
+    }
+
+    /**
+     * 进入当前Ring，之后的申请、填充、发布都在这个Ring上，完成后调用{@link #exit}。不可扩容时直接返回。
+     */
+    private Ring enter() {
+        Ring ring = this.ring;
+        if (!growable) {
+            return ring;
+        }
+        for (; ; ) {
+            ring.producers.incrementAndGet();
+            // 与grow中先切换再检查producers对应，两者至少有一方看到对方的修改
+            Ring current = this.ring;
+            if (current == ring) {
+                return ring;
+            }
+            ring.producers.decrementAndGet();
+            ring = current;
         }
     }
 
-    @SafeVarargs
-    public final void add(E... events) {
-        RingBuffer<Holder> temp = ringBuffer;
-        if (temp == null) {
-            process(this.listenerGroups, new IllegalStateException("distruptor is closed."), events);
-            return;
+    private void exit(Ring ring) {
+        if (growable) {
+            ring.producers.decrementAndGet();
         }
+    }
 
-        // 关闭后回产生NPE
+    /**
+     * 申请n个连续序号，RingBuffer已满时自旋等待（LockSupport.parkNanos(1)），关闭后返回-1。
+     * 可扩容时先扩容，之后的写入进入新Ring，当前线程仍在旧Ring上等待空间。
+     */
+    private long next(Ring ring, int n) {
+        while (state == RUNNING) {
+            try {
+                return ring.ringBuffer.tryNext(n);
+            } catch (InsufficientCapacityException e) {
+                grow(ring);
+                LockSupport.parkNanos(1);
+            }
+        }
+        return -1;
+    }
+
+    private long tryNext(Ring ring, int n) {
+        if (state != RUNNING) {
+            return -1;
+        }
         try {
-            // 不使用临时变量，确保及时设置null
-            ringBuffer.publishEvents(eventTranslator, events);
-        } catch (NullPointerException e) {
-            process(this.listenerGroups, new IllegalStateException("distruptor is closed.", e), events);
+            return ring.ringBuffer.tryNext(n);
+        } catch (InsufficientCapacityException e) {
+            return -1;
         }
     }
 
-    public boolean tryAdd(E event) {
-        RingBuffer<Holder> temp = ringBuffer;
-        if (temp == null) {
+    /**
+     * full已满时扩容为两倍（不超过maxBufferSize）并切换，由后台线程停止旧Ring、启动新Ring。扩容期间不再扩容。
+     *
+     * @return 当前Ring是否已不是full，是则可在新Ring上重试。
+     */
+    private boolean grow(Ring full) {
+        if (!growable) {
+            return false;
+        }
+        if (ring != full) {
+            return true;
+        }
+        int bufferSize = full.ringBuffer.getBufferSize();
+        if (state != RUNNING || bufferSize >= maxBufferSize || growing.get()
+                || !growing.compareAndSet(false, true)) {
             return false;
         }
+        if (ring != full) {
+            growing.set(false);
+            return true;
+        }
+        final Ring retired = full;
+        // 新Ring在发布之前启动（Disruptor在start时把消费者序号设为当前cursor），其消费者在onStart中等待旧消费者退出
+        this.ring = new Ring((int) Math.min((long) bufferSize << 1, maxBufferSize), retired.stopped);
+        // offer中等待的生产者转到新Ring
+        signalNotFull();
+        growThreadFactory.newThread(new Runnable() {
+            @Override
+            public void run() {
+                retire(retired);
+            }
+        }).start();
+        return true;
+    }
 
-        // 关闭后会产生NPE
+    /**
+     * 等待已进入旧Ring的生产者退出、旧Ring消费完后停止旧消费者（onShutdown中转发批量监听器的剩余事件）。
+     */
+    private void retire(Ring retired) {
         try {
-            // 不使用临时变量，确保及时设置null
-            return ringBuffer.tryPublishEvent(eventTranslator, event);
-        } catch (NullPointerException e) {
-            return false;
+            long parkNanos = 1000;
+            boolean drained = false;
+            while (state != TERMINATED) {
+                if (retired.producers.get() == 0
+                        && retired.ringBuffer.getMinimumGatingSequence() >= retired.ringBuffer.getCursor()) {
+                    drained = true;
+                    break;
+                }
+                LockSupport.parkNanos(parkNanos);
+                parkNanos = Math.min(parkNanos << 1, MAX_DRAIN_PARK_NANOS);
+            }
+            retired.disruptor.halt();
+            // 未消费完时留给shutdown记录终止位置、统计丢失个数
+            if (drained) {
+                rings.remove(retired);
+            }
+        } finally {
+            growing.set(false);
+        }
+    }
+
+    /**
+     * 发布后检查，与关闭并发时，序号在所在Ring终止位置之后的事件不会再被消费。
+     *
+     * @return 区间末尾丢失的个数。
+     */
+    private int lost(Ring ring, long lo, long hi) {
+        if (state != TERMINATED) {
+            return 0;
+        }
+        return (int) Math.max(0, Math.min(hi - ring.terminatedCursor(), hi - lo + 1));
+    }
+
+    public void add(E event) {
+        Ring ring = enter();
+        try {
+            long sequence = next(ring, 1);
+            if (sequence < 0) {
+                process(this.listenerGroups, closed(), event);
+                return;
+            }
+            ring.ringBuffer.get(sequence).setValue(event);
+            ring.ringBuffer.publish(sequence);
+            if (lost(ring, sequence, sequence) != 0) {
+                process(this.listenerGroups, closed(), event);
+            }
+        } finally {
+            exit(ring);
         }
     }
 
+    @SafeVarargs
+    public final void add(E... events) {
+        add(Arrays.asList(events));
+    }
+
+    /**
+     * RingBuffer已满时返回false，可扩容时先扩容再重试。
+     */
+    public boolean tryAdd(E event) {
+        for (; ; ) {
+            Ring ring = enter();
+            try {
+                long sequence = tryNext(ring, 1);
+                if (sequence >= 0) {
+                    ring.ringBuffer.get(sequence).setValue(event);
+                    ring.ringBuffer.publish(sequence);
+                    return lost(ring, sequence, sequence) == 0;
+                }
+            } finally {
+                exit(ring);
+            }
+            if (!grow(ring)) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * 全部写入或全部不写入，个数不能超过bufferSize（可扩容时为maxBufferSize）。
+     */
     @SafeVarargs
     public final boolean tryAdd(E... events) {
-        RingBuffer<Holder> temp = ringBuffer;
-        if (temp == null) {
-            return false;
+        if (events.length == 0) {
+            return true;
         }
+        for (; ; ) {
+            Ring ring = enter();
+            try {
+                long hi = tryNext(ring, events.length);
+                if (hi >= 0) {
+                    fill(ring, hi - (events.length - 1), hi, 0, new ListFiller<>(Arrays.asList(events)));
+                    return lost(ring, hi - (events.length - 1), hi) == 0;
+                }
+            } finally {
+                exit(ring);
+            }
+            if (!grow(ring)) {
+                return false;
+            }
+        }
+    }
 
-        // 关闭后会产生NPE
-        try {
-            // 不使用临时变量，确保及时设置null
-            return ringBuffer.tryPublishEvents(eventTranslator, events);
-        } catch (NullPointerException e) {
-            return false;
+    /**
+     * 批量写入，每次通过一次next(n)申请连续的序号并直接填充到槽位，最后一次发布整个区间。超过bufferSize时分段申请。
+     * <pre>
+     * filler抛出异常时，已申请但未填充的槽位标记为未填充并照常发布，消费者跳过这些槽位，异常继续抛出。filler返回的null事件照常交给监听器。
+     * 关闭后未写入的事件通过onException报告，filler会被再次调用。
+     * </pre>
+     */
+    public void add(int size, Filler<? extends E> filler) {
+        int offset = 0;
+        while (offset < size) {
+            Ring ring = enter();
+            try {
+                int batchSize = Math.min(size - offset, ring.ringBuffer.getBufferSize());
+                long hi = next(ring, batchSize);
+                if (hi < 0) {
+                    process(this.listenerGroups, closed(), offset, size, filler);
+                    return;
+                }
+                long lo = hi - (batchSize - 1);
+                offset = fill(ring, lo, hi, offset, filler);
+                int lost = lost(ring, lo, hi);
+                if (lost != 0) {
+                    process(this.listenerGroups, closed(), offset - lost, size, filler);
+                    return;
+                }
+            } finally {
+                exit(ring);
+            }
         }
     }
 
-    public boolean isShutdown() {
-        return ringBuffer != null;
+    public void add(List<? extends E> events) {
+        add(events.size(), new ListFiller<>(events));
     }
 
-    public void shutdown() {
-        RingBuffer<Holder> temp = ringBuffer;
-        ringBuffer = null;
-        if (temp == null) {
-            return;
+    /**
+     * 尝试批量写入，分段申请，空间不足时停止。
+     *
+     * @return 成功写入的个数，即前多少个事件已写入。
+     */
+    public int tryAdd(int size, Filler<? extends E> filler) {
+        int offset = 0;
+        while (offset < size) {
+            Ring ring = enter();
+            try {
+                int batchSize = Math.min(size - offset, ring.ringBuffer.getBufferSize());
+                long hi = tryNext(ring, batchSize);
+                if (hi >= 0) {
+                    long lo = hi - (batchSize - 1);
+                    offset = fill(ring, lo, hi, offset, filler);
+                    int lost = lost(ring, lo, hi);
+                    if (lost != 0) {
+                        return offset - lost;
+                    }
+                    continue;
+                }
+            } finally {
+                exit(ring);
+            }
+            if (!grow(ring)) {
+                return offset;
+            }
         }
+        return offset;
+    }
+
+    public int tryAdd(List<? extends E> events) {
+        return tryAdd(events.size(), new ListFiller<>(events));
+    }
 
-        for (int i = 0; hasAvailableCapacity(temp) && i < 200; i++) {
+    private int fill(Ring ring, long lo, long hi, int offset, Filler<? extends E> filler) {
+        RingBuffer<Holder> ringBuffer = ring.ringBuffer;
+        long sequence = lo;
+        try {
+            for (; sequence <= hi; sequence++) {
+                ringBuffer.get(sequence).setValue(filler.fill(offset++));
+            }
+        } finally {
+            for (; sequence <= hi; sequence++) {
+                ringBuffer.get(sequence).setUnfilled();
+            }
+            ringBuffer.publish(lo, hi);
+        }
+        return offset;
+    }
+
+    /**
+     * 等待写入，RingBuffer已满时挂起当前线程，直到有可用空间、超时或关闭。
+     *
+     * @return 是否写入成功。
+     */
+    public boolean offer(E event, long timeout, TimeUnit timeUnit) throws InterruptedException {
+        if (tryAdd(event)) {
+            return true;
+        }
+
+        long nanos = timeUnit.toNanos(timeout);
+        capacityWaiters.incrementAndGet();
+        capacityLock.lockInterruptibly();
+        try {
+            while (!tryAdd(event)) {
+                if (state != RUNNING || nanos <= 0) {
+                    return false;
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+            return true;
+        } finally {
+            capacityLock.unlock();
+            capacityWaiters.decrementAndGet();
+        }
+    }
+
+    private void signalNotFull() {
+        if (capacityWaiters.get() > 0) {
+            capacityLock.lock();
             try {
-                Thread.sleep(50);
-            } catch (InterruptedException e) {
+                notFull.signalAll();
+            } finally {
+                capacityLock.unlock();
             }
         }
-        disruptor.shutdown();
+    }
+
+    public boolean isShutdown() {
+        return state != RUNNING;
+    }
+
+    /**
+     * 当前RingBuffer的大小，可扩容时随扩容变化。
+     */
+    public int getBufferSize() {
+        return ring.ringBuffer.getBufferSize();
+    }
+
+    /**
+     * 关闭。先拒绝新的写入，等待进行中的扩容完成、最后一个Group追上已申请的序号（最多shutdownTimeout），再停止消费线程。
+     *
+     * 超时后消费线程跳过剩余事件；若监听器阻塞导致消费线程在shutdownTimeout内仍未退出，返回值为估算值。
+     *
+     * @return 已写入但未被消费的事件个数，重复关闭返回0。
+     */
+    public long shutdown() {
+        synchronized (this) {
+            if (state != RUNNING) {
+                return 0;
+            }
+            state = DRAINING;
+        }
+        if (idleTask != null) {
+            idleTask.cancel(false);
+        }
+        signalNotFull();
+
+        boolean interrupted = false;
+        long deadline = System.nanoTime() + shutdownTimeoutNanos;
+        long parkNanos = 1000;
+        Ring ring = this.ring;
+        while (growing.get() || ring.ringBuffer.getMinimumGatingSequence() < ring.ringBuffer.getCursor()) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            LockSupport.parkNanos(Math.min(parkNanos, remaining));
+            parkNanos = Math.min(parkNanos << 1, MAX_DRAIN_PARK_NANOS);
+            if (Thread.interrupted()) {
+                interrupted = true;
+                break;
+            }
+            ring = this.ring;
+        }
+        // 之后消费线程跳过剩余事件，尽快退出；未消费完的旧Ring与当前Ring各自记录终止位置
+        state = TERMINATED;
+        for (Ring alive : rings) {
+            alive.disruptor.halt();
+            alive.terminate();
+        }
 
         executorService.shutdown();
         try {
-            executorService.awaitTermination(10L, TimeUnit.SECONDS);
+            executorService.awaitTermination(shutdownTimeoutNanos, TimeUnit.NANOSECONDS);
         } catch (InterruptedException ex) {
+            interrupted = true;
+        }
+        if (interrupted) {
             Thread.currentThread().interrupt();
         }
+
+        long lost = 0;
+        for (Ring alive : rings) {
+            long cursor = alive.terminatedCursor();
+            long ringLost = 0;
+            for (HolderEventHandler handler : alive.gatingHandlers) {
+                ringLost = Math.max(ringLost, handler.skipped + Math.max(0, cursor - handler.sequence.get()));
+            }
+            lost += ringLost;
+        }
+        return lost;
+    }
+
+    /**
+     * 批量写入时按下标提供事件，直接填充到申请到的槽位中，调用方无需构造数组。
+     *
+     * @author Daniel Li
+     * @since 19 October 2026
+     */
+    public interface Filler<E> {
+
+        E fill(int index);
+
+    }
+
+    private static class ListFiller<E> implements Filler<E> {
+
+        private final List<? extends E> events;
+
+        public ListFiller(List<? extends E> events) {
+            this.events = events;
+        }
+
+        @Override
+        public E fill(int index) {
+            return events.get(index);
+        }
     }
 
     public interface EventListener<E> {
@@ -208,16 +642,39 @@ public class InvokeFlusher<E> {
         void onEvent(E event, boolean endOfBatch) throws Exception;
     }
 
-    public static abstract class BatchEventListener<E> implements EventListener<E>, BatchForwarder.Processor<E> {
+    /**
+     * 批次结束时刷新。批次的最后一个槽位不交给监听器时调用flush()，代替endOfBatch为true的onEvent，在消费线程中调用。
+     *
+     * @author Daniel Li
+     * @since 19 October 2026
+     */
+    public interface FlushableListener {
+
+        void flush() throws Exception;
+
+    }
+
+    public static abstract class BatchEventListener<E> implements EventListener<E>, BatchForwarder.Processor<E>, FlushableListener {
 
         private final BatchForwarder<E> forwarder;
+        private volatile boolean pending;
 
         public BatchEventListener(int batchSize, int duration, TimeUnit timeUnit, Clock clock) {
-            forwarder = new BatchForwarder<>(batchSize, duration, timeUnit, clock, this);
+            forwarder = new BatchForwarder<>(batchSize, duration, timeUnit, BatchForwarder.IDLE_FLUSH_CHECK_INTERVAL, clock, this);
         }
 
+        /**
+         * 处理一个批量。events归监听器所有，可直接保留，处理完后调用{@link #release(List)}归还复用。
+         */
         public abstract void onEvents(List<E> events) throws Exception;
 
+        /**
+         * 归还onEvents收到的批量，可在任意线程调用，归还后不能再访问。不归还时转发器分配新的批量。
+         */
+        public void release(List<E> events) {
+            BatchForwarder.release(events);
+        }
+
         @Override
         public void process(List<E> events) {
             try {
@@ -230,15 +687,130 @@ public class InvokeFlusher<E> {
         @Override
         public final void onEvent(E event, boolean endOfBatch) throws Exception {
             forwarder.add(event, endOfBatch);
+            updatePending();
+        }
+
+        /**
+         * 转发剩余事件，在消费线程中调用。
+         */
+        @Override
+        public void flush() {
+            forwarder.flush();
+            updatePending();
+        }
+
+        boolean hasPending() {
+            return pending;
+        }
+
+        private void updatePending() {
+            // 只在状态变化时写volatile
+            boolean pending = forwarder.size() > 0;
+            if (pending != this.pending) {
+                this.pending = pending;
+            }
+        }
+    }
+
+    /**
+     * 槽位清理策略。
+     *
+     * @author Daniel Li
+     * @since 19 October 2026
+     */
+    public enum ClearPolicy {
+        /**
+         * 不清除，直到槽位被覆盖。
+         */
+        NONE,
+        /**
+         * 清除事件。
+         */
+        EVENT,
+        /**
+         * 清除事件和附件。
+         */
+        ALL
+    }
+
+    /**
+     * 随槽位复用的附件，清除槽位时调用release()释放其中的引用，附件本身保留。
+     *
+     * @author Daniel Li
+     * @since 19 October 2026
+     */
+    public interface Reusable {
+
+        void release();
+
+    }
+
+    /**
+     * 事件所在槽位。附件随槽位复用，由前置Group写入、后续Group读取。
+     *
+     * @author Daniel Li
+     * @since 19 October 2026
+     */
+    public interface Slot<E> {
+
+        E getEvent();
+
+        Object getAttachment();
+
+        void setAttachment(Object attachment);
+    }
+
+    public static abstract class SlotEventListener<E> implements EventListener<E> {
+
+        public abstract void onEvent(Slot<E> slot, long sequence, boolean endOfBatch) throws Exception;
+
+        @Override
+        public final void onEvent(E event, boolean endOfBatch) throws Exception {
+            throw new UnsupportedOperationException("Use onEvent(Slot, long, boolean) instead.");
+        }
+    }
+
+    public static class StripedEventListener<E> extends SlotEventListener<E> {
+
+        private final EventListener<E> listener;
+        private final int ordinal;
+        private final int stripes;
+
+        public StripedEventListener(EventListener<E> listener, int ordinal, int stripes) {
+            Preconditions.checkArgument(ordinal >= 0 && ordinal < stripes);
+            this.listener = Preconditions.checkNotNull(listener);
+            this.ordinal = ordinal;
+            this.stripes = stripes;
+        }
+
+        @Override
+        public void onException(Throwable e, long sequence, E event) {
+            listener.onException(e, sequence, event);
+        }
+
+        @Override
+        public void onEvent(Slot<E> slot, long sequence, boolean endOfBatch) throws Exception {
+            if (sequence % stripes != ordinal) {
+                return;
+            }
+            if (listener instanceof SlotEventListener) {
+                ((SlotEventListener<E>) listener).onEvent(slot, sequence, endOfBatch);
+            } else {
+                listener.onEvent(slot.getEvent(), endOfBatch);
+            }
         }
     }
 
     public static class Builder<E> {
         private ProducerType producerType = ProducerType.MULTI;
         private int bufferSize = 256 * 1024;
+        private int maxBufferSize = 0;
         private int notifySize = 50;
         private String namePrefix = "";
         private WaitStrategy waitStrategy = new YieldingWaitStrategy();
+        private long shutdownTimeoutNanos = TimeUnit.SECONDS.toNanos(10);
+        private long idleTimeoutNanos = 0;
+        private ClearPolicy clearPolicy = ClearPolicy.ALL;
         private List<EventListener<E>[]> listenerGroups = Lists.newArrayList();
 
         public Builder<E> setListenerGroups(List<EventListener<E>[]> listenerGroups) {
@@ -254,6 +826,21 @@ public class InvokeFlusher<E> {
             return this;
         }
 
+        /**
+         * 添加条带化Group，组内第i个消费者只处理序号取模为i的事件。
+         */
+        @SafeVarargs
+        public final Builder<E> addStripedListenerGroup(EventListener<E>... listenerGroup) {
+            Preconditions.checkNotNull(listenerGroup);
+            Preconditions.checkArgument(listenerGroup.length != 0);
+            EventListener<E>[] striped = newListeners(listenerGroup.length);
+            for (int i = 0, length = listenerGroup.length; i < length; i++) {
+                striped[i] = new StripedEventListener<>(listenerGroup[i], i, length);
+            }
+            this.listenerGroups.add(striped);
+            return this;
+        }
+
         public Builder<E> setNamePrefix(String namePrefix) {
             this.namePrefix = Preconditions.checkNotNull(namePrefix);
             return this;
@@ -275,12 +862,47 @@ public class InvokeFlusher<E> {
             return this;
         }
 
+        /**
+         * RingBuffer的最大大小（2的幂），大于bufferSize时开启扩容，RingBuffer从bufferSize开始按需扩容。默认0表示不扩容。
+         */
+        public Builder<E> setMaxBufferSize(int maxBufferSize) {
+            Preconditions.checkArgument(maxBufferSize == 0 || Integer.bitCount(maxBufferSize) == 1);
+            this.maxBufferSize = maxBufferSize;
+            return this;
+        }
+
         public Builder<E> setNotifySize(int notifySize) {
             Preconditions.checkArgument(notifySize > 0);
             this.notifySize = notifySize;
             return this;
         }
 
+        /**
+         * 关闭时等待消费完成的最长时间，默认10秒。
+         */
+        public Builder<E> setShutdownTimeout(long shutdownTimeout, TimeUnit timeUnit) {
+            Preconditions.checkArgument(shutdownTimeout >= 0);
+            this.shutdownTimeoutNanos = timeUnit.toNanos(shutdownTimeout);
+            return this;
+        }
+
+        /**
+         * 最后一个Group处理完后的槽位清理策略，默认为ALL。
+         */
+        public Builder<E> setClearPolicy(ClearPolicy clearPolicy) {
+            this.clearPolicy = Preconditions.checkNotNull(clearPolicy);
+            return this;
+        }
+
+        /**
+         * 批量监听器中剩余事件的最长等待时间，默认0表示不检查（只在endOfBatch和关闭时转发）。
+         */
+        public Builder<E> setIdleTimeout(long idleTimeout, TimeUnit timeUnit) {
+            Preconditions.checkArgument(idleTimeout >= 0);
+            this.idleTimeoutNanos = timeUnit.toNanos(idleTimeout);
+            return this;
+        }
+
         private int getThreads() {
             int i = 0;
             for (EventListener<E>[] listenerGroup : listenerGroups) {
@@ -291,46 +913,177 @@ public class InvokeFlusher<E> {
 
         public InvokeFlusher<E> build() {
             Preconditions.checkArgument(!listenerGroups.isEmpty());
+            Preconditions.checkArgument(idleTimeoutNanos == 0 || producerType == ProducerType.MULTI,
+                    "idleTimeout requires ProducerType.MULTI.");
             return new InvokeFlusher<>(this);
         }
     }
 
-    private class Holder {
+    /**
+     * 一个RingBuffer及其消费者，创建时启动，扩容时整体替换。
+     */
+    private class Ring {
+
+        private final CountDownLatch stopped = new CountDownLatch(threads);
+        private final List<HolderEventHandler> gatingHandlers = Lists.newArrayList();
+        /**
+         * 进入此Ring的生产者个数，只在可扩容时使用。
+         */
+        private final AtomicInteger producers = new AtomicInteger();
+        private final Disruptor<Holder> disruptor;
+        private final RingBuffer<Holder> ringBuffer;
+        /**
+         * 关闭时的cursor，之后的序号不会再被消费。
+         */
+        private volatile long terminatedCursor = UNKNOWN;
+
+        /**
+         * @param previous 扩容前Ring的消费者全部退出后，本Ring的消费者才开始处理。
+         */
+        Ring(int bufferSize, final CountDownLatch previous) {
+            Disruptor<Holder> disruptor = new Disruptor<>(new HolderEventFactory(), bufferSize, executorService, producerType, waitStrategy);
+            disruptor.handleExceptionsWith(new HolderExceptionHandler());
+
+            final EventListener<E>[] lastGroup = listenerGroups.get(listenerGroups.size() - 1);
+            List<EventHandler<Holder>[]> handlerGroups = Lists.newArrayList(Lists.transform(listenerGroups,
+                    new Function<EventListener<E>[], EventHandler<Holder>[]>() {
+                        @Override
+                        public EventHandler<Holder>[] apply(EventListener<E>[] input) {
+                            @SuppressWarnings("unchecked") EventHandler<Holder>[] result = new EventHandler[input.length];
+                            for (int i = 0, length = input.length; i < length; i++) {
+                                HolderEventHandler handler = new HolderEventHandler(Ring.this, input[i], notifySize, input == lastGroup,
+                                        stopped, previous);
+                                if (input == lastGroup) {
+                                    gatingHandlers.add(handler);
+                                }
+                                result[i] = handler;
+                            }
+                            return result;
+                        }
+                    }));
+
+            EventHandlerGroup<Holder> handlerGroup = disruptor.handleEventsWith(handlerGroups.get(0));
+            for (int i = 1, length = listenerGroups.size(); i < length; i++) {
+                handlerGroup = handlerGroup.then(handlerGroups.get(i));
+            }
+            this.disruptor = disruptor;
+            this.ringBuffer = disruptor.start();
+            rings.add(this);
+            // 与shutdown中先修改state再遍历rings对应，两者至少有一方记录终止位置
+            if (state == TERMINATED) {
+                disruptor.halt();
+                terminate();
+            }
+        }
+
+        synchronized void terminate() {
+            if (terminatedCursor == UNKNOWN) {
+                terminatedCursor = ringBuffer.getCursor();
+            }
+        }
+
+        long terminatedCursor() {
+            long cursor;
+            while ((cursor = terminatedCursor) == UNKNOWN) {
+                Thread.yield();
+            }
+            return cursor;
+        }
+    }
+
+    private class Holder implements Slot<E> {
 
         private E event;
+        private Object attachment;
+        private boolean idle;
+        /**
+         * 已申请但未填充的槽位，不交给监听器。null事件照常交给监听器。
+         */
+        private boolean unfilled;
+        /**
+         * 最后一个Group中尚未处理完的消费者个数，只在最后一个Group有多个消费者时使用。非private，供REMAINING访问。
+         */
+        volatile int remaining = lastGroupSize;
 
         public void setValue(E event) {
             this.event = event;
+            this.idle = false;
+            this.unfilled = false;
         }
-    }
 
-    private class HolderEventFactory implements EventFactory<Holder> {
+        public void setIdle() {
+            this.event = null;
+            this.idle = true;
+            this.unfilled = false;
+        }
+
+        public void setUnfilled() {
+            this.event = null;
+            this.idle = false;
+            this.unfilled = true;
+        }
+
+        public void clear(boolean clearAttachment) {
+            this.event = null;
+            if (clearAttachment) {
+                if (attachment instanceof Reusable) {
+                    ((Reusable) attachment).release();
+                } else {
+                    this.attachment = null;
+                }
+            }
+        }
 
         @Override
-        public Holder newInstance() {
-            return new Holder();
+        public E getEvent() {
+            return event;
         }
-    }
 
-    private class HolderEventTranslator implements EventTranslatorOneArg<Holder, E> {
+        @Override
+        public Object getAttachment() {
+            return attachment;
+        }
 
         @Override
-        public void translateTo(Holder event, long sequence, E arg0) {
-            event.setValue(arg0);
+        public void setAttachment(Object attachment) {
+            this.attachment = attachment;
         }
+    }
 
+    private class HolderEventFactory implements EventFactory<Holder> {
+
+        @Override
+        public Holder newInstance() {
+            return new Holder();
+        }
     }
 
-    private class HolderEventHandler implements SequenceReportingEventHandler<Holder> {
+    private class HolderEventHandler implements SequenceReportingEventHandler<Holder>, LifecycleAware {
 
+        private final Ring ring;
         private final int notifySize;
         private final EventListener<E> listener;
+        private final SlotEventListener<E> slotListener;
+        private final BatchEventListener<E> batchListener;
+        private final FlushableListener flushableListener;
+        private final boolean gating;
+        private final CountDownLatch stopped;
+        private final CountDownLatch previous;
         private Sequence sequence;
         private int counter;
+        private long skipped;
 
-        public HolderEventHandler(EventListener<E> listener, int notifySize) {
+        public HolderEventHandler(Ring ring, EventListener<E> listener, int notifySize, boolean gating, CountDownLatch stopped,
+                                  CountDownLatch previous) {
+            this.ring = ring;
             this.listener = listener;
+            this.slotListener = listener instanceof SlotEventListener ? (SlotEventListener<E>) listener : null;
+            this.batchListener = batchListener(listener);
+            this.flushableListener = listener instanceof FlushableListener ? (FlushableListener) listener : null;
             this.notifySize = notifySize;
+            this.gating = gating;
+            this.stopped = stopped;
+            this.previous = previous;
         }
 
         @Override
@@ -340,16 +1093,97 @@ public class InvokeFlusher<E> {
 
         @Override
         public void onEvent(Holder event, long sequence, boolean endOfBatch) throws Exception {
+            boolean failed = false;
             try {
-                listener.onEvent(event.event, endOfBatch);
-
-                if (++counter > notifySize) {
-                    this.sequence.set(sequence);
-                    counter = 0;
+                if (event.idle) {
+                    if (batchListener != null && state != TERMINATED) {
+                        batchListener.flush();
+                    } else if (endOfBatch) {
+                        flush();
+                    }
+                } else if (event.unfilled) {
+                    // 批量写入时未填充的槽位，结束批次时代替endOfBatch刷新
+                    if (endOfBatch) {
+                        flush();
+                    }
+                } else if (state == TERMINATED) {
+                    // 关闭超时，跳过剩余事件，终止位置之后的由生产者报告
+                    if (sequence <= ring.terminatedCursor()) {
+                        skipped++;
+                    }
+                } else if (slotListener != null) {
+                    slotListener.onEvent(event, sequence, endOfBatch);
+                } else {
+                    listener.onEvent(event.event, endOfBatch);
                 }
             } catch (Throwable e) {
                 listener.onException(e, sequence, event.event);
+                failed = true;
+            }
+
+            // 在报告消费进度之前清除，槽位不会在清除时被生产者覆盖
+            if (gating && clearPolicy != ClearPolicy.NONE) {
+                release(event);
+            }
+
+            if (failed) {
+                this.sequence.set(sequence);
+            } else if (++counter > notifySize) {
                 this.sequence.set(sequence);
+                counter = 0;
+            }
+
+            if (gating && endOfBatch) {
+                // 先发布消费进度（StoreLoad），再检查等待者，避免与offer之间丢失唤醒
+                this.sequence.setVolatile(sequence);
+                signalNotFull();
+            }
+        }
+
+        private void flush() throws Exception {
+            if (flushableListener != null && state != TERMINATED) {
+                flushableListener.flush();
+            }
+        }
+
+        private void release(Holder holder) {
+            if (lastGroupSize > 1) {
+                if (REMAINING.decrementAndGet(holder) != 0) {
+                    return;
+                }
+                holder.remaining = lastGroupSize;
+            }
+            holder.clear(clearPolicy == ClearPolicy.ALL);
+        }
+
+        @Override
+        public void onStart() {
+            if (previous == null) {
+                return;
+            }
+            // 扩容前的消费者全部退出后再开始，同一监听器不会被并发调用
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    previous.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void onShutdown() {
+            try {
+                if (batchListener != null) {
+                    batchListener.flush();
+                }
+            } finally {
+                stopped.countDown();
             }
         }
     }
@@ -1,5 +1,6 @@
 package org.danielli.common.concurrent.async;
 
+import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.lmax.disruptor.*;
@@ -7,11 +8,18 @@ import com.lmax.disruptor.dsl.Disruptor;
 import com.lmax.disruptor.dsl.ProducerType;
 import org.danielli.common.batch.BatchForwarder;
 import org.danielli.common.clock.Clock;
+import org.danielli.common.concurrent.SharedScheduler;
 
+import java.lang.reflect.Array;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * 异步刷新器，生产者/消费者模式（无锁队列），同一事件只被一个消费者消费。多消费者并行消费。单条”通知“模式。
@@ -21,16 +29,34 @@ import java.util.concurrent.TimeUnit;
  *  YieldingWaitStrategy: 忙循环等待，默认前100次只检测，之后让出CPU，等待下次调度；低延迟，平衡了资源占用；需要高性能和处理线程小于逻辑内核(开启超线程)推荐使用。
  *  SleepingWaitStrategy: 忙循环等待，默认前100次只检测，后100次让出CPU，等待下次调度，之后每次睡1纳秒；平衡了使用率，延迟不均衡。
  *  BlockingWaitStrategy: 锁和条件；CPU使用率最低，延迟最大。
+ *  AdaptiveWaitStrategy: 先自旋、再让出CPU、再逐步加长睡眠，空闲超过idleTimeout后使用锁和条件；生产者只在消费者阻塞时唤醒。负载高时延迟低，空闲时不占用CPU。
  * </pre>
  * <pre>
  * 生产者类型：
  *  SINGLE: 但生产者。
  *  MULTI: 多生产者。
+ *  设置idleTimeout时空闲事件由后台调度线程发布，是另一个生产者，只能使用MULTI，build()拒绝SINGLE。
  * </pre>
  * <pre>
  * 事件监听器：
  *  EventListener：接口，提供处理单个实体。
- *  BatchEventListener：抽象类，EventListener实现，提供聚合为批量。
+ *  BatchEventListener：抽象类，EventListener实现，提供聚合为批量。每个消费线程单独聚合，
+ *  消费线程处理完最后一个已发布的事件时（单个消费线程时即为空闲）和关闭时转发剩余事件。
+ *  设置idleTimeout后，有未转发的事件时每idleTimeout发布与消费线程数相同个数的空闲事件，每个等待中的消费线程各取到一个（消费线程在等待前已申请了下一个序号），
+ *  收到后转发本线程的剩余事件，多个消费线程时剩余事件也会在约idleTimeout内转发。
+ * </pre>
+ * <pre>
+ * 申请方式：
+ *  claimSize为1（默认）：使用Disruptor的WorkerPool，每个事件通过一次CAS从共享的工作序号申请，负载均衡最好，适合较重的监听器。
+ *  claimSize大于1：每个消费者一次CAS申请最多claimSize个已发布的序号，在本地依次处理并逐个报告进度，减少共享序号上的竞争，适合较轻的监听器；
+ *  已申请的事件只由该消费者处理，单个事件较慢时同一批中的其余事件随之等待。消费者在即将等待新事件时转发BatchEventListener的剩余事件。
+ *  keyFunction不为null（按键分区）：生产者按键的哈希值计算分区，每个消费者读取所有槽位、只处理自己分区的事件，
+ *  同一键的事件总由同一消费线程按写入顺序处理，监听器中按键保存的状态无需加锁；批次结束（endOfBatch）时转发BatchEventListener的剩余事件。
+ *  热点键会使对应的消费线程成为瓶颈。
+ * </pre>
+ * <pre>
+ * 关闭：先拒绝新的写入，再等待消费者追上已申请的序号（最多shutdownTimeout），之后停止消费线程并返回未消费的个数。
+ * 与关闭并发、在终止之后才发布的事件，add通过onException报告，tryAdd返回false。
  * </pre>
  *
  * @param <E> 实体。
@@ -39,11 +65,22 @@ import java.util.concurrent.TimeUnit;
  */
 public class ParallelFlusher<E> {
 
+    private static final int RUNNING = 0;
+    private static final int DRAINING = 1;
+    private static final int TERMINATED = 2;
+    private static final long UNKNOWN = Long.MIN_VALUE;
+    private static final long MAX_DRAIN_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
     private final Disruptor<Holder> disruptor;
     private final EventListener<E> eventListener;
-    private final EventTranslatorOneArg<Holder, E> eventTranslator;
     private final ExecutorService executorService;
-    private volatile RingBuffer<Holder> ringBuffer;
+    private final long shutdownTimeoutNanos;
+    private final RingBuffer<Holder> ringBuffer;
+    private final HolderWorkHandler[] workHandlers;
+    private final Function<? super E, ?> keyFunction;
+    private final ScheduledFuture<?> idleTask;
+    private volatile int state = RUNNING;
+    private volatile long terminatedCursor = UNKNOWN;
 
     private ParallelFlusher(Builder<E> builder) {
         this.executorService = Executors.newFixedThreadPool(builder.threads, new ThreadFactoryBuilder().
@@ -54,7 +91,8 @@ public class ParallelFlusher<E> {
         ExceptionHandler exceptionHandler = new HolderExceptionHandler();
 
         this.eventListener = builder.listener;
-        this.eventTranslator = new HolderEventTranslator();
+        this.keyFunction = builder.keyFunction;
+        this.shutdownTimeoutNanos = builder.shutdownTimeoutNanos;
 
         int bufferSize = builder.bufferSize;
         ProducerType producerType = builder.producerType;
@@ -62,26 +100,78 @@ public class ParallelFlusher<E> {
         Disruptor<Holder> disruptor = new Disruptor<>(eventFactory, bufferSize, executorService, producerType, waitStrategy);
         disruptor.handleExceptionsWith(exceptionHandler);
 
-        @SuppressWarnings("unchecked") WorkHandler<Holder>[] workHandlers = new WorkHandler[builder.threads];
+        int claimSize = builder.claimSize;
+        HolderWorkHandler[] workHandlers = newArray(HolderWorkHandler.class, builder.threads);
         for (int i = 0, length = workHandlers.length; i < length; i++) {
-            workHandlers[i] = new HolderWorkHandler();
+            workHandlers[i] = new HolderWorkHandler(claimSize == 1 && keyFunction == null);
+        }
+        this.workHandlers = workHandlers;
+        if (keyFunction != null) {
+            PartitionEventHandler[] handlers = newArray(PartitionEventHandler.class, workHandlers.length);
+            for (int i = 0, length = handlers.length; i < length; i++) {
+                handlers[i] = new PartitionEventHandler(workHandlers[i], i);
+            }
+            //noinspection unchecked
+            disruptor.handleEventsWith(handlers);
+        } else if (claimSize == 1) {
+            //noinspection unchecked
+            disruptor.handleEventsWithWorkerPool(workHandlers);
+        } else {
+            RingBuffer<Holder> ringBuffer = disruptor.getRingBuffer();
+            SequenceBarrier barrier = ringBuffer.newBarrier();
+            Sequence workSequence = new Sequence(Sequencer.INITIAL_CURSOR_VALUE);
+            BatchWorkProcessor[] processors = newArray(BatchWorkProcessor.class, workHandlers.length);
+            Sequence[] sequences = new Sequence[workHandlers.length + 1];
+            for (int i = 0, length = processors.length; i < length; i++) {
+                processors[i] = new BatchWorkProcessor(ringBuffer, barrier, workSequence, claimSize, workHandlers[i], exceptionHandler);
+                sequences[i] = processors[i].getSequence();
+            }
+            // 未申请的序号由共享的工作序号阻挡生产者
+            sequences[processors.length] = workSequence;
+            ringBuffer.addGatingSequences(sequences);
+            disruptor.handleEventsWith(processors);
         }
-        //noinspection unchecked
-        disruptor.handleEventsWithWorkerPool(workHandlers);
 
         this.ringBuffer = disruptor.start();
         this.disruptor = disruptor;
-    }
 
-    private static boolean hasAvailableCapacity(RingBuffer<?> ringBuffer) {
-        return !ringBuffer.hasAvailableCapacity(ringBuffer.getBufferSize());
+        // 按键分区时在endOfBatch转发，不需要空闲事件
+        if (builder.idleTimeoutNanos > 0 && eventListener instanceof BatchEventListener && keyFunction == null) {
+            this.idleTask = SharedScheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    publishIdle();
+                }
+            }, builder.idleTimeoutNanos, TimeUnit.NANOSECONDS);
+        } else {
+            this.idleTask = null;
+        }
     }
 
-    @SafeVarargs
-    private static <E> void process(EventListener<E> listener, Throwable e, E... events) {
-        for (E event : events) {
-            process(listener, e, event);
+    /**
+     * 有未转发的事件时为每个消费线程发布一个空闲事件，RingBuffer已满时跳过。
+     */
+    private void publishIdle() {
+        if (!((BatchEventListener<E>) eventListener).hasPending()) {
+            return;
         }
+        int n = workHandlers.length;
+        long hi = tryNext(n);
+        if (hi < 0) {
+            return;
+        }
+        for (long sequence = hi - (n - 1); sequence <= hi; sequence++) {
+            ringBuffer.get(sequence).setIdle(sequence);
+        }
+        ringBuffer.publish(hi - (n - 1), hi);
+    }
+
+    /**
+     * 创建内部类（依赖类型参数）的数组。
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T[] newArray(Class<?> componentType, int length) {
+        return (T[]) Array.newInstance(componentType, length);
     }
 
     private static <E> void process(EventListener<E> listener, Throwable e, List<E> events) {
@@ -94,97 +184,185 @@ public class ParallelFlusher<E> {
         listener.onException(e, -1, event);
     }
 
-    public void add(E event) {
-        RingBuffer<Holder> temp = ringBuffer;
-        if (temp == null) {
-            process(this.eventListener, new IllegalStateException("distruptor is closed."), event);
-            return;
+    private static IllegalStateException closed() {
+        return new IllegalStateException("distruptor is closed.");
+    }
+
+    /**
+     * 申请n个连续序号，RingBuffer已满时自旋等待（LockSupport.parkNanos(1)），关闭后返回-1。
+     */
+    private long next(int n) {
+        while (state == RUNNING) {
+            try {
+                return ringBuffer.tryNext(n);
+            } catch (InsufficientCapacityException e) {
+                LockSupport.parkNanos(1);
+            }
         }
+        return -1;
+    }
 
-        // 关闭后回产生NPE
+    private long tryNext(int n) {
+        if (state != RUNNING) {
+            return -1;
+        }
         try {
-            // 不使用临时变量，确保及时设置null
-            ringBuffer.publishEvent(eventTranslator, event);
-        } catch (NullPointerException e) {
-            process(this.eventListener, new IllegalStateException("distruptor is closed.", e), event);
+            return ringBuffer.tryNext(n);
+        } catch (InsufficientCapacityException e) {
+            return -1;
         }
     }
 
-    @SafeVarargs
-    public final void add(E... events) {
-        RingBuffer<Holder> temp = ringBuffer;
-        if (temp == null) {
-            process(this.eventListener, new IllegalStateException("distruptor is closed."), events);
-            return;
+    /**
+     * 发布后检查，与关闭并发时，序号在终止位置之后的事件不会再被消费。
+     *
+     * @return 区间末尾丢失的个数。
+     */
+    private int lost(long lo, long hi) {
+        if (state != TERMINATED) {
+            return 0;
         }
+        return (int) Math.max(0, Math.min(hi - terminatedCursor(), hi - lo + 1));
+    }
 
-        // 关闭后回产生NPE
-        try {
-            // 不使用临时变量，确保及时设置null
-            ringBuffer.publishEvents(eventTranslator, events);
-        } catch (NullPointerException e) {
-            process(this.eventListener, new IllegalStateException("distruptor is closed.", e), events);
+    private long terminatedCursor() {
+        long cursor;
+        while ((cursor = terminatedCursor) == UNKNOWN) {
+            Thread.yield();
         }
+        return cursor;
     }
 
-    public boolean tryAdd(E event) {
-        RingBuffer<Holder> temp = ringBuffer;
-        if (temp == null) {
-            return false;
+    private void publish(long lo, long hi, E[] events, int offset) {
+        for (long sequence = lo; sequence <= hi; sequence++) {
+            ringBuffer.get(sequence).fill(events[offset++], sequence);
+        }
+        ringBuffer.publish(lo, hi);
+    }
+
+    public void add(E event) {
+        long sequence = next(1);
+        if (sequence < 0) {
+            process(this.eventListener, closed(), event);
+            return;
+        }
+        ringBuffer.get(sequence).fill(event, sequence);
+        ringBuffer.publish(sequence);
+        if (lost(sequence, sequence) != 0) {
+            process(this.eventListener, closed(), event);
         }
+    }
 
-        // 关闭后会产生NPE
-        try {
-            // 不使用临时变量，确保及时设置null
-            return ringBuffer.tryPublishEvent(eventTranslator, event);
-        } catch (NullPointerException e) {
+    /**
+     * 一次申请连续序号并发布，超过bufferSize时分段申请。
+     */
+    @SafeVarargs
+    public final void add(E... events) {
+        int offset = 0;
+        while (offset < events.length) {
+            int batchSize = Math.min(events.length - offset, ringBuffer.getBufferSize());
+            long hi = next(batchSize);
+            if (hi < 0) {
+                process(this.eventListener, closed(), Arrays.asList(events).subList(offset, events.length));
+                return;
+            }
+            long lo = hi - (batchSize - 1);
+            publish(lo, hi, events, offset);
+            offset += batchSize;
+            int lost = lost(lo, hi);
+            if (lost != 0) {
+                process(this.eventListener, closed(), Arrays.asList(events).subList(offset - lost, events.length));
+                return;
+            }
+        }
+    }
+
+    public boolean tryAdd(E event) {
+        long sequence = tryNext(1);
+        if (sequence < 0) {
             return false;
         }
+        ringBuffer.get(sequence).fill(event, sequence);
+        ringBuffer.publish(sequence);
+        return lost(sequence, sequence) == 0;
     }
 
+    /**
+     * 全部写入或全部不写入，个数不能超过bufferSize。
+     */
     @SafeVarargs
     public final boolean tryAdd(E... events) {
-        RingBuffer<Holder> temp = ringBuffer;
-        if (temp == null) {
-            return false;
+        if (events.length == 0) {
+            return true;
         }
-
-        // 关闭后会产生NPE
-        try {
-            // 不使用临时变量，确保及时设置null
-            return ringBuffer.tryPublishEvents(eventTranslator, events);
-        } catch (NullPointerException e) {
+        long hi = tryNext(events.length);
+        if (hi < 0) {
             return false;
         }
+        long lo = hi - (events.length - 1);
+        publish(lo, hi, events, 0);
+        return lost(lo, hi) == 0;
     }
 
     public boolean isShutdown() {
-        return ringBuffer != null;
+        return state != RUNNING;
     }
 
-    public void shutdown() {
-        RingBuffer<Holder> temp = ringBuffer;
-        ringBuffer = null;
-        if (temp == null) {
-            return;
+    /**
+     * 关闭。先拒绝新的写入，等待消费者追上已申请的序号（最多shutdownTimeout），再停止消费线程。
+     *
+     * 超时后消费线程跳过剩余事件；若监听器阻塞导致消费线程在shutdownTimeout内仍未退出，返回值为估算值。
+     *
+     * @return 已写入但未被消费的事件个数，重复关闭返回0。
+     */
+    public long shutdown() {
+        synchronized (this) {
+            if (state != RUNNING) {
+                return 0;
+            }
+            state = DRAINING;
+        }
+        if (idleTask != null) {
+            idleTask.cancel(false);
         }
 
-        for (int i = 0; hasAvailableCapacity(temp) && i < 200; i++) {
-            try {
-                Thread.sleep(50);
-            } catch (InterruptedException e) {
+        boolean interrupted = false;
+        long deadline = System.nanoTime() + shutdownTimeoutNanos;
+        long parkNanos = 1000;
+        while (ringBuffer.getMinimumGatingSequence() < ringBuffer.getCursor()) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            LockSupport.parkNanos(Math.min(parkNanos, remaining));
+            parkNanos = Math.min(parkNanos << 1, MAX_DRAIN_PARK_NANOS);
+            if (Thread.interrupted()) {
+                interrupted = true;
+                break;
             }
         }
-        disruptor.shutdown();
+        disruptor.halt();
+        // 之后消费线程跳过剩余事件，尽快退出
+        state = TERMINATED;
+        long cursor = ringBuffer.getCursor();
+        terminatedCursor = cursor;
 
         executorService.shutdown();
         try {
-            executorService.awaitTermination(10L, TimeUnit.SECONDS);
+            executorService.awaitTermination(shutdownTimeoutNanos, TimeUnit.NANOSECONDS);
         } catch (InterruptedException ex) {
+            interrupted = true;
+        }
+        if (interrupted) {
             Thread.currentThread().interrupt();
         }
-    }
 
+        long lost = Math.max(0, cursor - ringBuffer.getMinimumGatingSequence());
+        for (HolderWorkHandler workHandler : workHandlers) {
+            lost += workHandler.skipped;
+        }
+        return lost;
+    }
 
     public interface EventListener<E> {
 
@@ -195,14 +373,31 @@ public class ParallelFlusher<E> {
 
     public static abstract class BatchEventListener<E> implements EventListener<E>, BatchForwarder.Processor<E> {
 
-        private final BatchForwarder<E> forwarder;
+        private final ThreadLocal<Forwarder<E>> forwarder;
+        private final AtomicInteger pending = new AtomicInteger();
 
-        public BatchEventListener(int batchSize, int duration, TimeUnit timeUnit, Clock clock) {
-            forwarder = new BatchForwarder<>(batchSize, duration, timeUnit, clock, this);
+        public BatchEventListener(final int batchSize, final int duration, final TimeUnit timeUnit, final Clock clock) {
+            forwarder = new ThreadLocal<Forwarder<E>>() {
+                @Override
+                protected Forwarder<E> initialValue() {
+                    return new Forwarder<>(batchSize, duration, timeUnit, clock, BatchEventListener.this);
+                }
+            };
         }
 
+        /**
+         * 处理一个批量。events归监听器所有，可直接保留，处理完后调用{@link #release(List)}归还复用。
+         */
         public abstract void onEvents(List<E> events) throws Exception;
 
+        /**
+         * 归还onEvents收到的批量，回到产生它的消费线程的转发器，可在任意线程调用，归还后不能再访问。
+         * 不归还时转发器分配新的批量。
+         */
+        public void release(List<E> events) {
+            BatchForwarder.release(events);
+        }
+
         @Override
         public void process(List<E> events) {
             try {
@@ -214,7 +409,40 @@ public class ParallelFlusher<E> {
 
         @Override
         public final void onEvent(E event) throws Exception {
+            Forwarder<E> forwarder = this.forwarder.get();
             forwarder.add(event);
+            updatePending(forwarder);
+        }
+
+        /**
+         * 转发当前消费线程的剩余事件，在消费线程中调用。
+         */
+        public void flush() {
+            Forwarder<E> forwarder = this.forwarder.get();
+            forwarder.flush();
+            updatePending(forwarder);
+        }
+
+        boolean hasPending() {
+            return pending.get() > 0;
+        }
+
+        private void updatePending(Forwarder<E> forwarder) {
+            // 只在状态变化时更新计数
+            boolean pending = forwarder.size() > 0;
+            if (pending != forwarder.pending) {
+                forwarder.pending = pending;
+                this.pending.addAndGet(pending ? 1 : -1);
+            }
+        }
+    }
+
+    private static class Forwarder<E> extends BatchForwarder<E> {
+
+        private boolean pending;
+
+        Forwarder(int batchSize, long duration, TimeUnit timeUnit, Clock clock, Processor<E> processor) {
+            super(batchSize, duration, timeUnit, IDLE_FLUSH_CHECK_INTERVAL, clock, processor);
         }
     }
 
@@ -224,6 +452,10 @@ public class ParallelFlusher<E> {
         private int threads = 1;
         private String namePrefix = "";
         private WaitStrategy waitStrategy = new YieldingWaitStrategy();
+        private long shutdownTimeoutNanos = TimeUnit.SECONDS.toNanos(10);
+        private long idleTimeoutNanos = 0;
+        private int claimSize = 1;
+        private Function<? super E, ?> keyFunction;
         private EventListener<E> listener;
 
         public Builder<E> setThreads(int threads) {
@@ -258,8 +490,46 @@ public class ParallelFlusher<E> {
             return this;
         }
 
+        /**
+         * 关闭时等待消费完成的最长时间，默认10秒。
+         */
+        public Builder<E> setShutdownTimeout(long shutdownTimeout, TimeUnit timeUnit) {
+            Preconditions.checkArgument(shutdownTimeout >= 0);
+            this.shutdownTimeoutNanos = timeUnit.toNanos(shutdownTimeout);
+            return this;
+        }
+
+        /**
+         * 每个消费者一次申请的最大序号个数，默认为1（每个事件申请一次）。
+         */
+        public Builder<E> setClaimSize(int claimSize) {
+            Preconditions.checkArgument(claimSize > 0);
+            this.claimSize = claimSize;
+            return this;
+        }
+
+        /**
+         * 按键分区，同一键的事件总由同一消费线程按写入顺序处理，键为null或keyFunction抛出异常时分到第一个分区。默认为null表示不分区。
+         */
+        public Builder<E> setKeyFunction(Function<? super E, ?> keyFunction) {
+            this.keyFunction = keyFunction;
+            return this;
+        }
+
+        /**
+         * 批量监听器中剩余事件的最长等待时间，默认0表示不检查。
+         */
+        public Builder<E> setIdleTimeout(long idleTimeout, TimeUnit timeUnit) {
+            Preconditions.checkArgument(idleTimeout >= 0);
+            this.idleTimeoutNanos = timeUnit.toNanos(idleTimeout);
+            return this;
+        }
+
         public ParallelFlusher<E> build() {
             Preconditions.checkNotNull(listener);
+            Preconditions.checkArgument(keyFunction == null || claimSize == 1, "claimSize is not supported with keyFunction.");
+            Preconditions.checkArgument(idleTimeoutNanos == 0 || producerType == ProducerType.MULTI,
+                    "idleTimeout requires ProducerType.MULTI.");
             return new ParallelFlusher<>(this);
         }
     }
@@ -267,11 +537,86 @@ public class ParallelFlusher<E> {
     private class Holder {
 
         private E event;
+        private long sequence;
+        private boolean idle;
+        /**
+         * 按键分区时的分区，清空槽位时保留，其他消费者可能仍在读取。
+         */
+        private int partition;
+
+        public void fill(E event, long sequence) {
+            setValue(event, sequence);
+            if (keyFunction != null) {
+                partition = partition(event);
+            }
+        }
 
-        public void setValue(E event) {
+        public void setValue(E event, long sequence) {
             this.event = event;
+            this.sequence = sequence;
+            this.idle = false;
+        }
+
+        public void setIdle(long sequence) {
+            setValue(null, sequence);
+            this.idle = true;
+        }
+
+    }
+
+    /**
+     * 在申请序号之后调用，keyFunction抛出异常时分到第一个分区，保证槽位照常发布。
+     */
+    private int partition(E event) {
+        Object key;
+        try {
+            key = keyFunction.apply(event);
+        } catch (RuntimeException e) {
+            return 0;
+        }
+        if (key == null) {
+            return 0;
+        }
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        return (h & Integer.MAX_VALUE) % workHandlers.length;
+    }
+
+    /**
+     * 按键分区的消费者，只处理自己分区的事件，批次结束时转发BatchEventListener的剩余事件。
+     */
+    private class PartitionEventHandler implements EventHandler<Holder>, LifecycleAware {
+
+        private final HolderWorkHandler handler;
+        private final int partition;
+
+        public PartitionEventHandler(HolderWorkHandler handler, int partition) {
+            this.handler = handler;
+            this.partition = partition;
+        }
+
+        @Override
+        public void onEvent(Holder event, long sequence, boolean endOfBatch) throws Exception {
+            try {
+                if (event.partition == partition) {
+                    handler.onEvent(event);
+                }
+            } finally {
+                if (endOfBatch && state != TERMINATED) {
+                    handler.flush();
+                }
+            }
         }
 
+        @Override
+        public void onStart() {
+            handler.onStart();
+        }
+
+        @Override
+        public void onShutdown() {
+            handler.onShutdown();
+        }
     }
 
     private class HolderEventFactory implements EventFactory<Holder> {
@@ -282,21 +627,147 @@ public class ParallelFlusher<E> {
         }
     }
 
-    private class HolderEventTranslator implements EventTranslatorOneArg<Holder, E> {
+    private class HolderWorkHandler implements WorkHandler<Holder>, LifecycleAware {
+
+        private final BatchEventListener<E> batchListener;
+        private final boolean flushOnCursor;
+        private long skipped;
+
+        /**
+         * flushOnCursor为true时，处理完最后一个已发布的事件后转发BatchEventListener的剩余事件。
+         */
+        public HolderWorkHandler(boolean flushOnCursor) {
+            this.batchListener = eventListener instanceof BatchEventListener ? (BatchEventListener<E>) eventListener : null;
+            this.flushOnCursor = flushOnCursor;
+        }
 
         @Override
-        public void translateTo(Holder event, long sequence, E arg0) {
-            event.setValue(arg0);
+        public void onEvent(Holder event) throws Exception {
+            if (event.idle) {
+                if (batchListener != null && state != TERMINATED) {
+                    batchListener.flush();
+                }
+            } else if (state == TERMINATED) {
+                // 关闭超时，跳过剩余事件，终止位置之后的由生产者报告
+                if (event.sequence <= terminatedCursor()) {
+                    skipped++;
+                }
+            } else {
+                long sequence = event.sequence;
+                eventListener.onEvent(event.event);
+                if (flushOnCursor && batchListener != null && sequence >= ringBuffer.getCursor()) {
+                    batchListener.flush();
+                }
+            }
+            event.setValue(null, -1);
         }
 
+        @Override
+        public void onStart() {
+        }
+
+        @Override
+        public void onShutdown() {
+            flush();
+        }
+
+        public void flush() {
+            if (batchListener != null) {
+                batchListener.flush();
+            }
+        }
     }
 
-    private class HolderWorkHandler implements WorkHandler<Holder> {
+    /**
+     * 批量申请的消费者。每次CAS从共享的工作序号申请最多claimSize个已发布的序号，在本地依次处理并逐个报告进度。
+     * 未持有序号时进度为Long.MAX_VALUE，不阻挡生产者，未申请的序号由工作序号阻挡。
+     */
+    private class BatchWorkProcessor implements EventProcessor {
+
+        private final AtomicBoolean running = new AtomicBoolean();
+        private final Sequence sequence = new Sequence(Sequencer.INITIAL_CURSOR_VALUE);
+        private final RingBuffer<Holder> ringBuffer;
+        private final SequenceBarrier barrier;
+        private final Sequence workSequence;
+        private final int claimSize;
+        private final HolderWorkHandler handler;
+        private final ExceptionHandler exceptionHandler;
+
+        public BatchWorkProcessor(RingBuffer<Holder> ringBuffer, SequenceBarrier barrier, Sequence workSequence, int claimSize,
+                                  HolderWorkHandler handler, ExceptionHandler exceptionHandler) {
+            this.ringBuffer = ringBuffer;
+            this.barrier = barrier;
+            this.workSequence = workSequence;
+            this.claimSize = claimSize;
+            this.handler = handler;
+            this.exceptionHandler = exceptionHandler;
+        }
 
         @Override
-        public void onEvent(Holder event) throws Exception {
-            eventListener.onEvent(event.event);
-            event.setValue(null);
+        public Sequence getSequence() {
+            return sequence;
+        }
+
+        @Override
+        public void halt() {
+            running.set(false);
+            barrier.alert();
+        }
+
+        @Override
+        public boolean isRunning() {
+            return running.get();
+        }
+
+        @Override
+        public void run() {
+            if (!running.compareAndSet(false, true)) {
+                throw new IllegalStateException("Thread is already running");
+            }
+            barrier.clearAlert();
+            handler.onStart();
+
+            long available = Sequencer.INITIAL_CURSOR_VALUE;
+            while (true) {
+                try {
+                    long current = workSequence.get();
+                    if (current >= available) {
+                        sequence.set(Long.MAX_VALUE);
+                        if (barrier.getCursor() <= current) {
+                            // 即将等待新事件
+                            handler.flush();
+                        }
+                        available = barrier.waitFor(current + 1);
+                        continue;
+                    }
+                    long hi = Math.min(current + claimSize, available);
+                    // 先报告进度再申请，申请到的序号不会被生产者覆盖
+                    sequence.set(current);
+                    if (!workSequence.compareAndSet(current, hi)) {
+                        continue;
+                    }
+                    for (long next = current + 1; next <= hi; next++) {
+                        Holder holder = ringBuffer.get(next);
+                        try {
+                            handler.onEvent(holder);
+                        } catch (Throwable ex) {
+                            exceptionHandler.handleEventException(ex, next, holder);
+                        }
+                        sequence.set(next);
+                    }
+                } catch (AlertException ex) {
+                    if (!running.get()) {
+                        break;
+                    }
+                } catch (InterruptedException | TimeoutException ex) {
+                    if (!running.get()) {
+                        break;
+                    }
+                }
+            }
+
+            handler.onShutdown();
+            running.set(false);
         }
     }
 
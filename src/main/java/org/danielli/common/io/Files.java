@@ -18,7 +18,16 @@ public class Files {
 
     private static final char WINDOWS_SEPARATOR = '\\';
 
+    private static final int COPY_CHUNK_SIZE = 1024 * 1024;
+
     public static void compressFile(File source, File destination, int bufferSize) throws IOException {
+        compressFile(source, destination, bufferSize, null);
+    }
+
+    /**
+     * 压缩文件，throttle不为null时按读取和写入的字节数限速。
+     */
+    public static void compressFile(File source, File destination, int bufferSize, IoThrottle throttle) throws IOException {
         if (source == null || !source.exists()) {
             return;
         }
@@ -31,10 +40,14 @@ public class Files {
         OutputStream output = null;
         try {
             input = new BufferedInputStream(new FileInputStream(source));
-            output = new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(destination)));
+            OutputStream fileOutput = new FileOutputStream(destination);
+            output = new BufferedOutputStream(new GZIPOutputStream(throttle != null ? throttle.wrap(fileOutput) : fileOutput));
             final byte[] inbuf = new byte[bufferSize];
             int n;
             while ((n = input.read(inbuf)) != -1) {
+                if (throttle != null) {
+                    throttle.acquire(n);
+                }
                 output.write(inbuf, 0, n);
             }
         } finally {
@@ -44,6 +57,13 @@ public class Files {
     }
 
     public static void copyFile(File source, File destination) throws IOException {
+        copyFile(source, destination, null);
+    }
+
+    /**
+     * 复制文件，throttle不为null时分块复制并按字节数限速。复制不完整时抛出IOException，调用方不能删除源文件。
+     */
+    public static void copyFile(File source, File destination, IoThrottle throttle) throws IOException {
         if (source == null || !source.exists()) {
             return;
         }
@@ -62,7 +82,21 @@ public class Files {
             output = new FileOutputStream(destination);
             FileChannel inputChannel = input.getChannel();
             FileChannel outputChannel = output.getChannel();
-            outputChannel.transferFrom(inputChannel, 0, inputChannel.size());
+            long size = inputChannel.size();
+            long position = 0;
+            while (position < size) {
+                long chunk = size - position;
+                if (throttle != null) {
+                    chunk = Math.min(COPY_CHUNK_SIZE, chunk);
+                    throttle.acquire(chunk);
+                }
+                long n = outputChannel.transferFrom(inputChannel, position, chunk);
+                if (n <= 0) {
+                    throw new IOException("Incomplete copy of " + source.getPath() + " to " + destination.getPath()
+                            + ", " + position + " of " + size + " bytes copied");
+                }
+                position += n;
+            }
         } finally {
             IOs.closeQuietly(input);
             IOs.closeQuietly(output);
@@ -0,0 +1,137 @@
+package org.danielli.common.io;
+
+import com.google.common.base.Preconditions;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * I/O限速器（令牌桶），按字节数限制后台压缩、复制等操作的吞吐量。
+ * <pre>
+ * 令牌按bytesPerSecond匀速补充，最多积累100ms的量；令牌不足时允许透支，调用方休眠到透支部分补齐为止，
+ * 大块请求不会被拆分，长期吞吐量不超过bytesPerSecond。
+ * 可指定parent，同时受parent限制（如每个阶段单独限速，整个后台流水线共享一个总限速）。
+ * 记录获取的字节数、被限速的次数和时间，用于监控。线程安全。
+ * </pre>
+ *
+ * @author Daniel Li
+ * @since 19 October 2026
+ */
+public class IoThrottle {
+
+    private final long bytesPerSecond;
+    private final long capacity;
+    private final IoThrottle parent;
+    private long available;
+    private long lastRefill;
+
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong throttledCount = new AtomicLong();
+    private final AtomicLong throttledNanos = new AtomicLong();
+
+    public IoThrottle(long bytesPerSecond) {
+        this(bytesPerSecond, null);
+    }
+
+    public IoThrottle(long bytesPerSecond, IoThrottle parent) {
+        Preconditions.checkArgument(bytesPerSecond > 0);
+        this.bytesPerSecond = bytesPerSecond;
+        this.capacity = Math.max(1, bytesPerSecond / 10);
+        this.parent = parent;
+        this.available = capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * 获取length字节的令牌，不足时休眠，线程中断时提前返回并保留中断状态。
+     */
+    public void acquire(long length) {
+        if (length <= 0) {
+            return;
+        }
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            long refill = (long) ((now - lastRefill) * (bytesPerSecond / 1e9));
+            if (refill > 0) {
+                available = Math.min(capacity, available + refill);
+                lastRefill = now;
+            }
+            available -= length;
+            waitNanos = available < 0 ? (long) (-available * (1e9 / bytesPerSecond)) : 0;
+        }
+        bytes.addAndGet(length);
+        if (waitNanos > 0) {
+            long start = System.nanoTime();
+            long deadline = start + waitNanos;
+            long remaining = waitNanos;
+            while (remaining > 0 && !Thread.currentThread().isInterrupted()) {
+                LockSupport.parkNanos(remaining);
+                remaining = deadline - System.nanoTime();
+            }
+            throttledCount.incrementAndGet();
+            throttledNanos.addAndGet(System.nanoTime() - start);
+        }
+        if (parent != null) {
+            parent.acquire(length);
+        }
+    }
+
+    /**
+     * 写入的字节按本限速器限速。
+     */
+    public OutputStream wrap(OutputStream outputStream) {
+        return new FilterOutputStream(outputStream) {
+            @Override
+            public void write(int b) throws IOException {
+                acquire(1);
+                out.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                acquire(len);
+                out.write(b, off, len);
+            }
+        };
+    }
+
+    public long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    public IoThrottle getParent() {
+        return parent;
+    }
+
+    /**
+     * 获取的总字节数。
+     */
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    /**
+     * 被限速（休眠）的次数。
+     */
+    public long getThrottledCount() {
+        return throttledCount.get();
+    }
+
+    /**
+     * 被限速的总时间，不包括parent。
+     */
+    public long getThrottledTime(TimeUnit timeUnit) {
+        return timeUnit.convert(throttledNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return "IoThrottle{bytesPerSecond=" + bytesPerSecond + ", bytes=" + bytes.get() + ", throttledCount=" + throttledCount.get()
+                + ", throttledMillis=" + getThrottledTime(TimeUnit.MILLISECONDS) + "}";
+    }
+}
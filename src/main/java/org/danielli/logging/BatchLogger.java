@@ -0,0 +1,21 @@
+package org.danielli.logging;
+
+import java.util.List;
+
+/**
+ * 可批量写入、可刷新的日志。{@link Logger}接口不变，已有的实现不受影响；
+ * 异步Logger等通过instanceof检查下游Logger，未实现时逐条写入、批次结束时不额外刷新。
+ *
+ * @author Daniel Li
+ * @since 19 October 2026
+ */
+public interface BatchLogger extends Logger {
+
+    /**
+     * 批量写入，按顺序写入，最后一个事件视为批次结束。
+     */
+    void write(List<LoggerEvent> events);
+
+    void flush();
+
+}
@@ -26,4 +26,19 @@ public interface Logger {
 
     }
 
+    /**
+     * 可直接写入已编码内容的日志，异步Logger的编码阶段通过它交给下游Logger，下游Logger收到的仍是原始事件。
+     *
+     * @author Daniel Li
+     * @since 19 October 2026
+     */
+    interface EncodedWriter {
+
+        /**
+         * 写入event，bytes为event.toByteArray()的结果。
+         */
+        void write(LoggerEvent event, byte[] bytes, boolean endOfBatch);
+
+    }
+
 }
@@ -7,24 +7,30 @@ import com.lmax.disruptor.YieldingWaitStrategy;
 import com.lmax.disruptor.dsl.ProducerType;
 import org.danielli.common.clock.CachedClock;
 import org.danielli.common.clock.Clock;
+import org.danielli.common.io.IoThrottle;
 import org.danielli.logging.exception.ExceptionHandler;
 import org.danielli.logging.handler.FileHandler;
 import org.danielli.logging.handler.RollingFileHandler;
 import org.danielli.logging.handler.support.DefaultFileHandler;
 import org.danielli.logging.handler.support.DefaultRollingFileHandler;
+import org.danielli.logging.handler.support.FlightRecorder;
+import org.danielli.logging.handler.support.PreallocatedRollingFileHandler;
 import org.danielli.logging.roll.DefaultRollover;
-import org.danielli.logging.roll.Rollover;
 import org.danielli.logging.roll.pattern.FilePattern;
 import org.danielli.logging.roll.trigger.CompositeTrigger;
 import org.danielli.logging.roll.trigger.SizeBasedTrigger;
 import org.danielli.logging.roll.trigger.TimeBasedTrigger;
 import org.danielli.logging.roll.trigger.Trigger;
 import org.danielli.logging.support.AsyncLogger;
+import org.danielli.logging.support.BinaryLogger;
 import org.danielli.logging.support.DefaultLogger;
 import org.danielli.logging.support.FilterableLogger;
+import org.danielli.logging.support.OffHeapAsyncLogger;
 import org.danielli.logging.support.RollingLogger;
+import org.danielli.logging.support.RoutingLogger;
 
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * {@link Logger} 构造器。
@@ -38,7 +44,18 @@ public abstract class LoggerBuilder {
         return new DefaultLoggerBuilder(fileName, exceptionHandler);
     }
 
-    private static Logger filter(Logger logger, Logger.Filter... filters) {
+    public static RoutingLoggerBuilder routing(String fileNamePattern, RoutingLogger.Router router, ExceptionHandler exceptionHandler) {
+        return new RoutingLoggerBuilder(fileNamePattern, router, exceptionHandler);
+    }
+
+    public static AsyncLoggerBuilder fanOut(ExceptionHandler exceptionHandler, Logger... loggers) {
+        Preconditions.checkNotNull(loggers);
+        Preconditions.checkArgument(loggers.length != 0);
+
+        return new AsyncLoggerBuilder(loggers, exceptionHandler);
+    }
+
+    public static Logger filter(Logger logger, Logger.Filter... filters) {
         Preconditions.checkNotNull(filters);
 
         return new FilterableLogger(logger, filters);
@@ -55,6 +72,10 @@ public abstract class LoggerBuilder {
         protected int fileBufferSize = 512 * 1024;
         protected boolean useDirectMemory = true;
         protected Clock clock = new CachedClock();
+        protected long maxFlushLatency = 0;
+        protected int flightRecorderSize = 0;
+        protected boolean binary = false;
+        protected int indexInterval = 0;
 
         protected ExceptionHandler exceptionHandler;
 
@@ -94,6 +115,41 @@ public abstract class LoggerBuilder {
             return this;
         }
 
+        public DefaultLoggerBuilder setMaxFlushLatency(long maxFlushLatency, TimeUnit timeUnit) {
+            Preconditions.checkArgument(maxFlushLatency >= 0);
+            this.maxFlushLatency = timeUnit.toMillis(maxFlushLatency);
+            return this;
+        }
+
+        public DefaultLoggerBuilder setFlightRecorderSize(int flightRecorderSize) {
+            Preconditions.checkArgument(flightRecorderSize >= 0);
+            this.flightRecorderSize = flightRecorderSize;
+            return this;
+        }
+
+        public DefaultLoggerBuilder setBinary(boolean binary) {
+            this.binary = binary;
+            return this;
+        }
+
+        public DefaultLoggerBuilder setIndexInterval(int indexInterval) {
+            Preconditions.checkArgument(indexInterval >= 0);
+            this.indexInterval = indexInterval;
+            return this;
+        }
+
+        private void configure(DefaultFileHandler fileHandler) {
+            if (maxFlushLatency > 0) {
+                fileHandler.setMaxFlushLatency(maxFlushLatency, TimeUnit.MILLISECONDS);
+            }
+            if (flightRecorderSize > 0) {
+                fileHandler.setFlightRecorder(new FlightRecorder(fileName + ".flight", flightRecorderSize));
+            }
+            if (indexInterval > 0) {
+                fileHandler.setIndexInterval(indexInterval);
+            }
+        }
+
         public DefaultLoggerBuilder setExceptionHandler(ExceptionHandler exceptionHandler) {
             this.exceptionHandler = Preconditions.checkNotNull(exceptionHandler);
             return this;
@@ -103,15 +159,29 @@ public abstract class LoggerBuilder {
             return new AsyncLoggerBuilder(build(), exceptionHandler);
         }
 
+        public OffHeapAsyncLoggerBuilder offHeap() {
+            Preconditions.checkState(!binary, "binary is not supported by offHeap.");
+            return new OffHeapAsyncLoggerBuilder(buildFileHandler(), immediateFlush, maxFlushLatency > 0, exceptionHandler);
+        }
+
         public RollingLoggerBuilder rolling(String filePattern) {
             return new RollingLoggerBuilder(this, filePattern);
         }
 
-        @Override
-        public Logger build() {
-            FileHandler fileHandler = new DefaultFileHandler(fileName, isAppend, fileBufferSize, useDirectMemory, clock,
+        private DefaultFileHandler buildFileHandler() {
+            DefaultFileHandler fileHandler = new DefaultFileHandler(fileName, isAppend, fileBufferSize, useDirectMemory, clock,
                     exceptionHandler);
-            return new DefaultLogger<>(immediateFlush, fileHandler);
+            configure(fileHandler);
+            return fileHandler;
+        }
+
+        @Override
+        public BatchLogger build() {
+            DefaultFileHandler fileHandler = buildFileHandler();
+            if (binary) {
+                return new BinaryLogger<>(immediateFlush, maxFlushLatency > 0, fileHandler);
+            }
+            return new DefaultLogger<>(immediateFlush, maxFlushLatency > 0, fileHandler);
         }
     }
 
@@ -128,6 +198,13 @@ public abstract class LoggerBuilder {
         protected int maxIndex = 30;
         protected boolean useMax = false;
         protected int compressionBufferSize = 1024 * 512;
+        protected boolean preallocate = false;
+        protected long moveBandwidth = 0;
+        protected long compressBandwidth = 0;
+        protected boolean staged = false;
+        protected boolean checksum = false;
+        protected long checksumBandwidth = 0;
+        protected IoThrottle ioThrottle;
 
         private RollingLoggerBuilder(DefaultLoggerBuilder builder, String filePattern) {
             this.builder = Preconditions.checkNotNull(builder);
@@ -167,12 +244,76 @@ public abstract class LoggerBuilder {
             return this;
         }
 
+        public RollingLoggerBuilder setPreallocate(boolean preallocate) {
+            this.preallocate = preallocate;
+            return this;
+        }
+
+        public RollingLoggerBuilder setMoveBandwidth(long moveBandwidth) {
+            Preconditions.checkArgument(moveBandwidth >= 0);
+            this.moveBandwidth = moveBandwidth;
+            return this;
+        }
+
+        public RollingLoggerBuilder setCompressBandwidth(long compressBandwidth) {
+            Preconditions.checkArgument(compressBandwidth >= 0);
+            this.compressBandwidth = compressBandwidth;
+            return this;
+        }
+
+        public RollingLoggerBuilder setStaged(boolean staged) {
+            this.staged = staged;
+            return this;
+        }
+
+        public RollingLoggerBuilder setChecksum(boolean checksum) {
+            this.checksum = checksum;
+            return this;
+        }
+
+        public RollingLoggerBuilder setChecksumBandwidth(long checksumBandwidth) {
+            Preconditions.checkArgument(checksumBandwidth >= 0);
+            this.checksumBandwidth = checksumBandwidth;
+            return this;
+        }
+
+        /**
+         * 后台流水线（复制、压缩、校验和）每秒读写的总字节数，0表示不限速。
+         */
+        public RollingLoggerBuilder setIoBandwidth(long ioBandwidth) {
+            Preconditions.checkArgument(ioBandwidth >= 0);
+            this.ioThrottle = ioBandwidth > 0 ? new IoThrottle(ioBandwidth) : null;
+            return this;
+        }
+
+        /**
+         * 后台流水线共享的限速器，可保留引用获取被限速的时间等指标，多个日志可共享同一个限速器。
+         */
+        public RollingLoggerBuilder setIoThrottle(IoThrottle ioThrottle) {
+            this.ioThrottle = ioThrottle;
+            return this;
+        }
+
         public AsyncLoggerBuilder async() {
             return new AsyncLoggerBuilder(build(), builder.exceptionHandler);
         }
 
+        public OffHeapAsyncLoggerBuilder offHeap() {
+            Preconditions.checkState(!builder.binary, "binary is not supported by offHeap.");
+            return new OffHeapAsyncLoggerBuilder(buildFileHandler(), builder.immediateFlush, builder.maxFlushLatency > 0,
+                    builder.exceptionHandler);
+        }
+
         @Override
-        public Logger build() {
+        public BatchLogger build() {
+            DefaultRollingFileHandler fileHandler = buildFileHandler();
+            if (builder.binary) {
+                return new BinaryLogger<>(builder.immediateFlush, builder.maxFlushLatency > 0, fileHandler);
+            }
+            return new RollingLogger<>(builder.immediateFlush, builder.maxFlushLatency > 0, fileHandler);
+        }
+
+        private DefaultRollingFileHandler buildFileHandler() {
             ExceptionHandler exceptionHandler = builder.exceptionHandler;
             String fileName = builder.fileName;
             boolean isAppend = builder.isAppend;
@@ -180,6 +321,7 @@ public abstract class LoggerBuilder {
             boolean useDirectMemory = builder.useDirectMemory;
             Clock clock = builder.clock;
             boolean immediateFlush = builder.immediateFlush;
+            long maxFlushLatency = builder.maxFlushLatency;
 
             FilePattern filePattern = new FilePattern(this.filePattern, clock);
 
@@ -193,26 +335,47 @@ public abstract class LoggerBuilder {
 
             @SuppressWarnings("unchecked") Trigger<RollingFileHandler> trigger = new CompositeTrigger<>(triggers.toArray(new Trigger[triggers.size()]));
 
-            Rollover rollover = new DefaultRollover(minIndex, maxIndex, useMax, 0, compressionBufferSize, exceptionHandler);
-            RollingFileHandler fileHandler = new DefaultRollingFileHandler(fileName, filePattern, isAppend, fileBufferSize,
-                    useDirectMemory, clock, trigger, rollover, exceptionHandler);
-            return new RollingLogger<>(immediateFlush, fileHandler);
+            DefaultRollover rollover = new DefaultRollover(minIndex, maxIndex, useMax, 0, compressionBufferSize, builder.indexInterval > 0,
+                    exceptionHandler);
+            rollover.setIoThrottle(ioThrottle);
+            rollover.setMoveBandwidth(moveBandwidth);
+            rollover.setCompressBandwidth(compressBandwidth);
+            rollover.setStaged(staged);
+            rollover.setChecksum(checksum, checksumBandwidth);
+            DefaultRollingFileHandler fileHandler;
+            if (preallocate && maxFileSize > 0) {
+                fileHandler = new PreallocatedRollingFileHandler(fileName, filePattern, isAppend, fileBufferSize,
+                        useDirectMemory, clock, trigger, rollover, maxFileSize, exceptionHandler);
+            } else {
+                fileHandler = new DefaultRollingFileHandler(fileName, filePattern, isAppend, fileBufferSize,
+                        useDirectMemory, clock, trigger, rollover, exceptionHandler);
+            }
+            builder.configure(fileHandler);
+            return fileHandler;
         }
 
     }
 
     public static class AsyncLoggerBuilder extends LoggerBuilder {
 
-        protected final Logger logger;
+        protected final Logger[] loggers;
         protected final ExceptionHandler exceptionHandler;
         protected WaitStrategy waitStrategy = new YieldingWaitStrategy();
         protected ProducerType producerType = ProducerType.MULTI;
         protected int bufferSize = 512 * 1024;
+        protected int maxBufferSize = 0;
         protected int notifySize = 1024;
         protected AsyncLogger.AddAction addAction = new AsyncLogger.DefaultAddAction(-1);
+        protected Logger.Filter[] filters = new Logger.Filter[0];
+        protected int filterThreads = 1;
+        protected int encoderThreads = 0;
 
         private AsyncLoggerBuilder(Logger logger, ExceptionHandler exceptionHandler) {
-            this.logger = Preconditions.checkNotNull(logger);
+            this(new Logger[]{Preconditions.checkNotNull(logger)}, exceptionHandler);
+        }
+
+        private AsyncLoggerBuilder(Logger[] loggers, ExceptionHandler exceptionHandler) {
+            this.loggers = Preconditions.checkNotNull(loggers);
             this.exceptionHandler = Preconditions.checkNotNull(exceptionHandler);
         }
 
@@ -222,6 +385,15 @@ public abstract class LoggerBuilder {
             return this;
         }
 
+        /**
+         * RingBuffer的最大大小（2的幂），大于bufferSize时RingBuffer从bufferSize开始，写满时扩容为两倍，直到maxBufferSize。默认0表示不扩容。
+         */
+        public AsyncLoggerBuilder setMaxBufferSize(int maxBufferSize) {
+            Preconditions.checkArgument(maxBufferSize == 0 || Integer.bitCount(maxBufferSize) == 1);
+            this.maxBufferSize = maxBufferSize;
+            return this;
+        }
+
         public AsyncLoggerBuilder setNotifySize(int notifySize) {
             Preconditions.checkArgument(notifySize > 0);
             this.notifySize = notifySize;
@@ -242,9 +414,176 @@ public abstract class LoggerBuilder {
             this.addAction = addAction;
         }
 
+        public AsyncLoggerBuilder setFilters(Logger.Filter... filters) {
+            this.filters = Preconditions.checkNotNull(filters);
+            return this;
+        }
+
+        public AsyncLoggerBuilder setFilterThreads(int filterThreads) {
+            Preconditions.checkArgument(filterThreads > 0);
+            this.filterThreads = filterThreads;
+            return this;
+        }
+
+        public AsyncLoggerBuilder setEncoderThreads(int encoderThreads) {
+            Preconditions.checkArgument(encoderThreads >= 0);
+            this.encoderThreads = encoderThreads;
+            return this;
+        }
+
         @Override
-        public Logger build() {
-            return new AsyncLogger(logger, waitStrategy, producerType, bufferSize, notifySize, addAction, exceptionHandler);
+        public BatchLogger build() {
+            return new AsyncLogger(loggers, filters, filterThreads, encoderThreads, waitStrategy, producerType, bufferSize, maxBufferSize,
+                    notifySize, addAction, exceptionHandler);
+        }
+    }
+
+    public static class OffHeapAsyncLoggerBuilder extends LoggerBuilder {
+
+        protected final FileHandler fileHandler;
+        protected final boolean immediateFlush;
+        protected final boolean periodicFlush;
+        protected final ExceptionHandler exceptionHandler;
+        protected int capacity = 4 * 1024 * 1024;
+        protected boolean blockWhenFull = true;
+        protected long shutdownTimeout = TimeUnit.SECONDS.toMillis(10);
+
+        private OffHeapAsyncLoggerBuilder(FileHandler fileHandler, boolean immediateFlush, boolean periodicFlush,
+                                          ExceptionHandler exceptionHandler) {
+            this.fileHandler = Preconditions.checkNotNull(fileHandler);
+            this.immediateFlush = immediateFlush;
+            this.periodicFlush = periodicFlush;
+            this.exceptionHandler = Preconditions.checkNotNull(exceptionHandler);
+        }
+
+        /**
+         * 队列字节数（2的幂）。
+         */
+        public OffHeapAsyncLoggerBuilder setCapacity(int capacity) {
+            Preconditions.checkArgument(Integer.bitCount(capacity) == 1);
+            this.capacity = capacity;
+            return this;
+        }
+
+        public OffHeapAsyncLoggerBuilder setBlockWhenFull(boolean blockWhenFull) {
+            this.blockWhenFull = blockWhenFull;
+            return this;
+        }
+
+        public OffHeapAsyncLoggerBuilder setShutdownTimeout(long shutdownTimeout, TimeUnit timeUnit) {
+            Preconditions.checkArgument(shutdownTimeout >= 0);
+            this.shutdownTimeout = timeUnit.toMillis(shutdownTimeout);
+            return this;
+        }
+
+        @Override
+        public BatchLogger build() {
+            return new OffHeapAsyncLogger(fileHandler, immediateFlush, periodicFlush, capacity, blockWhenFull, shutdownTimeout,
+                    TimeUnit.MILLISECONDS, exceptionHandler);
+        }
+    }
+
+    public static class RoutingLoggerBuilder extends LoggerBuilder {
+
+        protected final RoutingLogger.Router router;
+        protected final ExceptionHandler exceptionHandler;
+        protected String fileNamePattern;
+        protected RoutingLogger.HandlerFactory handlerFactory;
+        protected int fileBufferSize = 64 * 1024;
+        protected boolean useDirectMemory = true;
+        protected Clock clock = new CachedClock();
+
+        protected int shards = 1;
+        protected int maxOpenFiles = 64;
+        protected long idleTimeout = TimeUnit.MINUTES.toMillis(5);
+
+        protected WaitStrategy waitStrategy = new YieldingWaitStrategy();
+        protected ProducerType producerType = ProducerType.MULTI;
+        protected int bufferSize = 256 * 1024;
+        protected int notifySize = 1024;
+        protected AsyncLogger.AddAction addAction = new AsyncLogger.DefaultAddAction(-1);
+
+        private RoutingLoggerBuilder(String fileNamePattern, RoutingLogger.Router router, ExceptionHandler exceptionHandler) {
+            this.fileNamePattern = Preconditions.checkNotNull(fileNamePattern);
+            this.router = Preconditions.checkNotNull(router);
+            this.exceptionHandler = Preconditions.checkNotNull(exceptionHandler);
+        }
+
+        public RoutingLoggerBuilder setHandlerFactory(RoutingLogger.HandlerFactory handlerFactory) {
+            this.handlerFactory = Preconditions.checkNotNull(handlerFactory);
+            return this;
+        }
+
+        public RoutingLoggerBuilder setFileBufferSize(int bufferSize) {
+            Preconditions.checkArgument(bufferSize > 0);
+            this.fileBufferSize = bufferSize;
+            return this;
+        }
+
+        public RoutingLoggerBuilder setUseDirectMemory(boolean useDirectMemory) {
+            this.useDirectMemory = useDirectMemory;
+            return this;
+        }
+
+        public RoutingLoggerBuilder setClock(Clock clock) {
+            this.clock = Preconditions.checkNotNull(clock);
+            return this;
+        }
+
+        public RoutingLoggerBuilder setShards(int shards) {
+            Preconditions.checkArgument(shards > 0);
+            this.shards = shards;
+            return this;
+        }
+
+        public RoutingLoggerBuilder setMaxOpenFiles(int maxOpenFiles) {
+            Preconditions.checkArgument(maxOpenFiles > 0);
+            this.maxOpenFiles = maxOpenFiles;
+            return this;
+        }
+
+        public RoutingLoggerBuilder setIdleTimeout(long idleTimeout, TimeUnit timeUnit) {
+            Preconditions.checkArgument(idleTimeout > 0);
+            this.idleTimeout = timeUnit.toMillis(idleTimeout);
+            return this;
+        }
+
+        public RoutingLoggerBuilder setBufferSize(int bufferSize) {
+            Preconditions.checkArgument(bufferSize > 0);
+            this.bufferSize = bufferSize;
+            return this;
+        }
+
+        public RoutingLoggerBuilder setNotifySize(int notifySize) {
+            Preconditions.checkArgument(notifySize > 0);
+            this.notifySize = notifySize;
+            return this;
+        }
+
+        public RoutingLoggerBuilder setProducerType(ProducerType producerType) {
+            this.producerType = Preconditions.checkNotNull(producerType);
+            return this;
+        }
+
+        public RoutingLoggerBuilder setWaitStrategy(WaitStrategy waitStrategy) {
+            this.waitStrategy = Preconditions.checkNotNull(waitStrategy);
+            return this;
+        }
+
+        public RoutingLoggerBuilder setAddAction(AsyncLogger.AddAction addAction) {
+            this.addAction = Preconditions.checkNotNull(addAction);
+            return this;
+        }
+
+        @Override
+        public BatchLogger build() {
+            RoutingLogger.HandlerFactory handlerFactory = this.handlerFactory;
+            if (handlerFactory == null) {
+                handlerFactory = new RoutingLogger.DefaultHandlerFactory(fileNamePattern, fileBufferSize, useDirectMemory, clock,
+                        exceptionHandler);
+            }
+            return new RoutingLogger(router, handlerFactory, shards, maxOpenFiles, idleTimeout, clock, waitStrategy, producerType,
+                    bufferSize, notifySize, addAction, exceptionHandler);
         }
     }
 
@@ -0,0 +1,325 @@
+package org.danielli.logging.codec;
+
+import com.google.common.base.Charsets;
+import org.danielli.common.io.IOs;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * {@link BinaryEncoder} 格式的流式解码器，逐条读取记录，遇到RESET时清空字符串表和模板表，模板字段还原为格式化后的字符串。
+ * <pre>
+ * 用法：java org.danielli.logging.codec.BinaryDecoder test.log [test.log.1.gz ...] > test.txt
+ * 每条记录输出一行：时间 key=value ...；只有message字段的记录输出为：时间 message，其中BYTES类型原样输出。
+ * </pre>
+ *
+ * @author Daniel Li
+ * @since 19 October 2026
+ */
+public class BinaryDecoder {
+
+    private final InputStream inputStream;
+    private final List<String> keys = new ArrayList<>();
+    private final List<String> templates = new ArrayList<>();
+    private int maxKeys = BinaryEncoder.DEFAULT_MAX_KEYS;
+    private int maxTemplates = BinaryEncoder.DEFAULT_MAX_TEMPLATES;
+    private long lastTime;
+    private byte[] body = new byte[256];
+    private int position;
+    private int limit;
+
+    public BinaryDecoder(InputStream inputStream) {
+        this.inputStream = inputStream instanceof BufferedInputStream ? inputStream : new BufferedInputStream(inputStream);
+    }
+
+    /**
+     * 读取下一条事件，文件结束时返回null。
+     */
+    public Record next() throws IOException {
+        while (true) {
+            int first = inputStream.read();
+            if (first < 0) {
+                return null;
+            }
+            int length = readVarint(first);
+            if (length > body.length) {
+                body = new byte[Math.max(body.length * 2, length)];
+            }
+            readFully(length);
+
+            int kind = readVarint();
+            if (kind == BinaryEncoder.RESET) {
+                int version = readVarint();
+                if (version < 1 || version > BinaryEncoder.VERSION) {
+                    throw new IOException("Unsupported binary log version: " + version);
+                }
+                maxKeys = readVarint();
+                // 版本1没有模板表
+                maxTemplates = version >= 2 ? readVarint() : 0;
+                keys.clear();
+                templates.clear();
+                lastTime = 0;
+            } else if (kind == BinaryEncoder.EVENT) {
+                return readEvent();
+            } else {
+                throw new IOException("Unknown record kind: " + kind);
+            }
+        }
+    }
+
+    private Record readEvent() throws IOException {
+        lastTime += unzigzag(readVarint64());
+        Record record = new Record(lastTime);
+        while (position < limit) {
+            int tag = readVarint();
+            int keyRef = tag >>> BinaryEncoder.TYPE_BITS;
+            String key;
+            if (keyRef == 0) {
+                key = readString();
+                if (keys.size() < maxKeys) {
+                    keys.add(key);
+                }
+            } else if (keyRef <= keys.size()) {
+                key = keys.get(keyRef - 1);
+            } else {
+                throw new IOException("Unknown key id: " + keyRef);
+            }
+
+            int type = tag & (1 << BinaryEncoder.TYPE_BITS) - 1;
+            if (type == BinaryEncoder.TEMPLATE) {
+                record.add(key, readTemplate());
+            } else {
+                record.add(key, readValue(type));
+            }
+        }
+        return record;
+    }
+
+    private String readTemplate() throws IOException {
+        int templateRef = readVarint();
+        String template;
+        if (templateRef == 0) {
+            template = readString();
+            if (templates.size() < maxTemplates) {
+                templates.add(template);
+            }
+        } else if (templateRef <= templates.size()) {
+            template = templates.get(templateRef - 1);
+        } else {
+            throw new IOException("Unknown template id: " + templateRef);
+        }
+        int length = readVarint();
+        if (length > limit - position) {
+            throw new IOException("Corrupted record");
+        }
+        Object[] arguments = new Object[length];
+        for (int i = 0; i < length; i++) {
+            arguments[i] = readValue(readVarint());
+        }
+        return MessageTemplate.format(template, arguments);
+    }
+
+    private Object readValue(int type) throws IOException {
+        switch (type) {
+            case BinaryEncoder.LONG:
+                return unzigzag(readVarint64());
+            case BinaryEncoder.DOUBLE:
+                long bits = 0;
+                for (int i = 0; i < 8; i++) {
+                    bits = bits << 8 | readByte() & 0xFF;
+                }
+                return Double.longBitsToDouble(bits);
+            case BinaryEncoder.STRING:
+                return readString();
+            case BinaryEncoder.BYTES:
+                return readBytes();
+            default:
+                throw new IOException("Unknown field type: " + type);
+        }
+    }
+
+    private void readFully(int length) throws IOException {
+        int read = 0;
+        while (read < length) {
+            int count = inputStream.read(body, read, length - read);
+            if (count < 0) {
+                throw new EOFException("Truncated record");
+            }
+            read += count;
+        }
+        position = 0;
+        limit = length;
+    }
+
+    private byte readByte() throws IOException {
+        if (position >= limit) {
+            throw new IOException("Corrupted record");
+        }
+        return body[position++];
+    }
+
+    private String readString() throws IOException {
+        int length = readVarint();
+        if (length > limit - position) {
+            throw new IOException("Corrupted record");
+        }
+        String value = new String(body, position, length, Charsets.UTF_8);
+        position += length;
+        return value;
+    }
+
+    private byte[] readBytes() throws IOException {
+        int length = readVarint();
+        if (length > limit - position) {
+            throw new IOException("Corrupted record");
+        }
+        byte[] value = new byte[length];
+        System.arraycopy(body, position, value, 0, length);
+        position += length;
+        return value;
+    }
+
+    private int readVarint(int first) throws IOException {
+        int value = first & 0x7F;
+        int shift = 7;
+        int b = first;
+        while ((b & 0x80) != 0) {
+            if (shift > 28) {
+                throw new IOException("Malformed varint");
+            }
+            b = inputStream.read();
+            if (b < 0) {
+                throw new EOFException("Truncated record");
+            }
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        }
+        return value;
+    }
+
+    private int readVarint() throws IOException {
+        return (int) readVarint64();
+    }
+
+    private long readVarint64() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static long unzigzag(long value) {
+        return value >>> 1 ^ -(value & 1);
+    }
+
+    public void close() {
+        IOs.closeQuietly(inputStream);
+    }
+
+    /**
+     * 将二进制日志转换为文本。
+     */
+    public static void decode(InputStream inputStream, OutputStream outputStream) throws IOException {
+        BinaryDecoder decoder = new BinaryDecoder(inputStream);
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+        Record record;
+        while ((record = decoder.next()) != null) {
+            if (record.size() == 1 && BinaryEncoder.MESSAGE.equals(record.getKey(0)) && record.getValue(0) instanceof byte[]) {
+                outputStream.write((byte[]) record.getValue(0));
+            } else if (record.size() == 1 && BinaryEncoder.MESSAGE.equals(record.getKey(0))) {
+                String line = format.format(new Date(record.getTimeMillis())) + ' ' + record.getValue(0) + '\n';
+                outputStream.write(line.getBytes(Charsets.UTF_8));
+            } else {
+                outputStream.write(record.toString(format).getBytes(Charsets.UTF_8));
+                outputStream.write('\n');
+            }
+        }
+        outputStream.flush();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: BinaryDecoder <file>...");
+            System.exit(1);
+        }
+        for (String fileName : args) {
+            InputStream inputStream = new FileInputStream(fileName);
+            try {
+                if (fileName.endsWith(".gz")) {
+                    inputStream = new GZIPInputStream(inputStream);
+                }
+                decode(inputStream, System.out);
+            } finally {
+                IOs.closeQuietly(inputStream);
+            }
+        }
+    }
+
+    /**
+     * 解码后的事件，值为Long、Double、String或byte[]，模板字段为格式化后的String。
+     */
+    public static class Record {
+
+        private final long timeMillis;
+        private final List<String> keys = new ArrayList<>();
+        private final List<Object> values = new ArrayList<>();
+
+        Record(long timeMillis) {
+            this.timeMillis = timeMillis;
+        }
+
+        void add(String key, Object value) {
+            keys.add(key);
+            values.add(value);
+        }
+
+        public long getTimeMillis() {
+            return timeMillis;
+        }
+
+        public int size() {
+            return keys.size();
+        }
+
+        public String getKey(int index) {
+            return keys.get(index);
+        }
+
+        public Object getValue(int index) {
+            return values.get(index);
+        }
+
+        String toString(SimpleDateFormat format) {
+            StringBuilder builder = new StringBuilder(format.format(new Date(timeMillis)));
+            for (int i = 0; i < keys.size(); i++) {
+                builder.append(' ').append(keys.get(i)).append('=');
+                Object value = values.get(i);
+                if (value instanceof byte[]) {
+                    builder.append(new String((byte[]) value, Charsets.UTF_8));
+                } else {
+                    builder.append(value);
+                }
+            }
+            return builder.toString();
+        }
+
+        @Override
+        public String toString() {
+            return toString(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS"));
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package org.danielli.logging.codec;
+
+import com.google.common.base.Preconditions;
+import org.danielli.logging.LoggerEvent;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 二进制日志编码器，编码到复用的数组中，由调用方整体写入日志文件的缓冲区。
+ * <pre>
+ * 记录格式：varint(bodyLength) + body，body以varint(kind)开头。
+ *  RESET：varint(VERSION) varint(maxKeys) varint(maxTemplates)，每个文件（或每次打开文件）的第一条记录，清空字符串表、模板表和时间基准。
+ *  EVENT：zigzag varint(与上一条记录的时间差) + 字段*，字段数由bodyLength确定。
+ * 字段格式：varint(keyRef << 3 | type)，keyRef为0表示新key，其后为varint(length) + UTF-8，
+ *  字符串表未满maxKeys时按出现顺序分配id（从1开始），之后以id引用。
+ *  LONG：zigzag varint；DOUBLE：8字节大端；STRING：varint(length) + UTF-8；BYTES：varint(length) + 内容。
+ *  TEMPLATE：varint(templateRef) + varint(argCount) + (varint(type) + 值)*，templateRef为0表示新模板，其后为varint(length) + UTF-8，
+ *  模板表未满maxTemplates时按出现顺序分配id（从1开始）。参数按类型编码为LONG、DOUBLE、BYTES或STRING（其他对象取String.valueOf）。
+ * {@link TemplateEvent}编码为TEMPLATE字段message，同时实现{@link StructuredEvent}时其后追加字段；
+ * 其他非{@link StructuredEvent}的事件编码为单个BYTES字段message。
+ * 字符串表和模板表按文件维护，轮转后调用{@link #reset()}，下一条记录前重新写入RESET。非线程安全。
+ * </pre>
+ *
+ * @author Daniel Li
+ * @since 19 October 2026
+ */
+public class BinaryEncoder implements StructuredEvent.FieldWriter {
+
+    static final int VERSION = 2;
+    static final int DEFAULT_MAX_KEYS = 4096;
+    static final int DEFAULT_MAX_TEMPLATES = 4096;
+
+    static final int RESET = 0;
+    static final int EVENT = 1;
+
+    static final int TYPE_BITS = 3;
+    static final int LONG = 0;
+    static final int DOUBLE = 1;
+    static final int STRING = 2;
+    static final int BYTES = 3;
+    static final int TEMPLATE = 4;
+
+    static final String MESSAGE = "message";
+
+    /**
+     * 预留给RESET记录（最多13字节）和记录长度（最多5字节）。
+     */
+    private static final int HEADROOM = 24;
+
+    private final int maxKeys;
+    private final int maxTemplates;
+    private final Map<String, Integer> keys = new HashMap<>();
+    private final Map<String, Integer> templates = new HashMap<>();
+    private byte[] buffer = new byte[256];
+    private int offset;
+    private int position;
+    private long lastTime;
+    private boolean resetPending = true;
+
+    public BinaryEncoder() {
+        this(DEFAULT_MAX_KEYS, DEFAULT_MAX_TEMPLATES);
+    }
+
+    public BinaryEncoder(int maxKeys, int maxTemplates) {
+        Preconditions.checkArgument(maxKeys >= 0);
+        Preconditions.checkArgument(maxTemplates >= 0);
+        this.maxKeys = maxKeys;
+        this.maxTemplates = maxTemplates;
+    }
+
+    /**
+     * 清空字符串表和模板表，下一条记录前写入RESET。
+     */
+    public void reset() {
+        keys.clear();
+        templates.clear();
+        lastTime = 0;
+        resetPending = true;
+    }
+
+    /**
+     * 编码事件，返回编码后的长度，内容为{@link #array()}中从{@link #offset()}开始的length字节。
+     */
+    public int encode(LoggerEvent event) {
+        boolean writeReset = resetPending;
+        resetPending = false;
+
+        position = HEADROOM;
+        writeVarint(EVENT);
+        long timeMillis = event.getTimeMillis();
+        writeVarint64(zigzag(timeMillis - lastTime));
+        lastTime = timeMillis;
+        if (event instanceof TemplateEvent) {
+            TemplateEvent templateEvent = (TemplateEvent) event;
+            writeTemplate(MESSAGE, templateEvent.getTemplate(), templateEvent.getArguments());
+        }
+        if (event instanceof StructuredEvent) {
+            ((StructuredEvent) event).writeFields(this);
+        } else if (!(event instanceof TemplateEvent)) {
+            write(MESSAGE, event.toByteArray());
+        }
+
+        int end = position;
+        int bodyLength = end - HEADROOM;
+        offset = HEADROOM - varintSize(bodyLength);
+        if (writeReset) {
+            offset -= 1 + resetBodySize();
+        }
+        position = offset;
+        if (writeReset) {
+            writeVarint(resetBodySize());
+            writeVarint(RESET);
+            writeVarint(VERSION);
+            writeVarint(maxKeys);
+            writeVarint(maxTemplates);
+        }
+        writeVarint(bodyLength);
+        position = end;
+        return end - offset;
+    }
+
+    public byte[] array() {
+        return buffer;
+    }
+
+    public int offset() {
+        return offset;
+    }
+
+    @Override
+    public void write(String key, long value) {
+        writeKey(key, LONG);
+        writeVarint64(zigzag(value));
+    }
+
+    @Override
+    public void write(String key, double value) {
+        writeKey(key, DOUBLE);
+        writeDouble(value);
+    }
+
+    private void writeDouble(double value) {
+        ensure(8);
+        long bits = Double.doubleToRawLongBits(value);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            buffer[position++] = (byte) (bits >>> shift);
+        }
+    }
+
+    @Override
+    public void write(String key, String value) {
+        writeKey(key, STRING);
+        writeString(value);
+    }
+
+    @Override
+    public void write(String key, byte[] value) {
+        writeKey(key, BYTES);
+        writeBytes(value);
+    }
+
+    private void writeBytes(byte[] value) {
+        writeVarint(value.length);
+        ensure(value.length);
+        System.arraycopy(value, 0, buffer, position, value.length);
+        position += value.length;
+    }
+
+    /**
+     * 写入模板字段，模板在每个文件中首次出现时内联写入，之后以id引用。
+     */
+    public void writeTemplate(String key, String template, Object[] arguments) {
+        writeKey(key, TEMPLATE);
+        Integer id = templates.get(template);
+        if (id != null) {
+            writeVarint(id);
+        } else {
+            writeVarint(0);
+            writeString(template);
+            if (templates.size() < maxTemplates) {
+                templates.put(template, templates.size() + 1);
+            }
+        }
+        int length = arguments == null ? 0 : arguments.length;
+        writeVarint(length);
+        for (int i = 0; i < length; i++) {
+            writeArgument(arguments[i]);
+        }
+    }
+
+    private void writeArgument(Object argument) {
+        if (argument instanceof Long || argument instanceof Integer || argument instanceof Short || argument instanceof Byte) {
+            writeVarint(LONG);
+            writeVarint64(zigzag(((Number) argument).longValue()));
+        } else if (argument instanceof Double || argument instanceof Float) {
+            writeVarint(DOUBLE);
+            writeDouble(((Number) argument).doubleValue());
+        } else if (argument instanceof byte[]) {
+            writeVarint(BYTES);
+            writeBytes((byte[]) argument);
+        } else {
+            writeVarint(STRING);
+            writeString(String.valueOf(argument));
+        }
+    }
+
+    private void writeKey(String key, int type) {
+        Integer id = keys.get(key);
+        if (id != null) {
+            writeVarint(id << TYPE_BITS | type);
+            return;
+        }
+        writeVarint(type);
+        writeString(key);
+        if (keys.size() < maxKeys) {
+            keys.put(key, keys.size() + 1);
+        }
+    }
+
+    private int resetBodySize() {
+        return varintSize(RESET) + varintSize(VERSION) + varintSize(maxKeys) + varintSize(maxTemplates);
+    }
+
+    private void writeString(String value) {
+        int length = value.length();
+        int utf8Length = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                utf8Length++;
+            } else if (c < 0x800) {
+                utf8Length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                utf8Length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                utf8Length++;
+            } else {
+                utf8Length += 3;
+            }
+        }
+        writeVarint(utf8Length);
+        ensure(utf8Length);
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer[position++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xC0 | c >> 6);
+                buffer[position++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer[position++] = (byte) (0xF0 | codePoint >> 18);
+                buffer[position++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                buffer[position++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                buffer[position++] = (byte) (0x80 | codePoint & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                // 与String.getBytes一致，孤立的代理字符替换为'?'
+                buffer[position++] = '?';
+            } else {
+                buffer[position++] = (byte) (0xE0 | c >> 12);
+                buffer[position++] = (byte) (0x80 | c >> 6 & 0x3F);
+                buffer[position++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+    }
+
+    private void writeVarint(int value) {
+        ensure(5);
+        while ((value & ~0x7F) != 0) {
+            buffer[position++] = (byte) (value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+    }
+
+    private void writeVarint64(long value) {
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) (value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+    }
+
+    private void ensure(int length) {
+        if (position + length > buffer.length) {
+            byte[] newBuffer = new byte[Math.max(buffer.length * 2, position + length)];
+            System.arraycopy(buffer, 0, newBuffer, 0, position);
+            buffer = newBuffer;
+        }
+    }
+
+    static long zigzag(long value) {
+        return value << 1 ^ value >> 63;
+    }
+
+    static int varintSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+}
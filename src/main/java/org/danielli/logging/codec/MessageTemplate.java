@@ -0,0 +1,42 @@
+package org.danielli.logging.codec;
+
+import com.google.common.base.Charsets;
+
+/**
+ * 消息模板格式化。
+ *
+ * @author Daniel Li
+ * @since 19 October 2026
+ */
+public final class MessageTemplate {
+
+    private MessageTemplate() {
+    }
+
+    /**
+     * 依次用参数替换模板中的"{}"，多余的占位符保留原样，多余的参数忽略，byte[]按UTF-8解码。
+     */
+    public static String format(String template, Object[] arguments) {
+        int length = arguments == null ? 0 : arguments.length;
+        if (length == 0) {
+            return template;
+        }
+        StringBuilder builder = new StringBuilder(template.length() + 16 * length);
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            int index = template.indexOf("{}", start);
+            if (index < 0) {
+                break;
+            }
+            builder.append(template, start, index);
+            Object argument = arguments[i];
+            if (argument instanceof byte[]) {
+                builder.append(new String((byte[]) argument, Charsets.UTF_8));
+            } else {
+                builder.append(argument);
+            }
+            start = index + 2;
+        }
+        return builder.append(template, start, template.length()).toString();
+    }
+}
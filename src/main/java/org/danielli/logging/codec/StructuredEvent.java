@@ -0,0 +1,31 @@
+package org.danielli.logging.codec;
+
+import org.danielli.logging.LoggerEvent;
+
+/**
+ * 结构化日志事件，由{@link BinaryEncoder}按字段编码，不经过{@link #toByteArray()}。
+ *
+ * @author Daniel Li
+ * @since 19 October 2026
+ */
+public interface StructuredEvent extends LoggerEvent {
+
+    /**
+     * 按顺序将字段写入writer，同一事件中key可重复。
+     */
+    void writeFields(FieldWriter writer);
+
+    /**
+     * 字段写入器。
+     */
+    interface FieldWriter {
+
+        void write(String key, long value);
+
+        void write(String key, double value);
+
+        void write(String key, String value);
+
+        void write(String key, byte[] value);
+    }
+}
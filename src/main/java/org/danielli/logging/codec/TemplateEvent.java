@@ -0,0 +1,17 @@
+package org.danielli.logging.codec;
+
+import org.danielli.logging.LoggerEvent;
+
+/**
+ * 模板日志事件，由{@link BinaryEncoder}编码为模板id和参数，同一文件中相同的模板只写入一次。
+ * 模板使用"{}"作为占位符，参见{@link MessageTemplate#format}。
+ *
+ * @author Daniel Li
+ * @since 19 October 2026
+ */
+public interface TemplateEvent extends LoggerEvent {
+
+    String getTemplate();
+
+    Object[] getArguments();
+}
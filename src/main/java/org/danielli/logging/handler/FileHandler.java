@@ -1,5 +1,7 @@
 package org.danielli.logging.handler;
 
+import java.nio.ByteBuffer;
+
 /**
  * 日志文件。
  *
@@ -12,6 +14,23 @@ public interface FileHandler {
 
     void write(byte[] data);
 
+    void write(byte[] data, int offset, int length);
+
+    /**
+     * 写入一条时间为timeMillis的记录，用于时间索引。
+     */
+    void write(long timeMillis, byte[] data, int offset, int length);
+
+    /**
+     * 写入data中剩余的字节，写入后data的position等于limit。
+     */
+    void write(ByteBuffer data);
+
+    /**
+     * 写入一条时间为timeMillis的记录（data中剩余的字节），用于时间索引。
+     */
+    void write(long timeMillis, ByteBuffer data);
+
     void flush();
 
     String getName();
@@ -15,6 +15,11 @@ public interface RollingFileHandler extends FileHandler {
 
     void checkRollover(LoggerEvent event);
 
+    /**
+     * 检查轮转，length为即将写入的字节数，返回是否发生轮转。
+     */
+    boolean checkRollover(LoggerEvent event, int length);
+
     FilePattern getFilePattern();
 
 }
@@ -1,6 +1,7 @@
 package org.danielli.logging.handler.support;
 
 import org.danielli.common.clock.Clock;
+import org.danielli.common.concurrent.SharedScheduler;
 import org.danielli.common.io.IOs;
 import org.danielli.logging.exception.ExceptionHandler;
 import org.danielli.logging.exception.LoggerException;
@@ -11,9 +12,19 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * 默认日志文件。
+ * <pre>
+ * 可通过{@link #setMaxFlushLatency}开启后台刷新：共享的调度线程检查缓冲区中最早未刷新的数据是否超过maxFlushLatency，
+ * 过期时把刷新交给共享的IO线程（每个文件同时最多一个），获取锁和磁盘IO都不占用调度线程。
+ * 写入时只在缓冲区由空变为非空时记录一次时间（volatile写），只在数据过期时才获取锁。
+ * 可通过{@link #setFlightRecorder}同时将每次写入追加到{@link FlightRecorder}，崩溃时保留最近的日志。
+ * 可通过{@link #setIndexInterval}生成稀疏时间索引{@link TimeIndex}，未指定时间的写入所在块的时间范围视为无穷大。
+ * </pre>
  *
  * @author Daniel Li
  * @since 8 August 2015
@@ -28,6 +39,15 @@ public class DefaultFileHandler implements FileHandler {
     protected FileChannel fileChannel;
     protected long size;
     protected long initialTime;
+    /**
+     * 缓冲区中最早未刷新数据的写入时间，0表示缓冲区为空。
+     */
+    protected volatile long unflushedTime;
+    private ScheduledFuture<?> flushTask;
+    private final AtomicBoolean flushing = new AtomicBoolean();
+    private FlightRecorder flightRecorder;
+    private int indexInterval;
+    private TimeIndex timeIndex;
 
     public DefaultFileHandler(String fileName, boolean isAppend, int bufferSize, boolean useDirectMemory, Clock clock, ExceptionHandler handler) throws LoggerException {
         File file = new File(fileName);
@@ -65,14 +85,117 @@ public class DefaultFileHandler implements FileHandler {
         this.handler = handler;
     }
 
+    /**
+     * 开启后台刷新，每maxFlushLatency / 2检查一次，最早未刷新的数据最多保留约1.5倍maxFlushLatency。
+     */
+    public synchronized void setMaxFlushLatency(long maxFlushLatency, TimeUnit timeUnit) {
+        if (flushTask != null) {
+            flushTask.cancel(false);
+        }
+        final long maxFlushLatencyMillis = Math.max(1, timeUnit.toMillis(maxFlushLatency));
+        final Runnable staleFlush = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    flushIfStale(maxFlushLatencyMillis);
+                } finally {
+                    flushing.set(false);
+                }
+            }
+        };
+        flushTask = SharedScheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                // 调度线程只检查，刷新交给IO线程，上一次刷新未完成时不重复提交
+                if (isStale(maxFlushLatencyMillis) && flushing.compareAndSet(false, true)) {
+                    SharedScheduler.execute(staleFlush);
+                }
+            }
+        }, Math.max(1, maxFlushLatencyMillis / 2), TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void setFlightRecorder(FlightRecorder flightRecorder) {
+        this.flightRecorder = flightRecorder;
+    }
+
+    /**
+     * 每indexInterval字节生成一个索引块。
+     */
+    public synchronized void setIndexInterval(int indexInterval) {
+        if (timeIndex != null) {
+            timeIndex.close(size);
+        }
+        this.indexInterval = indexInterval;
+        openIndex();
+    }
+
+    /**
+     * 打开当前文件的索引，轮转重建文件后调用。
+     */
+    protected void openIndex() {
+        if (indexInterval > 0) {
+            try {
+                timeIndex = new TimeIndex(fileName, size, indexInterval);
+            } catch (LoggerException e) {
+                timeIndex = null;
+                handler.handleException("Unable to open index of " + fileName, e);
+            }
+        }
+    }
+
+    /**
+     * 最早未刷新的数据超过maxFlushLatencyMillis时刷新，未过期时不获取锁。
+     */
+    public void flushIfStale(long maxFlushLatencyMillis) {
+        if (!isStale(maxFlushLatencyMillis)) {
+            return;
+        }
+        synchronized (this) {
+            // 关闭后unflushedTime为0
+            if (this.unflushedTime != 0) {
+                flush();
+            }
+        }
+    }
+
+    private boolean isStale(long maxFlushLatencyMillis) {
+        long unflushedTime = this.unflushedTime;
+        return unflushedTime != 0 && clock.currentTimeMillis() - unflushedTime >= maxFlushLatencyMillis;
+    }
+
     @Override
     public synchronized void close() {
+        if (flushTask != null) {
+            flushTask.cancel(false);
+        }
+        closeFile();
+        if (flightRecorder != null) {
+            flightRecorder.close();
+        }
+    }
+
+    /**
+     * 刷新并关闭当前文件，轮转时使用，不停止后台刷新。
+     */
+    protected void closeFile() {
         flush();
         try {
-            fileChannel.close();
+            closeChannel();
         } catch (IOException e) {
             handler.handleException("Unable to close RandomAccessFile", e);
         }
+        if (timeIndex != null) {
+            try {
+                timeIndex.close(size);
+            } catch (LoggerException e) {
+                handler.handleException("Unable to close index of " + fileName, e);
+            }
+            timeIndex = null;
+        }
+    }
+
+    protected void closeChannel() throws IOException {
+        fileChannel.close();
     }
 
     @Override
@@ -80,7 +203,19 @@ public class DefaultFileHandler implements FileHandler {
         write(data, 0, data.length);
     }
 
-    protected synchronized void write(byte[] bytes, int offset, int length) {
+    @Override
+    public void write(byte[] bytes, int offset, int length) {
+        write(TimeIndex.UNKNOWN_TIME, bytes, offset, length);
+    }
+
+    @Override
+    public synchronized void write(long timeMillis, byte[] bytes, int offset, int length) {
+        if (timeIndex != null) {
+            timeIndex.mark(size, timeMillis);
+        }
+        if (flightRecorder != null) {
+            flightRecorder.append(bytes, offset, length);
+        }
         size += length;
         int chunk;
         do {
@@ -92,6 +227,53 @@ public class DefaultFileHandler implements FileHandler {
             offset += chunk;
             length -= chunk;
         } while (length > 0);
+        if (unflushedTime == 0 && buffer.position() > 0) {
+            unflushedTime = clock.currentTimeMillis();
+        }
+    }
+
+    @Override
+    public final void write(ByteBuffer data) {
+        write(TimeIndex.UNKNOWN_TIME, data);
+    }
+
+    /**
+     * 与写入byte[]相同，可直接写入堆外内存中的数据；缓冲区为空且数据不小于缓冲区时不经过缓冲区，直接写入文件。
+     */
+    @Override
+    public synchronized void write(long timeMillis, ByteBuffer data) {
+        int length = data.remaining();
+        if (timeIndex != null) {
+            timeIndex.mark(size, timeMillis);
+        }
+        if (flightRecorder != null) {
+            flightRecorder.append(data);
+        }
+        size += length;
+        if (buffer.position() == 0 && length >= buffer.capacity()) {
+            try {
+                while (data.hasRemaining()) {
+                    fileChannel.write(data);
+                }
+            } catch (IOException e) {
+                handler.handleException("Error in write buffer to randomAccessFile", e);
+            }
+            return;
+        }
+        int limit = data.limit();
+        do {
+            if (length > buffer.remaining()) {
+                flush();
+            }
+            int chunk = Math.min(length, buffer.remaining());
+            data.limit(data.position() + chunk);
+            buffer.put(data);
+            data.limit(limit);
+            length -= chunk;
+        } while (length > 0);
+        if (unflushedTime == 0 && buffer.position() > 0) {
+            unflushedTime = clock.currentTimeMillis();
+        }
     }
 
     @Override
@@ -103,6 +285,14 @@ public class DefaultFileHandler implements FileHandler {
             handler.handleException("Error in flush buffer to randomAccessFile", e);
         }
         buffer.clear();
+        unflushedTime = 0;
+        if (timeIndex != null) {
+            try {
+                timeIndex.flush();
+            } catch (LoggerException e) {
+                handler.handleException("Error in flush index of " + fileName, e);
+            }
+        }
     }
 
     @Override
@@ -43,15 +43,27 @@ public class DefaultRollingFileHandler extends DefaultFileHandler implements Rol
 
     @Override
     public synchronized void checkRollover(LoggerEvent event) {
-        if (trigger.isTriggeringEvent(event) && rolling()) {
+        checkRollover(event, 0);
+    }
+
+    @Override
+    public synchronized boolean checkRollover(LoggerEvent event, int length) {
+        if (isTriggeringEvent(event, length) && rolling()) {
             try {
                 size = 0;
                 initialTime = clock.currentTimeMillis();
                 recreate();
+                openIndex();
             } catch (IOException e) {
                 handler.handleException("Recreate RandomAccessFile error.", e);
             }
+            return true;
         }
+        return false;
+    }
+
+    protected boolean isTriggeringEvent(LoggerEvent event, int length) {
+        return trigger.isTriggeringEvent(event);
     }
 
     protected void recreate() throws IOException {
@@ -75,7 +87,7 @@ public class DefaultRollingFileHandler extends DefaultFileHandler implements Rol
         try {
             Rollover.Description descriptor = rollover.rollover(this.fileName, this.filePattern);
             if (descriptor != null) {
-                super.close();
+                closeFile();
                 if (descriptor.getSync() != null) {
                     try {
                         success = descriptor.getSync().execute();
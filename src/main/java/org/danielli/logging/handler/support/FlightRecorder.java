@@ -0,0 +1,178 @@
+package org.danielli.logging.handler.support;
+
+import org.danielli.common.io.IOs;
+import org.danielli.logging.exception.LoggerException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 飞行记录器。基于内存映射文件的环形缓冲区，保存最近capacity字节的日志，JVM崩溃后由操作系统负责落盘，可通过{@link FlightRecorderReader}还原。
+ * <pre>
+ * 文件格式：
+ *  头部（32字节）：magic(int) capacity(int) head(long) tail(long) 保留(8字节)。
+ *  数据区（capacity字节）：记录为length(int) + 内容，head和tail为逻辑偏移，对capacity取模即为数据区位置。
+ *  数据区末尾放不下一条记录时写入WRAP标记（不足4字节时省略），从数据区开头继续写入。
+ * 写入顺序：先推进tail（覆盖最旧的记录），再写内容和长度，最后更新head，任何时刻崩溃都能读到完整的[tail, head)。
+ * 超过capacity - 4字节的记录不保存。非线程安全，由DefaultFileHandler在写入锁内调用。
+ * </pre>
+ *
+ * @author Daniel Li
+ * @since 19 October 2026
+ */
+public class FlightRecorder {
+
+    static final int MAGIC = 0x464C5452;
+    static final int WRAP = -1;
+    static final int HEADER_SIZE = 32;
+    static final int CAPACITY_OFFSET = 4;
+    static final int HEAD_OFFSET = 8;
+    static final int TAIL_OFFSET = 16;
+
+    private final String fileName;
+    private final int capacity;
+    private final FileChannel fileChannel;
+    private final MappedByteBuffer buffer;
+    private long head;
+    private long tail;
+
+    /**
+     * 已存在且容量一致的文件继续追加，保留上次运行的内容。
+     */
+    public FlightRecorder(String fileName, int capacity) throws LoggerException {
+        if (capacity <= 4) {
+            throw new IllegalArgumentException("capacity must be greater than 4");
+        }
+        File file = new File(fileName);
+        File parent = file.getParentFile();
+        if (null != parent && !parent.exists()) {
+            parent.mkdirs();
+        }
+
+        RandomAccessFile randomAccessFile = null;
+        try {
+            randomAccessFile = new RandomAccessFile(file, "rw");
+            if (randomAccessFile.length() != HEADER_SIZE + (long) capacity) {
+                randomAccessFile.setLength(0);
+                randomAccessFile.setLength(HEADER_SIZE + (long) capacity);
+            }
+            this.fileChannel = randomAccessFile.getChannel();
+            this.buffer = fileChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity);
+        } catch (IOException e) {
+            IOs.closeQuietly(randomAccessFile);
+            throw new LoggerException(e);
+        }
+        this.fileName = fileName;
+        this.capacity = capacity;
+
+        if (buffer.getInt(0) == MAGIC && buffer.getInt(CAPACITY_OFFSET) == capacity
+                && buffer.getLong(TAIL_OFFSET) <= buffer.getLong(HEAD_OFFSET)
+                && buffer.getLong(HEAD_OFFSET) - buffer.getLong(TAIL_OFFSET) <= capacity) {
+            this.head = buffer.getLong(HEAD_OFFSET);
+            this.tail = buffer.getLong(TAIL_OFFSET);
+        } else {
+            buffer.putLong(HEAD_OFFSET, 0);
+            buffer.putLong(TAIL_OFFSET, 0);
+            buffer.putInt(CAPACITY_OFFSET, capacity);
+            buffer.putInt(0, MAGIC);
+        }
+    }
+
+    public void append(byte[] bytes, int offset, int length) {
+        long position = reserve(length);
+        if (position < 0) {
+            return;
+        }
+        buffer.position(HEADER_SIZE + index(position) + 4);
+        buffer.put(bytes, offset, length);
+        commit(position, length);
+    }
+
+    /**
+     * 追加data中剩余的字节，不改变data的position。
+     */
+    public void append(ByteBuffer data) {
+        int length = data.remaining();
+        long position = reserve(length);
+        if (position < 0) {
+            return;
+        }
+        int start = data.position();
+        buffer.position(HEADER_SIZE + index(position) + 4);
+        buffer.put(data);
+        data.position(start);
+        commit(position, length);
+    }
+
+    /**
+     * 推进tail为一条记录腾出空间，写入WRAP标记。
+     *
+     * @return 记录的逻辑偏移，记录过大时返回-1。
+     */
+    private long reserve(int length) {
+        int recordSize = 4 + length;
+        if (recordSize > capacity) {
+            return -1;
+        }
+
+        long position = head;
+        long wrap = -1;
+        int remaining = capacity - index(position);
+        if (recordSize > remaining) {
+            wrap = position;
+            position += remaining;
+        }
+        long newHead = position + recordSize;
+
+        long newTail = tail;
+        while (newHead - newTail > capacity) {
+            newTail = next(newTail);
+        }
+        if (newTail != tail) {
+            tail = newTail;
+            buffer.putLong(TAIL_OFFSET, newTail);
+        }
+
+        if (wrap >= 0 && capacity - index(wrap) >= 4) {
+            buffer.putInt(HEADER_SIZE + index(wrap), WRAP);
+        }
+        return position;
+    }
+
+    /**
+     * 内容写入后再写长度、更新head。
+     */
+    private void commit(long position, int length) {
+        buffer.putInt(HEADER_SIZE + index(position), length);
+        head = position + 4 + length;
+        buffer.putLong(HEAD_OFFSET, head);
+    }
+
+    private int index(long position) {
+        return (int) (position % capacity);
+    }
+
+    private long next(long position) {
+        int remaining = capacity - index(position);
+        if (remaining < 4) {
+            return position + remaining;
+        }
+        int length = buffer.getInt(HEADER_SIZE + index(position));
+        if (length == WRAP) {
+            return position + remaining;
+        }
+        return position + 4 + length;
+    }
+
+    public String getName() {
+        return fileName;
+    }
+
+    public void close() {
+        IOs.closeQuietly(fileChannel);
+    }
+}
@@ -0,0 +1,82 @@
+package org.danielli.logging.handler.support;
+
+import org.danielli.common.io.IOs;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link FlightRecorder} 读取工具，按写入顺序还原最近的日志。
+ * <pre>
+ * 用法：java org.danielli.logging.handler.support.FlightRecorderReader test.log.flight > tail.log
+ * </pre>
+ *
+ * @author Daniel Li
+ * @since 19 October 2026
+ */
+public class FlightRecorderReader {
+
+    public static List<byte[]> read(String fileName) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(fileName, "r");
+        try {
+            FileChannel fileChannel = randomAccessFile.getChannel();
+            ByteBuffer buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileChannel.size());
+            if (buffer.limit() < FlightRecorder.HEADER_SIZE || buffer.getInt(0) != FlightRecorder.MAGIC) {
+                throw new IOException("Not a flight recorder file: " + fileName);
+            }
+            int capacity = buffer.getInt(FlightRecorder.CAPACITY_OFFSET);
+            long head = buffer.getLong(FlightRecorder.HEAD_OFFSET);
+            long tail = buffer.getLong(FlightRecorder.TAIL_OFFSET);
+            if (capacity <= 4 || buffer.limit() != FlightRecorder.HEADER_SIZE + capacity || tail > head || head - tail > capacity) {
+                throw new IOException("Corrupted flight recorder header: " + fileName);
+            }
+
+            List<byte[]> records = new ArrayList<>();
+            long position = tail;
+            while (position < head) {
+                int index = (int) (position % capacity);
+                int remaining = capacity - index;
+                if (remaining < 4) {
+                    position += remaining;
+                    continue;
+                }
+                int length = buffer.getInt(FlightRecorder.HEADER_SIZE + index);
+                if (length == FlightRecorder.WRAP) {
+                    position += remaining;
+                    continue;
+                }
+                if (length < 0 || 4 + length > remaining || position + 4 + length > head) {
+                    throw new IOException("Corrupted record at " + position + ": " + fileName);
+                }
+                byte[] record = new byte[length];
+                buffer.position(FlightRecorder.HEADER_SIZE + index + 4);
+                buffer.get(record);
+                records.add(record);
+                position += 4 + length;
+            }
+            return records;
+        } finally {
+            IOs.closeQuietly(randomAccessFile);
+        }
+    }
+
+    public static void read(String fileName, OutputStream outputStream) throws IOException {
+        for (byte[] record : read(fileName)) {
+            outputStream.write(record);
+        }
+        outputStream.flush();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: FlightRecorderReader <file>");
+            System.exit(1);
+        }
+        read(args[0], System.out);
+    }
+}
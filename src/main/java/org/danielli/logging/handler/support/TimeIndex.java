@@ -0,0 +1,277 @@
+package org.danielli.logging.handler.support;
+
+import org.danielli.common.io.Files;
+import org.danielli.common.io.IOs;
+import org.danielli.common.io.IoThrottle;
+import org.danielli.logging.exception.LoggerException;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 稀疏时间索引，保存在日志文件旁的{fileName}.idx中，由{@link TimeIndexReader}按时间范围定位。
+ * <pre>
+ * 文件格式：
+ *  头部（16字节）：magic(int) version(int) flags(int) 保留(4字节)，flags为COMPRESSED时偏移量为压缩文件中的偏移量。
+ *  条目（32字节）：start(long) end(long) minTime(long) maxTime(long)，每个块约interval字节，从记录边界开始。
+ * 块记录其中所有事件的最小和最大时间，事件乱序时按时间范围查找仍不会遗漏。
+ * 条目在日志文件刷新时写入，不会指向未落盘的数据：两次刷新之间结束的块保存在内存中，超过容量时扩容；当前未结束的块在关闭（或轮转）时写入。
+ * 压缩时每个块单独压缩为一个gzip成员（多个成员拼接仍是合法的gzip文件），并生成压缩文件的索引，参见{@link #compress}。
+ * 非线程安全，由DefaultFileHandler在写入锁内调用。
+ * </pre>
+ *
+ * @author Daniel Li
+ * @since 19 October 2026
+ */
+public class TimeIndex {
+
+    public static final String SUFFIX = ".idx";
+    /**
+     * 时间未知的记录，所在块的时间范围视为无穷大。
+     */
+    public static final long UNKNOWN_TIME = Long.MIN_VALUE;
+
+    static final int MAGIC = 0x54494458;
+    static final int VERSION = 1;
+    static final int COMPRESSED = 1;
+    static final int HEADER_SIZE = 16;
+    static final int ENTRY_SIZE = 32;
+
+    private final FileChannel fileChannel;
+    private final int interval;
+    private ByteBuffer pending = ByteBuffer.allocate(ENTRY_SIZE * 128);
+    private long blockStart = -1;
+    private long minTime;
+    private long maxTime;
+
+    /**
+     * 打开fileName对应的索引，丢弃超过fileSize的条目，新的块从fileSize开始。
+     */
+    public TimeIndex(String fileName, long fileSize, int interval) throws LoggerException {
+        RandomAccessFile randomAccessFile = null;
+        try {
+            randomAccessFile = new RandomAccessFile(fileName + SUFFIX, "rw");
+            FileChannel fileChannel = randomAccessFile.getChannel();
+            long valid = HEADER_SIZE;
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            if (fileSize > 0 && fileChannel.read(header, 0) == HEADER_SIZE
+                    && header.getInt(0) == MAGIC && header.getInt(4) == VERSION && header.getInt(8) == 0) {
+                ByteBuffer entry = ByteBuffer.allocate(ENTRY_SIZE);
+                while (fileChannel.read(entry, valid) == ENTRY_SIZE && entry.getLong(8) <= fileSize) {
+                    valid += ENTRY_SIZE;
+                    entry.clear();
+                }
+            } else {
+                header.clear();
+                header.putInt(MAGIC).putInt(VERSION).putInt(0).putInt(0).flip();
+                fileChannel.write(header, 0);
+            }
+            fileChannel.truncate(valid);
+            fileChannel.position(valid);
+            this.fileChannel = fileChannel;
+        } catch (IOException e) {
+            IOs.closeQuietly(randomAccessFile);
+            throw new LoggerException(e);
+        }
+        this.interval = interval;
+    }
+
+    /**
+     * 即将在offset处写入时间为timeMillis的记录。
+     */
+    public void mark(long offset, long timeMillis) {
+        if (blockStart >= 0 && offset - blockStart >= interval) {
+            endBlock(offset);
+        }
+        long min = timeMillis == UNKNOWN_TIME ? Long.MIN_VALUE : timeMillis;
+        long max = timeMillis == UNKNOWN_TIME ? Long.MAX_VALUE : timeMillis;
+        if (blockStart < 0) {
+            blockStart = offset;
+            minTime = min;
+            maxTime = max;
+        } else {
+            minTime = Math.min(minTime, min);
+            maxTime = Math.max(maxTime, max);
+        }
+    }
+
+    private void endBlock(long end) {
+        if (end > blockStart) {
+            if (!pending.hasRemaining()) {
+                // 不能提前写入，日志文件可能还没有刷新
+                ByteBuffer grown = ByteBuffer.allocate(pending.capacity() * 2);
+                pending.flip();
+                grown.put(pending);
+                pending = grown;
+            }
+            pending.putLong(blockStart).putLong(end).putLong(minTime).putLong(maxTime);
+        }
+        blockStart = -1;
+    }
+
+    /**
+     * 将已结束的块写入索引文件，在日志文件刷新后调用。
+     */
+    public void flush() throws LoggerException {
+        pending.flip();
+        try {
+            while (pending.hasRemaining()) {
+                fileChannel.write(pending);
+            }
+        } catch (IOException e) {
+            throw new LoggerException(e);
+        } finally {
+            pending.clear();
+        }
+    }
+
+    /**
+     * 结束当前块并关闭，end为日志文件的长度。
+     */
+    public void close(long end) throws LoggerException {
+        try {
+            if (blockStart >= 0) {
+                endBlock(end);
+            }
+            flush();
+        } finally {
+            IOs.closeQuietly(fileChannel);
+        }
+    }
+
+    /**
+     * 将source按索引分块压缩到destination，生成destination的索引并删除source的索引；source没有索引时整体压缩。
+     * throttle不为null时按读取和写入的字节数限速。
+     */
+    public static void compress(File source, File destination, int bufferSize, IoThrottle throttle) throws IOException {
+        File sourceIndex = new File(source.getPath() + SUFFIX);
+        File destinationIndex = new File(destination.getPath() + SUFFIX);
+        List<long[]> blocks = TimeIndexReader.blocks(sourceIndex, source.length(), false);
+        if (blocks == null) {
+            destinationIndex.delete();
+            Files.compressFile(source, destination, bufferSize, throttle);
+            return;
+        }
+
+        List<long[]> compressed = new ArrayList<>(blocks.size());
+        InputStream input = null;
+        CountingOutputStream output = null;
+        try {
+            input = new BufferedInputStream(new FileInputStream(source), bufferSize);
+            OutputStream fileOutput = new FileOutputStream(destination);
+            output = new CountingOutputStream(throttle != null ? throttle.wrap(fileOutput) : fileOutput);
+            byte[] buf = new byte[bufferSize];
+            for (long[] block : blocks) {
+                long start = output.count;
+                GZIPOutputStream gzip = new GZIPOutputStream(new MemberOutputStream(output), bufferSize);
+                long remaining = block[1] - block[0];
+                while (remaining > 0) {
+                    int n = input.read(buf, 0, (int) Math.min(buf.length, remaining));
+                    if (n < 0) {
+                        throw new IOException("Unexpected end of " + source.getPath());
+                    }
+                    if (throttle != null) {
+                        throttle.acquire(n);
+                    }
+                    gzip.write(buf, 0, n);
+                    remaining -= n;
+                }
+                gzip.close();
+                compressed.add(new long[]{start, output.count, block[2], block[3]});
+            }
+        } finally {
+            IOs.closeQuietly(input);
+            IOs.closeQuietly(output);
+        }
+
+        write(destinationIndex, COMPRESSED, compressed);
+        sourceIndex.delete();
+    }
+
+    static void write(File file, int flags, List<long[]> blocks) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + ENTRY_SIZE * blocks.size());
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(flags).putInt(0);
+        for (long[] block : blocks) {
+            buffer.putLong(block[0]).putLong(block[1]).putLong(block[2]).putLong(block[3]);
+        }
+        buffer.flip();
+        FileOutputStream output = new FileOutputStream(file);
+        try {
+            FileChannel fileChannel = output.getChannel();
+            while (buffer.hasRemaining()) {
+                fileChannel.write(buffer);
+            }
+        } finally {
+            IOs.closeQuietly(output);
+        }
+    }
+
+    /**
+     * 重命名日志文件的索引，没有索引时删除destination的旧索引。
+     */
+    public static void rename(File source, File destination) {
+        File sourceIndex = new File(source.getPath() + SUFFIX);
+        File destinationIndex = new File(destination.getPath() + SUFFIX);
+        destinationIndex.delete();
+        if (sourceIndex.exists()) {
+            sourceIndex.renameTo(destinationIndex);
+        }
+    }
+
+    public static void delete(File file) {
+        new File(file.getPath() + SUFFIX).delete();
+    }
+
+    /**
+     * 关闭gzip成员时不关闭底层文件。
+     */
+    private static class MemberOutputStream extends FilterOutputStream {
+
+        MemberOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package org.danielli.logging.handler.support;
+
+import com.google.common.io.ByteStreams;
+import org.danielli.common.io.IOs;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * {@link TimeIndex} 读取工具，按时间范围定位日志文件中的数据。
+ * <pre>
+ * 返回的数据从块边界开始，是时间范围的超集（块内事件乱序或跨越边界），由调用方按时间过滤。
+ * 分块压缩的.gz文件只解压相交的块；没有索引时返回整个文件（.gz文件整体解压）。
+ * 二进制格式（BinaryLogger）的字符串表从文件开头建立，不能从块中间解码，只适用于文本日志。
+ * 用法：java org.danielli.logging.handler.support.TimeIndexReader test.1.log.gz 1760000000000 1760000300000 > range.log
+ * </pre>
+ *
+ * @author Daniel Li
+ * @since 19 October 2026
+ */
+public class TimeIndexReader {
+
+    /**
+     * 打开fileName中与[fromMillis, toMillis]相交的部分。
+     */
+    public static InputStream open(String fileName, long fromMillis, long toMillis) throws IOException {
+        File file = new File(fileName);
+        File index = new File(fileName + TimeIndex.SUFFIX);
+        boolean compressed = fileName.endsWith(".gz");
+        List<long[]> blocks = blocks(index, file.length(), compressed);
+        if (blocks == null) {
+            InputStream inputStream = new BufferedInputStream(new FileInputStream(file));
+            return compressed ? new GZIPInputStream(inputStream) : inputStream;
+        }
+
+        long start = -1;
+        long end = -1;
+        for (long[] block : blocks) {
+            if (block[3] >= fromMillis && block[2] <= toMillis) {
+                if (start < 0) {
+                    start = block[0];
+                }
+                end = block[1];
+            }
+        }
+        if (start < 0) {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+
+        FileInputStream fileInputStream = new FileInputStream(file);
+        try {
+            fileInputStream.getChannel().position(start);
+        } catch (IOException e) {
+            IOs.closeQuietly(fileInputStream);
+            throw e;
+        }
+        InputStream inputStream = ByteStreams.limit(new BufferedInputStream(fileInputStream), end - start);
+        return compressed ? new GZIPInputStream(inputStream) : inputStream;
+    }
+
+    /**
+     * 读取索引，返回覆盖[0, length)的块（start, end, minTime, maxTime），没有索引的区间时间范围视为无穷大；
+     * 索引不存在、无效或与compressed不一致时返回null。
+     */
+    static List<long[]> blocks(File index, long length, boolean compressed) throws IOException {
+        if (!index.exists()) {
+            return null;
+        }
+        ByteBuffer buffer;
+        FileInputStream inputStream = new FileInputStream(index);
+        try {
+            FileChannel fileChannel = inputStream.getChannel();
+            buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileChannel.size());
+        } finally {
+            IOs.closeQuietly(inputStream);
+        }
+        if (buffer.limit() < TimeIndex.HEADER_SIZE || buffer.getInt(0) != TimeIndex.MAGIC || buffer.getInt(4) != TimeIndex.VERSION
+                || (buffer.getInt(8) == TimeIndex.COMPRESSED) != compressed) {
+            return null;
+        }
+
+        List<long[]> blocks = new ArrayList<>();
+        long position = 0;
+        for (int i = TimeIndex.HEADER_SIZE; i + TimeIndex.ENTRY_SIZE <= buffer.limit(); i += TimeIndex.ENTRY_SIZE) {
+            long start = buffer.getLong(i);
+            long end = buffer.getLong(i + 8);
+            if (start < position || end <= start || end > length) {
+                break;
+            }
+            if (start > position) {
+                blocks.add(new long[]{position, start, Long.MIN_VALUE, Long.MAX_VALUE});
+            }
+            blocks.add(new long[]{start, end, buffer.getLong(i + 16), buffer.getLong(i + 24)});
+            position = end;
+        }
+        if (position < length) {
+            blocks.add(new long[]{position, length, Long.MIN_VALUE, Long.MAX_VALUE});
+        }
+        return blocks;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("Usage: TimeIndexReader <file> <fromMillis> <toMillis>");
+            System.exit(1);
+        }
+        InputStream inputStream = open(args[0], Long.parseLong(args[1]), Long.parseLong(args[2]));
+        try {
+            ByteStreams.copy(inputStream, System.out);
+        } finally {
+            IOs.closeQuietly(inputStream);
+        }
+        System.out.flush();
+    }
+}
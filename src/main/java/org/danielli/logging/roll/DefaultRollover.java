@@ -1,46 +1,170 @@
 package org.danielli.logging.roll;
 
 import org.danielli.common.io.Files;
+import org.danielli.common.io.IoThrottle;
 import org.danielli.logging.exception.ExceptionHandler;
+import org.danielli.logging.handler.support.TimeIndex;
+import org.danielli.logging.roll.action.AbstractAction;
 import org.danielli.logging.roll.action.Action;
-import org.danielli.logging.roll.action.FileRenameAction;
+import org.danielli.logging.roll.action.ChecksumAction;
+import org.danielli.logging.roll.action.CompositeAction;
+import org.danielli.logging.roll.action.FileMoveAction;
 import org.danielli.logging.roll.action.GunZipCompressAction;
 import org.danielli.logging.roll.pattern.FilePattern;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
- * 默认轮转器。
+ * 默认轮转器。indexed为true时{@link TimeIndex}索引随日志文件重命名和删除，压缩时按索引分块压缩。
+ * 文件通过{@link FileMoveAction}原子移动；当前日志文件跨文件系统移动时在异步行为中分块复制，可通过{@link #setMoveBandwidth}限速。
+ * <pre>
+ * staged为true时（归档目录较慢时使用），异步行为按阶段依次执行，每个阶段可单独限速：
+ *  同步：将当前日志文件原子重命名为同目录下的{目标文件名}.staging；
+ *  异步：在本地压缩为{压缩文件名}.staging（compressBandwidth） → 移动到filePattern指定的目录（moveBandwidth）
+ *       → 可选计算校验和{文件名}.sha256（checksumBandwidth）。
+ * 压缩在本地磁盘完成，只有压缩后的数据写入归档目录。
+ * 各阶段的限速之外，可通过{@link #setIoThrottle}设置整个后台流水线共享的总限速，避免后台I/O占满磁盘带宽。
+ * </pre>
  *
  * @author Daniel Li
  * @since 8 August 2015
  */
 public class DefaultRollover implements Rollover {
 
+    static final String STAGING_SUFFIX = ".staging";
+
     private final int maxIndex;
     private final int minIndex;
     private final boolean useMax;
     //    private final int compressionLevel;
     private final int bufferSize;
+    private final boolean indexed;
     private final ExceptionHandler handler;
+    private long moveBandwidth;
+    private long compressBandwidth;
+    private boolean staged;
+    private boolean checksum;
+    private long checksumBandwidth;
+    private IoThrottle ioThrottle;
+    private IoThrottle moveThrottle;
+    private IoThrottle compressThrottle;
+    private IoThrottle checksumThrottle;
 
     public DefaultRollover(int minIndex, int maxIndex, boolean useMax, int compressionLevel, int bufferSize, ExceptionHandler handler) {
+        this(minIndex, maxIndex, useMax, compressionLevel, bufferSize, false, handler);
+    }
+
+    public DefaultRollover(int minIndex, int maxIndex, boolean useMax, int compressionLevel, int bufferSize, boolean indexed,
+                           ExceptionHandler handler) {
         this.minIndex = minIndex;
         this.maxIndex = maxIndex;
         this.useMax = useMax;
 //        this.compressionLevel = compressionLevel;
         this.bufferSize = bufferSize;
+        this.indexed = indexed;
         this.handler = handler;
     }
 
+    /**
+     * 跨文件系统移动时每秒复制的字节数，0表示不限速。
+     */
+    public void setMoveBandwidth(long moveBandwidth) {
+        this.moveBandwidth = moveBandwidth;
+        updateThrottles();
+    }
+
+    /**
+     * 压缩时每秒读取的字节数，0表示不限速。
+     */
+    public void setCompressBandwidth(long compressBandwidth) {
+        this.compressBandwidth = compressBandwidth;
+        updateThrottles();
+    }
+
+    public void setStaged(boolean staged) {
+        this.staged = staged;
+    }
+
+    /**
+     * 轮转完成后计算校验和，checksumBandwidth为每秒读取的字节数，0表示不限速。
+     */
+    public void setChecksum(boolean checksum, long checksumBandwidth) {
+        this.checksum = checksum;
+        this.checksumBandwidth = checksumBandwidth;
+        updateThrottles();
+    }
+
+    /**
+     * 后台流水线（复制、压缩、校验和）共享的限速器，与各阶段的限速同时生效，null表示不限速。
+     * 可通过{@link IoThrottle}获取被限速的时间等指标。
+     */
+    public void setIoThrottle(IoThrottle ioThrottle) {
+        this.ioThrottle = ioThrottle;
+        updateThrottles();
+    }
+
+    public IoThrottle getIoThrottle() {
+        return ioThrottle;
+    }
+
+    public IoThrottle getMoveThrottle() {
+        return moveThrottle;
+    }
+
+    public IoThrottle getCompressThrottle() {
+        return compressThrottle;
+    }
+
+    public IoThrottle getChecksumThrottle() {
+        return checksumThrottle;
+    }
+
+    private void updateThrottles() {
+        moveThrottle = stageThrottle(moveBandwidth);
+        compressThrottle = stageThrottle(compressBandwidth);
+        checksumThrottle = stageThrottle(checksumBandwidth);
+    }
+
+    private IoThrottle stageThrottle(long bandwidth) {
+        return bandwidth > 0 ? new IoThrottle(bandwidth, ioThrottle) : ioThrottle;
+    }
+
+    private boolean delete(File file) {
+        if (indexed) {
+            TimeIndex.delete(file);
+        }
+        if (checksum) {
+            ChecksumAction.delete(file);
+        }
+        return file.delete();
+    }
+
+    private Action rename(final File source, final File destination) {
+        final FileMoveAction moveAction = new FileMoveAction(source, destination, indexed, handler);
+        if (!checksum) {
+            return moveAction;
+        }
+        return new AbstractAction(handler) {
+            @Override
+            public boolean execute() throws IOException {
+                if (!moveAction.execute()) {
+                    return false;
+                }
+                ChecksumAction.rename(source, destination);
+                return true;
+            }
+        };
+    }
+
     private int purge(int lowIndex, int highIndex, FilePattern pattern) {
         return useMax ? purgeAscending(lowIndex, highIndex, pattern) : purgeDescending(lowIndex, highIndex, pattern);
     }
 
     private int purgeAscending(int lowIndex, int highIndex, FilePattern pattern) {
-        List<FileRenameAction> renames = new ArrayList<>();
+        List<Action> renames = new ArrayList<>();
         StringBuilder buf = new StringBuilder();
         pattern.format(buf, highIndex);
         String highFilename = buf.toString();
@@ -62,7 +186,7 @@ public class DefaultRollover implements Rollover {
                 File toRenameBase = new File(Files.removeExtension(highFilename));
                 if (toRename.exists()) {
                     if (toRenameBase.exists()) {
-                        toRenameBase.delete();
+                        delete(toRenameBase);
                     }
                 } else {
                     toRename = toRenameBase;
@@ -72,7 +196,7 @@ public class DefaultRollover implements Rollover {
 
             if (toRename.exists()) {
                 if (i == lowIndex) {
-                    if (!toRename.delete()) {
+                    if (!delete(toRename)) {
                         return -1;
                     }
                     break;
@@ -92,7 +216,7 @@ public class DefaultRollover implements Rollover {
                     }
                 }
 
-                renames.add(new FileRenameAction(toRename, new File(renameTo), handler));
+                renames.add(rename(toRename, new File(renameTo)));
                 highFilename = lowFilename;
             } else {
                 buf.setLength(0);
@@ -119,7 +243,7 @@ public class DefaultRollover implements Rollover {
     }
 
     private int purgeDescending(int lowIndex, int highIndex, FilePattern pattern) {
-        List<FileRenameAction> renames = new ArrayList<>();
+        List<Action> renames = new ArrayList<>();
 
         StringBuilder buf = new StringBuilder();
         pattern.format(buf, lowIndex);
@@ -133,7 +257,7 @@ public class DefaultRollover implements Rollover {
                 File toRenameBase = new File(Files.removeExtension(lowFilename));
                 if (toRename.exists()) {
                     if (toRenameBase.exists()) {
-                        toRenameBase.delete();
+                        delete(toRenameBase);
                     }
                 } else {
                     toRename = toRenameBase;
@@ -143,7 +267,7 @@ public class DefaultRollover implements Rollover {
 
             if (toRename.exists()) {
                 if (i == highIndex) {
-                    if (!toRename.delete()) {
+                    if (!delete(toRename)) {
                         return -1;
                     }
                     break;
@@ -164,7 +288,7 @@ public class DefaultRollover implements Rollover {
                     }
                 }
 
-                renames.add(new FileRenameAction(toRename, new File(renameTo), handler));
+                renames.add(rename(toRename, new File(renameTo)));
                 lowFilename = highFilename;
             } else {
                 break;
@@ -202,15 +326,43 @@ public class DefaultRollover implements Rollover {
 
         String renameTo = buf.toString();
         String compressedName = renameTo;
-        Action compressAction = null;
-
         if (pattern.isGunZip()) {
             renameTo = Files.removeExtension(renameTo);
-            compressAction = new GunZipCompressAction(new File(renameTo), new File(compressedName), true, bufferSize, handler);
         }
-        FileRenameAction renameAction = new FileRenameAction(new File(fileName), new File(renameTo), handler);
+        if (staged) {
+            return staged(new File(fileName), new File(renameTo), new File(compressedName), pattern.isGunZip());
+        }
 
-        return new DefaultDescription(renameAction, compressAction);
+        List<Action> asyncActions = new ArrayList<>(3);
+        FileMoveAction moveAction = new FileMoveAction(new File(fileName), new File(renameTo), indexed, true, moveThrottle, handler);
+        asyncActions.add(moveAction.getTransfer());
+        if (pattern.isGunZip()) {
+            asyncActions.add(new GunZipCompressAction(new File(renameTo), new File(compressedName), true, bufferSize, indexed,
+                    compressThrottle, handler));
+        }
+        if (checksum) {
+            asyncActions.add(new ChecksumAction(new File(compressedName), bufferSize, checksumThrottle, handler));
+        }
+
+        return new DefaultDescription(moveAction, new CompositeAction(handler, asyncActions, true));
+    }
+
+    private Description staged(File file, File renameTo, File target, boolean isGunZip) {
+        File directory = file.getAbsoluteFile().getParentFile();
+        File staging = new File(directory, renameTo.getName() + STAGING_SUFFIX);
+        Action stageAction = new FileMoveAction(file, staging, indexed, handler);
+
+        List<Action> asyncActions = new ArrayList<>(3);
+        if (isGunZip) {
+            File compressed = new File(directory, target.getName() + STAGING_SUFFIX);
+            asyncActions.add(new GunZipCompressAction(staging, compressed, true, bufferSize, indexed, compressThrottle, handler));
+            staging = compressed;
+        }
+        asyncActions.add(new FileMoveAction(staging, target, indexed, false, moveThrottle, handler));
+        if (checksum) {
+            asyncActions.add(new ChecksumAction(target, bufferSize, checksumThrottle, handler));
+        }
+        return new DefaultDescription(stageAction, new CompositeAction(handler, asyncActions, true));
     }
 
     /**
@@ -0,0 +1,99 @@
+package org.danielli.logging.roll.action;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.BaseEncoding;
+import com.google.common.io.Files;
+import org.danielli.common.io.IOs;
+import org.danielli.common.io.IoThrottle;
+import org.danielli.logging.exception.ExceptionHandler;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * 轮转时校验和行为，计算文件的SHA-256并写入{file}.sha256，格式与sha256sum一致，可通过sha256sum -c校验。
+ *
+ * @author Daniel Li
+ * @since 19 October 2026
+ */
+public class ChecksumAction extends AbstractAction {
+
+    public static final String SUFFIX = ".sha256";
+
+    private final File file;
+    private final int bufferSize;
+    private final IoThrottle throttle;
+
+    /**
+     * throttle为null表示不限速。
+     */
+    public ChecksumAction(File file, int bufferSize, IoThrottle throttle, ExceptionHandler handler) {
+        super(handler);
+        this.file = file;
+        this.bufferSize = bufferSize;
+        this.throttle = throttle;
+    }
+
+    @Override
+    public boolean execute() throws IOException {
+        if (!file.exists()) {
+            return false;
+        }
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        InputStream input = new FileInputStream(file);
+        try {
+            byte[] buf = new byte[bufferSize];
+            int n;
+            while ((n = input.read(buf)) != -1) {
+                if (throttle != null) {
+                    throttle.acquire(n);
+                }
+                digest.update(buf, 0, n);
+            }
+        } finally {
+            IOs.closeQuietly(input);
+        }
+        write(file, BaseEncoding.base16().lowerCase().encode(digest.digest()));
+        return true;
+    }
+
+    private static void write(File file, String checksum) throws IOException {
+        OutputStream output = new FileOutputStream(file.getPath() + SUFFIX);
+        try {
+            output.write((checksum + "  " + file.getName() + "\n").getBytes(Charsets.UTF_8));
+        } finally {
+            IOs.closeQuietly(output);
+        }
+    }
+
+    /**
+     * 文件重命名后更新校验和文件，没有校验和文件时删除destination的旧校验和文件。
+     */
+    public static void rename(File source, File destination) throws IOException {
+        File sourceChecksum = new File(source.getPath() + SUFFIX);
+        new File(destination.getPath() + SUFFIX).delete();
+        if (sourceChecksum.exists()) {
+            String content = Files.toString(sourceChecksum, Charsets.UTF_8);
+            int index = content.indexOf(' ');
+            if (index > 0) {
+                write(destination, content.substring(0, index));
+            }
+            sourceChecksum.delete();
+        }
+    }
+
+    public static void delete(File file) {
+        new File(file.getPath() + SUFFIX).delete();
+    }
+}
@@ -0,0 +1,185 @@
+package org.danielli.logging.roll.action;
+
+import org.danielli.common.io.IOs;
+import org.danielli.common.io.IoThrottle;
+import org.danielli.logging.exception.ExceptionHandler;
+import org.danielli.logging.handler.support.TimeIndex;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * 轮转时基于NIO的移动行为。
+ * <pre>
+ * 优先使用原子移动（同一文件系统内的rename）。跨文件系统时：
+ *  background为false，在当前线程分块复制后删除源文件；
+ *  background为true，先原子重命名为源目录下的{destination}.moving，立即释放日志文件名，
+ *  由{@link #getTransfer()}返回的异步行为分块transferTo到目标文件，按throttle限速，完成后删除临时文件。
+ *  复制失败或不完整时删除不完整的目标文件，保留源文件（或临时文件）并通过ExceptionHandler报告，可再次执行异步行为重试。
+ * moveIndex为true时{@link TimeIndex}索引随文件移动。
+ * </pre>
+ *
+ * @author Daniel Li
+ * @since 19 October 2026
+ */
+public class FileMoveAction extends AbstractAction {
+
+    static final String STAGING_SUFFIX = ".moving";
+    private static final int CHUNK_SIZE = 1024 * 1024;
+
+    private final File source;
+    private final File destination;
+    private final boolean moveIndex;
+    private final boolean background;
+    private final IoThrottle throttle;
+    private volatile File staging;
+
+    public FileMoveAction(File source, File destination, boolean moveIndex, ExceptionHandler handler) {
+        this(source, destination, moveIndex, false, null, handler);
+    }
+
+    /**
+     * throttle为null表示不限速，只对跨文件系统的复制起作用。
+     */
+    public FileMoveAction(File source, File destination, boolean moveIndex, boolean background, IoThrottle throttle,
+                          ExceptionHandler handler) {
+        super(handler);
+        this.source = source;
+        this.destination = destination;
+        this.moveIndex = moveIndex;
+        this.background = background;
+        this.throttle = throttle;
+    }
+
+    @Override
+    public boolean execute() throws IOException {
+        if (!source.exists() || source.length() == 0) {
+            return false;
+        }
+        File parent = destination.getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+            if (!parent.exists()) {
+                handler.handle("Unable to create directory " + parent.getPath());
+                return false;
+            }
+        }
+
+        try {
+            Files.move(source.toPath(), destination.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            if (moveIndex) {
+                TimeIndex.rename(source, destination);
+            }
+            return true;
+        } catch (AtomicMoveNotSupportedException e) {
+            // 跨文件系统
+        } catch (IOException e) {
+            handler.handleException("Unable to move file " + source.getPath() + " to " + destination.getPath(), e);
+            return false;
+        }
+
+        if (background) {
+            File staging = new File(source.getParentFile(), destination.getName() + STAGING_SUFFIX);
+            try {
+                Files.move(source.toPath(), staging.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                handler.handleException("Unable to move file " + source.getPath() + " to " + staging.getPath(), e);
+                return false;
+            }
+            if (moveIndex) {
+                TimeIndex.rename(source, staging);
+            }
+            this.staging = staging;
+            return true;
+        }
+
+        try {
+            transfer(source, destination);
+            return true;
+        } catch (IOException e) {
+            handler.handleException("Unable to move file " + source.getPath() + " to " + destination.getPath(), e);
+            return false;
+        }
+    }
+
+    /**
+     * 完成跨文件系统的移动，未使用临时文件时直接返回true。
+     */
+    public Action getTransfer() {
+        return new AbstractAction(handler) {
+            @Override
+            public boolean execute() throws IOException {
+                File staging = FileMoveAction.this.staging;
+                if (staging == null) {
+                    return true;
+                }
+                try {
+                    transfer(staging, destination);
+                } catch (IOException e) {
+                    // 数据保留在临时文件中
+                    handler.handleException("Unable to move file " + staging.getPath() + " to " + destination.getPath()
+                            + ", data is kept in " + staging.getPath(), e);
+                    return false;
+                }
+                FileMoveAction.this.staging = null;
+                return true;
+            }
+        };
+    }
+
+    /**
+     * 复制失败或不完整时删除目标文件并抛出IOException，源文件不变。
+     */
+    private void transfer(File from, File to) throws IOException {
+        FileInputStream input = null;
+        FileOutputStream output = null;
+        boolean complete = false;
+        try {
+            input = new FileInputStream(from);
+            output = new FileOutputStream(to);
+            FileChannel inputChannel = input.getChannel();
+            FileChannel outputChannel = output.getChannel();
+            long size = inputChannel.size();
+            long position = 0;
+            while (position < size) {
+                int chunk = (int) Math.min(CHUNK_SIZE, size - position);
+                if (throttle != null) {
+                    throttle.acquire(chunk);
+                }
+                long n = inputChannel.transferTo(position, chunk, outputChannel);
+                if (n <= 0) {
+                    throw new IOException("Incomplete copy of " + from.getPath() + " to " + to.getPath()
+                            + ", " + position + " of " + size + " bytes copied");
+                }
+                position += n;
+            }
+            outputChannel.force(true);
+            complete = true;
+        } finally {
+            IOs.closeQuietly(input);
+            IOs.closeQuietly(output);
+            if (!complete) {
+                to.delete();
+            }
+        }
+
+        if (moveIndex) {
+            File fromIndex = new File(from.getPath() + TimeIndex.SUFFIX);
+            File toIndex = new File(to.getPath() + TimeIndex.SUFFIX);
+            if (fromIndex.exists()) {
+                Files.move(fromIndex.toPath(), toIndex.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                toIndex.delete();
+            }
+        }
+        if (!from.delete()) {
+            handler.handle("Unable to delete " + from.getPath());
+        }
+    }
+}
@@ -1,30 +1,58 @@
 package org.danielli.logging.roll.action;
 
 import org.danielli.common.io.Files;
+import org.danielli.common.io.IoThrottle;
 import org.danielli.logging.exception.ExceptionHandler;
+import org.danielli.logging.handler.support.TimeIndex;
 
 import java.io.File;
 import java.io.IOException;
 
 /**
- * 轮转时重命名行为。
+ * 轮转时重命名行为，renameIndex为true时同时重命名{@link TimeIndex}索引。
+ * 无法重命名（如跨文件系统）时复制后删除源文件，复制按throttle限速。
  *
  * @author Daniel Li
  * @since 8 August 2015
+ * @deprecated 轮转已改用{@link FileMoveAction}，跨文件系统时同样按throttle限速复制，且复制可在后台进行，不阻塞写入线程。
  */
+@Deprecated
 public class FileRenameAction extends AbstractAction {
 
     private final File source;
     private final File destination;
+    private final boolean renameIndex;
+    private final IoThrottle throttle;
 
     public FileRenameAction(File source, File destination, ExceptionHandler handler) {
+        this(source, destination, false, handler);
+    }
+
+    public FileRenameAction(File source, File destination, boolean renameIndex, ExceptionHandler handler) {
+        this(source, destination, renameIndex, null, handler);
+    }
+
+    /**
+     * throttle为null表示不限速。
+     */
+    public FileRenameAction(File source, File destination, boolean renameIndex, IoThrottle throttle, ExceptionHandler handler) {
         super(handler);
         this.source = source;
         this.destination = destination;
+        this.renameIndex = renameIndex;
+        this.throttle = throttle;
     }
 
     @Override
     public boolean execute() throws IOException {
+        boolean success = rename();
+        if (success && renameIndex) {
+            TimeIndex.rename(source, destination);
+        }
+        return success;
+    }
+
+    private boolean rename() {
         if (source.exists() && source.length() > 0) {
             final File parent = destination.getParentFile();
             if (parent != null && !parent.exists()) {
@@ -37,16 +65,18 @@ public class FileRenameAction extends AbstractAction {
             try {
                 if (!source.renameTo(destination)) {
                     try {
-                        Files.copyFile(source, destination);
+                        Files.copyFile(source, destination, throttle);
                         return source.delete();
                     } catch (IOException e) {
                         handler.handleException("Unable to rename file " + source.getPath() + " to " + destination.getPath(), e);
+                        // 复制失败时保留源文件
+                        return false;
                     }
                 }
                 return true;
             } catch (Exception ex) {
                 try {
-                    Files.copyFile(source, destination);
+                    Files.copyFile(source, destination, throttle);
                     return source.delete();
                 } catch (IOException e) {
                     handler.handleException("Unable to rename file " + source.getPath() + " to " + destination.getPath(), e);
@@ -1,13 +1,15 @@
 package org.danielli.logging.roll.action;
 
 import org.danielli.common.io.Files;
+import org.danielli.common.io.IoThrottle;
 import org.danielli.logging.exception.ExceptionHandler;
+import org.danielli.logging.handler.support.TimeIndex;
 
 import java.io.File;
 import java.io.IOException;
 
 /**
- * 轮转时压缩行为。
+ * 轮转时压缩行为，blockCompress为true时按{@link TimeIndex}索引分块压缩，压缩后仍可按时间范围定位。
  *
  * @author Daniel Li
  * @since 8 August 2015
@@ -18,19 +20,40 @@ public class GunZipCompressAction extends AbstractAction {
     private final File destination;
     private final boolean deleteSource;
     private final int bufferSize;
+    private final boolean blockCompress;
+    private final IoThrottle throttle;
 
     public GunZipCompressAction(File source, File destination, boolean deleteSource, int bufferSize, ExceptionHandler handler) {
+        this(source, destination, deleteSource, bufferSize, false, handler);
+    }
+
+    public GunZipCompressAction(File source, File destination, boolean deleteSource, int bufferSize, boolean blockCompress,
+                                ExceptionHandler handler) {
+        this(source, destination, deleteSource, bufferSize, blockCompress, null, handler);
+    }
+
+    /**
+     * throttle为null表示不限速。
+     */
+    public GunZipCompressAction(File source, File destination, boolean deleteSource, int bufferSize, boolean blockCompress,
+                                IoThrottle throttle, ExceptionHandler handler) {
         super(handler);
         this.source = source;
         this.destination = destination;
         this.deleteSource = deleteSource;
         this.bufferSize = bufferSize;
+        this.blockCompress = blockCompress;
+        this.throttle = throttle;
     }
 
     @Override
     public boolean execute() throws IOException {
         if (source.exists()) {
-            Files.compressFile(source, destination, bufferSize);
+            if (blockCompress) {
+                TimeIndex.compress(source, destination, bufferSize, throttle);
+            } else {
+                Files.compressFile(source, destination, bufferSize, throttle);
+            }
 
             if (deleteSource && !source.delete()) {
                 handler.handle("Unable to delete " + source.getPath());
@@ -4,6 +4,7 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 import org.danielli.common.clock.Clock;
 import org.danielli.common.io.Files;
+import org.danielli.logging.roll.pattern.format.CompositeFormatter;
 import org.danielli.logging.roll.pattern.format.DateFormatter;
 import org.danielli.logging.roll.pattern.format.DefaultFormatter;
 import org.danielli.logging.roll.pattern.format.Formatter;
@@ -17,6 +18,10 @@ import java.util.regex.Pattern;
 
 /**
  * 轮转文件模式。
+ * <pre>
+ * 以"."分隔为片段，片段中的%d{...}和%index前后可带有其他内容，如archive/%d{yyyy-MM}/test.%index.log.gz，
+ * 轮转后的文件可以位于按日期划分的其他目录中。
+ * </pre>
  *
  * @author Daniel Li
  * @since 8 August 2015
@@ -45,8 +50,9 @@ public class FilePattern {
         List<Formatter> formatters = Lists.newArrayListWithCapacity(filePatterns.length);
         for (String pattern : filePatterns) {
             Formatter formatter = FormatterFactory.valueOf(pattern);
-            if (formatter instanceof DateFormatter) {
-                frequency = ((DateFormatter) formatter).getFrequency();
+            DateFormatter dateFormatter = FormatterFactory.dateFormatter(formatter);
+            if (dateFormatter != null) {
+                frequency = dateFormatter.getFrequency();
             }
             formatters.add(formatter);
         }
@@ -91,21 +97,52 @@ public class FilePattern {
 
     private static class FormatterFactory {
 
-        private static Pattern datePattern = Pattern.compile("%d\\{(.*)\\}");
+        private static Pattern datePattern = Pattern.compile("%d\\{(.*?)\\}");
 
         private static Pattern indexPattern = Pattern.compile("%index");
 
         public static Formatter valueOf(String pattern) {
             Matcher dateMatcher = datePattern.matcher(pattern);
             if (dateMatcher.find()) {
-                return new DateFormatter(dateMatcher.group(1));
+                return wrap(pattern, dateMatcher, new DateFormatter(dateMatcher.group(1)));
             }
-            if (indexPattern.matcher(pattern).matches()) {
-                return new IndexFormatter();
+            Matcher indexMatcher = indexPattern.matcher(pattern);
+            if (indexMatcher.find()) {
+                return wrap(pattern, indexMatcher, new IndexFormatter());
             }
             return new DefaultFormatter(pattern);
         }
 
+        private static Formatter wrap(String pattern, Matcher matcher, Formatter formatter) {
+            if (matcher.start() == 0 && matcher.end() == pattern.length()) {
+                return formatter;
+            }
+            List<Formatter> formatters = Lists.newArrayListWithCapacity(3);
+            if (matcher.start() > 0) {
+                formatters.add(valueOf(pattern.substring(0, matcher.start())));
+            }
+            formatters.add(formatter);
+            if (matcher.end() < pattern.length()) {
+                formatters.add(valueOf(pattern.substring(matcher.end())));
+            }
+            return new CompositeFormatter(formatters.toArray(new Formatter[formatters.size()]));
+        }
+
+        public static DateFormatter dateFormatter(Formatter formatter) {
+            if (formatter instanceof DateFormatter) {
+                return (DateFormatter) formatter;
+            }
+            if (formatter instanceof CompositeFormatter) {
+                for (Formatter child : ((CompositeFormatter) formatter).getFormatters()) {
+                    DateFormatter dateFormatter = dateFormatter(child);
+                    if (dateFormatter != null) {
+                        return dateFormatter;
+                    }
+                }
+            }
+            return null;
+        }
+
     }
 
 
@@ -0,0 +1,27 @@
+package org.danielli.logging.roll.pattern.format;
+
+/**
+ * 组合格式化器，用于日期或索引前后带有其他内容（如目录）的片段。
+ *
+ * @author Daniel Li
+ * @since 19 October 2026
+ */
+public class CompositeFormatter implements Formatter {
+
+    private final Formatter[] formatters;
+
+    public CompositeFormatter(Formatter... formatters) {
+        this.formatters = formatters;
+    }
+
+    public Formatter[] getFormatters() {
+        return formatters;
+    }
+
+    @Override
+    public void format(StringBuilder source, Object... arguments) {
+        for (Formatter formatter : formatters) {
+            formatter.format(source, arguments);
+        }
+    }
+}
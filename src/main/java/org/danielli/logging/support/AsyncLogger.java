@@ -3,37 +3,92 @@ package org.danielli.logging.support;
 import com.lmax.disruptor.WaitStrategy;
 import com.lmax.disruptor.dsl.ProducerType;
 import org.danielli.common.concurrent.async.InvokeFlusher;
+import org.danielli.logging.BatchLogger;
 import org.danielli.logging.Logger;
 import org.danielli.logging.LoggerEvent;
 import org.danielli.logging.exception.ExceptionHandler;
 
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 异步Logger。
+ * <pre>
+ * 可选的过滤阶段：过滤器在写入Group之前的条带化Group中由filterThreads个线程并行执行，被过滤的槽位标记为丢弃，写入线程直接跳过。过滤器需线程安全。
+ * 可选的编码阶段：encoderThreads个线程按序号条带化并行调用toByteArray，结果保存在槽位中，写入线程按序号顺序写入，文件顺序不变。
+ * 开启编码阶段后，下游Logger实现{@link Logger.EncodedWriter}时写入原始事件和已编码的内容，否则只写入原始事件（由下游Logger重新编码）。
+ * </pre>
  *
  * @author Daniel Li
  * @since 8 August 2015
  */
-public class AsyncLogger implements Logger {
+public class AsyncLogger implements BatchLogger {
 
     private final InvokeFlusher<LoggerEvent> flusher;
-    private final Logger logger;
+    private final Logger[] loggers;
+    private final Filter[] filters;
     private final ExceptionHandler handler;
     private final AddAction addAction;
 
     public AsyncLogger(Logger logger, WaitStrategy waitStrategy, ProducerType producerType, int bufferSize, int notifySize,
                        AddAction addAction, ExceptionHandler handler) {
-        this.logger = logger;
+        this(new Logger[]{logger}, waitStrategy, producerType, bufferSize, notifySize, addAction, handler);
+    }
+
+    /**
+     * 多个Logger作为同一Group的并行消费者，同一事件只入队一次，由各自的消费线程写入。
+     */
+    public AsyncLogger(Logger[] loggers, WaitStrategy waitStrategy, ProducerType producerType, int bufferSize, int notifySize,
+                       AddAction addAction, ExceptionHandler handler) {
+        this(loggers, new Filter[0], 0, 0, waitStrategy, producerType, bufferSize, notifySize, addAction, handler);
+    }
+
+    public AsyncLogger(Logger[] loggers, Filter[] filters, int filterThreads, int encoderThreads, WaitStrategy waitStrategy,
+                       ProducerType producerType, int bufferSize, int notifySize, AddAction addAction, ExceptionHandler handler) {
+        this(loggers, filters, filterThreads, encoderThreads, waitStrategy, producerType, bufferSize, 0, notifySize, addAction, handler);
+    }
+
+    /**
+     * maxBufferSize大于bufferSize时RingBuffer从bufferSize开始按需扩容，参考{@link InvokeFlusher.Builder#setMaxBufferSize}。
+     */
+    public AsyncLogger(Logger[] loggers, Filter[] filters, int filterThreads, int encoderThreads, WaitStrategy waitStrategy,
+                       ProducerType producerType, int bufferSize, int maxBufferSize, int notifySize, AddAction addAction,
+                       ExceptionHandler handler) {
+        this.loggers = loggers;
+        this.filters = filters;
         this.addAction = addAction;
         this.handler = handler;
-        InvokeFlusher.Builder<LoggerEvent> builder = new InvokeFlusher.Builder<LoggerEvent>().setBufferSize(bufferSize).setNotifySize(notifySize)
+        InvokeFlusher.Builder<LoggerEvent> builder = new InvokeFlusher.Builder<LoggerEvent>().setBufferSize(bufferSize).setMaxBufferSize(maxBufferSize).setNotifySize(notifySize)
                 .setProducerType(producerType).setWaitStrategy(waitStrategy).setNamePrefix("asynclogger");
-        builder.addListenerGroup(new LoggerEventListener());
+        if (filters.length != 0) {
+            InvokeFlusher.EventListener<LoggerEvent>[] filterListeners = newListeners(filterThreads);
+            for (int i = 0; i < filterThreads; i++) {
+                filterListeners[i] = new FilterEventListener();
+            }
+            builder.addStripedListenerGroup(filterListeners);
+        }
+        if (encoderThreads > 0) {
+            InvokeFlusher.EventListener<LoggerEvent>[] encoderListeners = newListeners(encoderThreads);
+            for (int i = 0; i < encoderThreads; i++) {
+                encoderListeners[i] = new EncoderEventListener();
+            }
+            builder.addStripedListenerGroup(encoderListeners);
+        }
+        InvokeFlusher.EventListener<LoggerEvent>[] listeners = newListeners(loggers.length);
+        for (int i = 0, length = loggers.length; i < length; i++) {
+            listeners[i] = new LoggerEventListener(loggers[i]);
+        }
+        builder.addListenerGroup(listeners);
         this.flusher = builder.build();
 
     }
 
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static InvokeFlusher.EventListener<LoggerEvent>[] newListeners(int size) {
+        return new InvokeFlusher.EventListener[size];
+    }
+
     @Override
     public void write(LoggerEvent event) {
         addAction.add(flusher, event, handler);
@@ -48,14 +103,52 @@ public class AsyncLogger implements Logger {
         }
     }
 
+    /**
+     * 批量写入，一次申请连续的序号并原地填充，由addAction控制RingBuffer空间不足时的行为。
+     */
+    @Override
+    public void write(List<LoggerEvent> events) {
+        if (!events.isEmpty()) {
+            addAction.add(flusher, events, handler);
+        }
+    }
+
     protected void syncWrite(LoggerEvent event, boolean endOfBatch) {
-        this.logger.write(event, endOfBatch);
+        if (!isWrite(event)) {
+            return;
+        }
+        for (Logger logger : this.loggers) {
+            logger.write(event, endOfBatch);
+        }
+    }
+
+    @Override
+    public void flush() {
+        for (Logger logger : this.loggers) {
+            if (logger instanceof BatchLogger) {
+                ((BatchLogger) logger).flush();
+            }
+        }
+    }
+
+    private boolean isWrite(LoggerEvent event) {
+        for (Filter filter : filters) {
+            if (!filter.isWrite(event)) {
+                return false;
+            }
+        }
+        return true;
     }
 
     @Override
     public void close() {
-        this.flusher.shutdown();
-        this.logger.close();
+        long lost = this.flusher.shutdown();
+        if (lost > 0) {
+            handler.handle("Shutdown timed out, " + lost + " events lost");
+        }
+        for (Logger logger : this.loggers) {
+            logger.close();
+        }
     }
 
     /**
@@ -68,6 +161,8 @@ public class AsyncLogger implements Logger {
 
         void add(InvokeFlusher<LoggerEvent> flusher, LoggerEvent event, ExceptionHandler handler);
 
+        void add(InvokeFlusher<LoggerEvent> flusher, List<LoggerEvent> events, ExceptionHandler handler);
+
     }
 
     /**
@@ -108,18 +203,185 @@ public class AsyncLogger implements Logger {
                 handler.handleEvent("discard", event);
             }
         }
+
+        /**
+         * 与单条相同，一批计为一次等待写入。
+         */
+        @Override
+        public void add(InvokeFlusher<LoggerEvent> flusher, List<LoggerEvent> events, ExceptionHandler handler) {
+            if (syncSize < 0) {
+                flusher.add(events);
+                return;
+            }
+            int added = flusher.tryAdd(events);
+            if (added == events.size()) {
+                if (syncSize > 0) {
+                    syncPerm.set(0);
+                }
+            } else if (syncSize > 0 && syncPerm.incrementAndGet() <= syncSize) {
+                flusher.add(events.subList(added, events.size()));
+            } else {
+                discard(events, added, handler);
+            }
+        }
+    }
+
+    /**
+     * 阻塞的添加行为。队列已满时通过{@link InvokeFlusher#offer}挂起生产者，基于java.util.concurrent实现，虚拟线程挂起时不占用载体线程。
+     * timeout小于0表示一直等待，超时或线程中断时丢弃。
+     *
+     * @author Daniel Li
+     * @since 19 October 2026
+     */
+    public static class BlockingAddAction implements AddAction {
+
+        private final long timeout;
+        private final TimeUnit timeUnit;
+
+        public BlockingAddAction(long timeout, TimeUnit timeUnit) {
+            this.timeout = timeout < 0 ? Long.MAX_VALUE : timeout;
+            this.timeUnit = timeUnit;
+        }
+
+        @Override
+        public void add(InvokeFlusher<LoggerEvent> flusher, LoggerEvent event, ExceptionHandler handler) {
+            try {
+                if (!flusher.offer(event, timeout, timeUnit)) {
+                    handler.handleEvent("discard", event);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                handler.handleEvent("discard", event);
+            }
+        }
+
+        /**
+         * 先批量尝试写入，空间不足时剩余事件逐条等待，timeout对每条事件单独计算。
+         */
+        @Override
+        public void add(InvokeFlusher<LoggerEvent> flusher, List<LoggerEvent> events, ExceptionHandler handler) {
+            for (int i = flusher.tryAdd(events), size = events.size(); i < size; i++) {
+                LoggerEvent event = events.get(i);
+                try {
+                    if (!flusher.offer(event, timeout, timeUnit)) {
+                        handler.handleEvent("discard", event);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    discard(events, i, handler);
+                    return;
+                }
+            }
+        }
+    }
+
+    private static void discard(List<LoggerEvent> events, int offset, ExceptionHandler handler) {
+        for (int i = offset, size = events.size(); i < size; i++) {
+            handler.handleEvent("discard", events.get(i));
+        }
+    }
+
+    private static StagedEvent staged(InvokeFlusher.Slot<LoggerEvent> slot) {
+        StagedEvent staged = (StagedEvent) slot.getAttachment();
+        if (staged == null) {
+            staged = new StagedEvent();
+            slot.setAttachment(staged);
+        }
+        return staged;
+    }
+
+    /**
+     * 槽位中的阶段结果，随槽位复用。各阶段每轮都会完整覆盖自己负责的字段。
+     *
+     * @author Daniel Li
+     * @since 19 October 2026
+     */
+    private static class StagedEvent implements InvokeFlusher.Reusable {
+
+        private byte[] bytes;
+        private boolean dropped;
+
+        @Override
+        public void release() {
+            this.bytes = null;
+        }
+    }
+
+    public class FilterEventListener extends InvokeFlusher.SlotEventListener<LoggerEvent> {
+
+        @Override
+        public void onException(Throwable e, long sequence, LoggerEvent event) {
+            AsyncLogger.this.handler.handleEventException(e.getMessage(), e, event);
+        }
+
+        @Override
+        public void onEvent(InvokeFlusher.Slot<LoggerEvent> slot, long sequence, boolean endOfBatch) throws Exception {
+            StagedEvent staged = staged(slot);
+            // 过滤器抛出异常时丢弃，与同步写入相同，不沿用槽位中上一个事件的结果
+            staged.dropped = true;
+            staged.dropped = !isWrite(slot.getEvent());
+        }
+    }
+
+    public class EncoderEventListener extends InvokeFlusher.SlotEventListener<LoggerEvent> {
+
+        @Override
+        public void onException(Throwable e, long sequence, LoggerEvent event) {
+            AsyncLogger.this.handler.handleEventException(e.getMessage(), e, event);
+        }
+
+        @Override
+        public void onEvent(InvokeFlusher.Slot<LoggerEvent> slot, long sequence, boolean endOfBatch) throws Exception {
+            StagedEvent staged = staged(slot);
+            // 编码失败时由写入线程重新编码
+            staged.bytes = null;
+            if (!staged.dropped) {
+                staged.bytes = slot.getEvent().toByteArray();
+            }
+        }
     }
 
-    public class LoggerEventListener implements InvokeFlusher.EventListener<LoggerEvent> {
+    public class LoggerEventListener extends InvokeFlusher.SlotEventListener<LoggerEvent> implements InvokeFlusher.FlushableListener {
+
+        private final Logger logger;
+        private final Logger.EncodedWriter encodedWriter;
+        private final BatchLogger batchLogger;
+
+        public LoggerEventListener(Logger logger) {
+            this.logger = logger;
+            this.encodedWriter = logger instanceof Logger.EncodedWriter ? (Logger.EncodedWriter) logger : null;
+            this.batchLogger = logger instanceof BatchLogger ? (BatchLogger) logger : null;
+        }
 
         @Override
         public void onException(Throwable e, long sequence, LoggerEvent event) {
             AsyncLogger.this.handler.handleEventException(e.getMessage(), e, event);
         }
 
+        /**
+         * 下游Logger不可刷新时不做处理。
+         */
         @Override
-        public void onEvent(LoggerEvent event, boolean endOfBatch) throws Exception {
-            syncWrite(event, endOfBatch);
+        public void flush() {
+            if (batchLogger != null) {
+                batchLogger.flush();
+            }
+        }
+
+        @Override
+        public void onEvent(InvokeFlusher.Slot<LoggerEvent> slot, long sequence, boolean endOfBatch) throws Exception {
+            StagedEvent staged = (StagedEvent) slot.getAttachment();
+            if (staged == null) {
+                logger.write(slot.getEvent(), endOfBatch);
+            } else if (staged.dropped) {
+                if (endOfBatch) {
+                    flush();
+                }
+            } else if (staged.bytes != null && encodedWriter != null) {
+                encodedWriter.write(slot.getEvent(), staged.bytes, endOfBatch);
+            } else {
+                logger.write(slot.getEvent(), endOfBatch);
+            }
         }
     }
 }
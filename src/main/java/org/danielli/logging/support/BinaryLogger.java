@@ -0,0 +1,52 @@
+package org.danielli.logging.support;
+
+import org.danielli.logging.LoggerEvent;
+import org.danielli.logging.codec.BinaryEncoder;
+import org.danielli.logging.handler.FileHandler;
+import org.danielli.logging.handler.RollingFileHandler;
+
+/**
+ * 二进制日志文件写入器，使用{@link BinaryEncoder}编码，可通过{@link org.danielli.logging.codec.BinaryDecoder}转换为文本。
+ * <pre>
+ * 编码到复用的数组后整体写入日志文件的缓冲区，不为每条日志分配byte[]。
+ * 字符串表按文件维护：日志文件可轮转时，checkRollover返回发生轮转则清空字符串表并重新编码，保证每个文件可以独立解码。
+ * 异步写入时encoderThreads生成的文本不会被使用，应保持为0。
+ * </pre>
+ *
+ * @author Daniel Li
+ * @since 19 October 2026
+ */
+public class BinaryLogger<T extends FileHandler> extends DefaultLogger<T> {
+
+    private final BinaryEncoder encoder;
+
+    public BinaryLogger(boolean immediateFlush, boolean periodicFlush, T handler) {
+        this(immediateFlush, periodicFlush, new BinaryEncoder(), handler);
+    }
+
+    public BinaryLogger(boolean immediateFlush, boolean periodicFlush, BinaryEncoder encoder, T handler) {
+        super(immediateFlush, periodicFlush, handler);
+        this.encoder = encoder;
+        if (handler instanceof RollingFileHandler) {
+            ((RollingFileHandler) handler).initialize();
+        }
+    }
+
+    @Override
+    public synchronized void write(LoggerEvent event, boolean endOfBatch) {
+        int length = encoder.encode(event);
+        if (handler instanceof RollingFileHandler && ((RollingFileHandler) handler).checkRollover(event, length)) {
+            encoder.reset();
+            length = encoder.encode(event);
+        }
+        write(event, encoder.array(), encoder.offset(), length, endOfBatch);
+    }
+
+    /**
+     * 不使用文本编码的结果，按二进制格式重新编码。
+     */
+    @Override
+    public void write(LoggerEvent event, byte[] bytes, boolean endOfBatch) {
+        write(event, endOfBatch);
+    }
+}
@@ -1,22 +1,34 @@
 package org.danielli.logging.support;
 
+import org.danielli.logging.BatchLogger;
 import org.danielli.logging.Logger;
 import org.danielli.logging.LoggerEvent;
 import org.danielli.logging.handler.FileHandler;
 
+import java.util.List;
+
 /**
  * 默认日志文件写入器。
+ * <pre>
+ * periodicFlush为true时由日志文件的后台刷新线程按maxFlushLatency刷新，write(event)和批次结束时不再刷新；immediateFlush优先。
+ * </pre>
  *
  * @author Daniel Li
  * @since 8 August 2015
  */
-public class DefaultLogger<T extends FileHandler> implements Logger {
+public class DefaultLogger<T extends FileHandler> implements BatchLogger, Logger.EncodedWriter {
 
     protected final boolean immediateFlush;
+    protected final boolean periodicFlush;
     protected final T handler;
 
     public DefaultLogger(boolean immediateFlush, T handler) {
+        this(immediateFlush, false, handler);
+    }
+
+    public DefaultLogger(boolean immediateFlush, boolean periodicFlush, T handler) {
         this.immediateFlush = immediateFlush;
+        this.periodicFlush = periodicFlush;
         this.handler = handler;
     }
 
@@ -28,14 +40,46 @@ public class DefaultLogger<T extends FileHandler> implements Logger {
     @Override
     public void write(LoggerEvent event, boolean endOfBatch) {
         byte[] bytes = event.toByteArray();
-        if (bytes.length > 0) {
-            handler.write(bytes);
-            if (this.immediateFlush || endOfBatch) {
+        write(event, bytes, 0, bytes.length, endOfBatch);
+    }
+
+    @Override
+    public void write(LoggerEvent event, byte[] bytes, boolean endOfBatch) {
+        write(event, bytes, 0, bytes.length, endOfBatch);
+    }
+
+    @Override
+    public void write(List<LoggerEvent> events) {
+        for (int i = 0, size = events.size(); i < size; i++) {
+            write(events.get(i), i == size - 1);
+        }
+    }
+
+    protected void write(byte[] bytes, boolean endOfBatch) {
+        write(null, bytes, 0, bytes.length, endOfBatch);
+    }
+
+    /**
+     * 写入event编码后的内容，event为null时不记录时间。
+     */
+    protected void write(LoggerEvent event, byte[] bytes, int offset, int length, boolean endOfBatch) {
+        if (length > 0) {
+            if (event == null) {
+                handler.write(bytes, offset, length);
+            } else {
+                handler.write(event.getTimeMillis(), bytes, offset, length);
+            }
+            if (this.immediateFlush || (endOfBatch && !this.periodicFlush)) {
                 handler.flush();
             }
         }
     }
 
+    @Override
+    public void flush() {
+        handler.flush();
+    }
+
     @Override
     public void close() {
         handler.close();
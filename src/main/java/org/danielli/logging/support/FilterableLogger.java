@@ -1,15 +1,19 @@
 package org.danielli.logging.support;
 
+import org.danielli.logging.BatchLogger;
 import org.danielli.logging.Logger;
 import org.danielli.logging.LoggerEvent;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * 支持过滤器的日志。
  *
  * @author Daniel Li
  * @since 8 August 2015
  */
-public class FilterableLogger implements Logger {
+public class FilterableLogger implements BatchLogger, Logger.EncodedWriter {
 
     private final Logger logger;
     private final Filter[] filters;
@@ -42,6 +46,44 @@ public class FilterableLogger implements Logger {
         }
     }
 
+    @Override
+    public void write(LoggerEvent event, byte[] bytes, boolean endOfBatch) {
+        if (isWrite(event)) {
+            if (logger instanceof EncodedWriter) {
+                ((EncodedWriter) logger).write(event, bytes, endOfBatch);
+            } else {
+                logger.write(event, endOfBatch);
+            }
+        }
+    }
+
+    @Override
+    public void write(List<LoggerEvent> events) {
+        List<LoggerEvent> accepted = new ArrayList<>(events.size());
+        for (LoggerEvent event : events) {
+            if (isWrite(event)) {
+                accepted.add(event);
+            }
+        }
+        if (accepted.isEmpty()) {
+            return;
+        }
+        if (logger instanceof BatchLogger) {
+            ((BatchLogger) logger).write(accepted);
+        } else {
+            for (int i = 0, size = accepted.size(); i < size; i++) {
+                logger.write(accepted.get(i), i == size - 1);
+            }
+        }
+    }
+
+    @Override
+    public void flush() {
+        if (logger instanceof BatchLogger) {
+            ((BatchLogger) logger).flush();
+        }
+    }
+
     @Override
     public void close() {
         logger.close();
@@ -0,0 +1,334 @@
+package org.danielli.logging.support;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.danielli.logging.BatchLogger;
+import org.danielli.logging.LoggerEvent;
+import org.danielli.logging.exception.ExceptionHandler;
+import org.danielli.logging.handler.FileHandler;
+import org.danielli.logging.handler.RollingFileHandler;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 堆外异步Logger。队列是一块堆外内存上的字节环形缓冲区，而不是对象槽位的RingBuffer，直接写入{@link FileHandler}。
+ * <pre>
+ * 写入：生产者在调用线程中编码，通过CAS推进申请游标，申请一段连续的区域，写入记录：length(int) + timeMillis(long) + 内容。
+ *  区域末尾放不下一条记录时，先单独申请并提交末尾的填充区域（写入WRAP标记，不足头部长度时省略），再从开头申请，
+ *  填充不与记录一起占用空间，不超过capacity的记录总能放下。
+ *  写完后按申请顺序提交：等待前面的记录提交后推进提交游标，消费线程只读取提交游标之前的区域，不需要逐条的发布标记。
+ * 消费：消费线程按记录把内容从堆外内存直接写入日志文件（{@link FileHandler#write(long, ByteBuffer)}），不经过byte[]，
+ *  每条记录处理完后推进读取游标释放空间，每处理完一段已提交的区域按immediateFlush/periodicFlush刷新（同批次结束）。
+ *  日志文件可轮转时，写入每条记录前检查轮转，检查时的事件只提供时间。
+ * 队列不为每条事件分配对象，占用的内存与字节数成正比，与事件个数无关。超过capacity - 12字节的记录丢弃。
+ * 队列已满时blockWhenFull为true则等待，否则丢弃，丢弃的事件通过ExceptionHandler报告。
+ * write(event, endOfBatch)与write(event)相同，都进入队列。
+ * 关闭：立即拒绝新的申请，等待已申请的记录写入文件（最多shutdownTimeout）。超时后停止消费线程，
+ *  消费线程写完当前记录后退出，未写入的字节通过ExceptionHandler报告。日志文件由消费线程退出时关闭，不与写入并发。
+ *  消费线程是守护线程，不阻止JVM退出。
+ * </pre>
+ *
+ * @author Daniel Li
+ * @since 19 October 2026
+ */
+public class OffHeapAsyncLogger implements BatchLogger {
+
+    static final int HEADER_SIZE = 12;
+    static final int WRAP = -1;
+    /**
+     * 消费线程退出时写入申请游标，之后不能再申请。
+     */
+    private static final long CLOSED = -1;
+    private static final int MAX_IDLE_SPINS = 100;
+    private static final ThreadFactory THREAD_FACTORY = new ThreadFactoryBuilder().setNameFormat("offheap-asynclogger-%d")
+            .setDaemon(true).build();
+
+    private final FileHandler fileHandler;
+    private final RollingFileHandler rollingHandler;
+    private final boolean immediateFlush;
+    private final boolean periodicFlush;
+    private final boolean blockWhenFull;
+    private final long shutdownTimeoutMillis;
+    private final ExceptionHandler handler;
+    private final ByteBuffer ring;
+    private final int capacity;
+    private final ThreadLocal<ByteBuffer> writers;
+    private final AtomicLong claimCursor = new AtomicLong();
+    private final AtomicLong readCursor = new AtomicLong();
+    private final Thread consumer;
+    private volatile long commitCursor;
+    private volatile boolean sleeping;
+    private volatile boolean closed;
+    /**
+     * 关闭超时后设置，消费线程写完当前记录后退出。
+     */
+    private volatile boolean stopped;
+
+    public OffHeapAsyncLogger(FileHandler fileHandler, boolean immediateFlush, boolean periodicFlush, int capacity, boolean blockWhenFull,
+                              ExceptionHandler handler) {
+        this(fileHandler, immediateFlush, periodicFlush, capacity, blockWhenFull, 10, TimeUnit.SECONDS, handler);
+    }
+
+    /**
+     * @param capacity 队列字节数，2的幂。
+     */
+    public OffHeapAsyncLogger(FileHandler fileHandler, boolean immediateFlush, boolean periodicFlush, int capacity, boolean blockWhenFull,
+                              long shutdownTimeout, TimeUnit timeUnit, ExceptionHandler handler) {
+        Preconditions.checkArgument(capacity > HEADER_SIZE && Integer.bitCount(capacity) == 1);
+        Preconditions.checkArgument(shutdownTimeout >= 0);
+        this.fileHandler = Preconditions.checkNotNull(fileHandler);
+        this.rollingHandler = fileHandler instanceof RollingFileHandler ? (RollingFileHandler) fileHandler : null;
+        this.immediateFlush = immediateFlush;
+        this.periodicFlush = periodicFlush;
+        this.blockWhenFull = blockWhenFull;
+        this.shutdownTimeoutMillis = timeUnit.toMillis(shutdownTimeout);
+        this.handler = Preconditions.checkNotNull(handler);
+        this.capacity = capacity;
+        this.ring = ByteBuffer.allocateDirect(capacity);
+        this.writers = new ThreadLocal<ByteBuffer>() {
+            @Override
+            protected ByteBuffer initialValue() {
+                // 每个生产者一个视图，position互不影响
+                return ring.duplicate();
+            }
+        };
+        if (rollingHandler != null) {
+            rollingHandler.initialize();
+        }
+        this.consumer = THREAD_FACTORY.newThread(new Runnable() {
+            @Override
+            public void run() {
+                consume();
+            }
+        });
+        this.consumer.start();
+    }
+
+    @Override
+    public void write(LoggerEvent event) {
+        byte[] bytes = event.toByteArray();
+        long timeMillis = event.getTimeMillis();
+        int recordSize = HEADER_SIZE + bytes.length;
+        // 申请之后不再调用事件的方法，已申请的记录一定会提交
+        long start = recordSize > capacity ? -1 : claim(recordSize);
+        if (start < 0) {
+            handler.handleEvent("discard", event);
+            return;
+        }
+        ByteBuffer writer = writers.get();
+        int index = index(start);
+        writer.putInt(index, bytes.length);
+        writer.putLong(index + 4, timeMillis);
+        writer.position(index + HEADER_SIZE);
+        writer.put(bytes);
+        commit(start, start + recordSize);
+    }
+
+    @Override
+    public void write(LoggerEvent event, boolean endOfBatch) {
+        write(event);
+    }
+
+    @Override
+    public void write(List<LoggerEvent> events) {
+        for (int i = 0, size = events.size(); i < size; i++) {
+            write(events.get(i));
+        }
+    }
+
+    /**
+     * 申请recordSize字节的连续区域。末尾放不下时先申请并提交填充区域，再从开头申请。
+     *
+     * @return 区域起点，关闭后或队列已满且不等待时返回-1。
+     */
+    private long claim(int recordSize) {
+        long wrapped = -1;
+        while (true) {
+            long start = claimCursor.get();
+            if (start == CLOSED || closed) {
+                return -1;
+            }
+            int padding = padding(start, recordSize);
+            long end = start + (padding > 0 ? padding : recordSize);
+            long read = readCursor.get();
+            if (end - read <= capacity) {
+                if (claimCursor.compareAndSet(start, end)) {
+                    if (padding == 0) {
+                        return start;
+                    }
+                    if (padding >= HEADER_SIZE) {
+                        writers.get().putInt(index(start), WRAP);
+                    }
+                    commit(start, end);
+                    wrapped = start;
+                }
+            } else if (!blockWhenFull && read != wrapped) {
+                // 消费线程已读到本线程提交的填充时，读取WRAP标记后即跳过，等待而不丢弃
+                return -1;
+            } else {
+                LockSupport.parkNanos(1);
+            }
+        }
+    }
+
+    /**
+     * 按申请顺序提交，等待start之前的记录都已提交。
+     */
+    private void commit(long start, long end) {
+        int spins = 0;
+        while (commitCursor != start) {
+            // 前面的生产者被调度出去时让出CPU
+            if (++spins > MAX_IDLE_SPINS) {
+                Thread.yield();
+            }
+        }
+        commitCursor = end;
+        if (sleeping) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    private int padding(long position, int recordSize) {
+        int remaining = capacity - index(position);
+        return recordSize > remaining ? remaining : 0;
+    }
+
+    private int index(long position) {
+        return (int) (position & (capacity - 1));
+    }
+
+    private void consume() {
+        ByteBuffer reader = ring.duplicate();
+        RecordEvent event = new RecordEvent();
+        long read = 0;
+        int idle = 0;
+        try {
+            while (!stopped) {
+                long commit = commitCursor;
+                if (read == commit) {
+                    // 提交游标等于申请游标时才能关闭，与生产者的申请互斥
+                    if (closed && claimCursor.compareAndSet(read, CLOSED)) {
+                        break;
+                    }
+                    if (++idle < MAX_IDLE_SPINS) {
+                        Thread.yield();
+                        continue;
+                    }
+                    sleeping = true;
+                    if (commitCursor == read && !closed) {
+                        LockSupport.park(this);
+                    }
+                    sleeping = false;
+                    continue;
+                }
+                idle = 0;
+                while (read < commit && !stopped) {
+                    read = write(reader, read, event);
+                    readCursor.lazySet(read);
+                }
+                if (!immediateFlush && !periodicFlush) {
+                    fileHandler.flush();
+                }
+            }
+        } finally {
+            claimCursor.set(CLOSED);
+            fileHandler.close();
+        }
+    }
+
+    /**
+     * 写入position处的记录。
+     *
+     * @return 下一条记录的位置。
+     */
+    private long write(ByteBuffer reader, long position, RecordEvent event) {
+        int index = index(position);
+        int remaining = capacity - index;
+        if (remaining < HEADER_SIZE) {
+            return position + remaining;
+        }
+        int length = reader.getInt(index);
+        if (length == WRAP) {
+            return position + remaining;
+        }
+        long timeMillis = reader.getLong(index + 4);
+        reader.limit(index + HEADER_SIZE + length);
+        reader.position(index + HEADER_SIZE);
+        try {
+            if (rollingHandler != null) {
+                event.timeMillis = timeMillis;
+                event.data = reader;
+                rollingHandler.checkRollover(event, length);
+            }
+            fileHandler.write(timeMillis, reader);
+            if (immediateFlush) {
+                fileHandler.flush();
+            }
+        } catch (Throwable e) {
+            handler.handleException("Error in write record", e);
+        } finally {
+            reader.clear();
+        }
+        return position + HEADER_SIZE + length;
+    }
+
+    @Override
+    public void flush() {
+        fileHandler.flush();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        LockSupport.unpark(consumer);
+        join(shutdownTimeoutMillis);
+        if (consumer.isAlive()) {
+            // 停止后消费线程写完当前记录即退出并关闭日志文件
+            stopped = true;
+            LockSupport.unpark(consumer);
+            join(shutdownTimeoutMillis);
+            handler.handle("Shutdown timed out, " + (commitCursor - readCursor.get()) + " bytes lost"
+                    + (consumer.isAlive() ? ", file is closed after the pending write" : ""));
+        }
+    }
+
+    private void join(long timeoutMillis) {
+        try {
+            // join(0)会一直等待
+            consumer.join(Math.max(timeoutMillis, 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 检查轮转时使用的事件，只有时间，随记录复用。
+     */
+    private static class RecordEvent implements LoggerEvent {
+
+        private static final long serialVersionUID = 4512460723170286318L;
+
+        private long timeMillis;
+        private transient ByteBuffer data;
+
+        @Override
+        public long getTimeMillis() {
+            return timeMillis;
+        }
+
+        @Override
+        public byte[] toByteArray() {
+            byte[] bytes = new byte[data.remaining()];
+            data.duplicate().get(bytes);
+            return bytes;
+        }
+    }
+}
@@ -12,13 +12,22 @@ import org.danielli.logging.handler.RollingFileHandler;
 public class RollingLogger<T extends RollingFileHandler> extends DefaultLogger<T> {
 
     public RollingLogger(boolean immediateFlush, T handler) {
-        super(immediateFlush, handler);
+        this(immediateFlush, false, handler);
+    }
+
+    public RollingLogger(boolean immediateFlush, boolean periodicFlush, T handler) {
+        super(immediateFlush, periodicFlush, handler);
         handler.initialize();
     }
 
     @Override
     public void write(LoggerEvent event, boolean endOfBatch) {
-        handler.checkRollover(event);
-        super.write(event, endOfBatch);
+        write(event, event.toByteArray(), endOfBatch);
+    }
+
+    @Override
+    public void write(LoggerEvent event, byte[] bytes, boolean endOfBatch) {
+        handler.checkRollover(event, bytes.length);
+        write(event, bytes, 0, bytes.length, endOfBatch);
     }
 }
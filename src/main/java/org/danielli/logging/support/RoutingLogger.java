@@ -0,0 +1,375 @@
+package org.danielli.logging.support;
+
+import com.google.common.collect.Lists;
+import com.lmax.disruptor.WaitStrategy;
+import com.lmax.disruptor.dsl.ProducerType;
+import org.danielli.common.clock.Clock;
+import org.danielli.common.concurrent.async.InvokeFlusher;
+import org.danielli.logging.BatchLogger;
+import org.danielli.logging.LoggerEvent;
+import org.danielli.logging.exception.ExceptionHandler;
+import org.danielli.logging.handler.FileHandler;
+import org.danielli.logging.handler.RollingFileHandler;
+import org.danielli.logging.handler.support.DefaultFileHandler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 路由Logger。按路由键将事件分发到各自的日志文件，所有文件共享少量RingBuffer和消费线程（分片），同一路由键总是落在同一分片，保证顺序。
+ * <pre>
+ * 路由键只在写入线程计算一次，与事件一起放入RingBuffer，消费线程不再调用Router。
+ * 日志文件在首次写入时才打开；打开数超过maxOpenFiles时按LRU关闭，空闲（按clock计算）超过idleTimeout的文件在批次结束时关闭，再次写入时重新以追加方式打开。
+ * 丢弃或写入失败时ExceptionHandler收到的是原始事件。
+ * </pre>
+ *
+ * @author Daniel Li
+ * @since 19 October 2026
+ */
+public class RoutingLogger implements BatchLogger {
+
+    private final List<InvokeFlusher<LoggerEvent>> flushers;
+    private final ShardListener[] listeners;
+    private final Router router;
+    private final ExceptionHandler handler;
+    private final ExceptionHandler addHandler;
+    private final AsyncLogger.AddAction addAction;
+
+    public RoutingLogger(Router router, HandlerFactory factory, int shards, int maxOpenFiles, long idleTimeout, Clock clock,
+                         WaitStrategy waitStrategy, ProducerType producerType, int bufferSize, int notifySize,
+                         AsyncLogger.AddAction addAction, ExceptionHandler handler) {
+        this.router = router;
+        this.addAction = addAction;
+        this.handler = handler;
+        this.addHandler = new UnwrappingExceptionHandler(handler);
+        this.flushers = new ArrayList<>(shards);
+        this.listeners = new ShardListener[shards];
+        for (int i = 0; i < shards; i++) {
+            this.listeners[i] = new ShardListener(factory, maxOpenFiles, idleTimeout, clock);
+            InvokeFlusher.Builder<LoggerEvent> builder = new InvokeFlusher.Builder<LoggerEvent>().setBufferSize(bufferSize).setNotifySize(notifySize)
+                    .setProducerType(producerType).setWaitStrategy(waitStrategy).setNamePrefix("routinglogger-" + i);
+            builder.addListenerGroup(this.listeners[i]);
+            this.flushers.add(builder.build());
+        }
+    }
+
+    private int shard(String key) {
+        return (key.hashCode() & Integer.MAX_VALUE) % flushers.size();
+    }
+
+    private InvokeFlusher<LoggerEvent> select(String key) {
+        return flushers.get(shard(key));
+    }
+
+    @Override
+    public void write(LoggerEvent event) {
+        String key = router.route(event);
+        if (key == null) {
+            handler.handleEvent("Routing key not found, discard", event);
+            return;
+        }
+        addAction.add(select(key), new RoutedEvent(key, event), addHandler);
+    }
+
+    /**
+     * 按分片分组后批量写入，每个分片申请一次连续序号。
+     */
+    @Override
+    public void write(List<LoggerEvent> events) {
+        List<List<LoggerEvent>> shards = new ArrayList<>(Collections.<List<LoggerEvent>>nCopies(flushers.size(), null));
+        for (LoggerEvent event : events) {
+            String key = router.route(event);
+            if (key == null) {
+                handler.handleEvent("Routing key not found, discard", event);
+                continue;
+            }
+            int shard = shard(key);
+            List<LoggerEvent> shardEvents = shards.get(shard);
+            if (shardEvents == null) {
+                shards.set(shard, shardEvents = Lists.newArrayList());
+            }
+            shardEvents.add(new RoutedEvent(key, event));
+        }
+        for (int i = 0; i < shards.size(); i++) {
+            if (shards.get(i) != null) {
+                addAction.add(flushers.get(i), shards.get(i), addHandler);
+            }
+        }
+    }
+
+    /**
+     * 分片消费线程非线程安全，endOfBatch仅作为普通写入，由消费线程在批次结束时统一刷新。
+     */
+    @Override
+    public void write(LoggerEvent event, boolean endOfBatch) {
+        write(event);
+    }
+
+    /**
+     * 由各分片消费线程在批次结束时刷新。
+     */
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+        long lost = 0;
+        for (InvokeFlusher<LoggerEvent> flusher : flushers) {
+            lost += flusher.shutdown();
+        }
+        if (lost > 0) {
+            handler.handle("Shutdown timed out, " + lost + " events lost");
+        }
+        for (ShardListener listener : listeners) {
+            listener.close();
+        }
+    }
+
+    /**
+     * 路由器，返回事件的路由键。
+     *
+     * @author Daniel Li
+     * @since 19 October 2026
+     */
+    public interface Router {
+
+        String route(LoggerEvent event);
+
+    }
+
+    /**
+     * 日志文件工厂，按路由键创建日志文件。重新打开时必须以追加方式打开。
+     *
+     * @author Daniel Li
+     * @since 19 October 2026
+     */
+    public interface HandlerFactory {
+
+        FileHandler create(String key);
+
+    }
+
+    /**
+     * 默认日志文件工厂。文件名中的%key替换为路由键。
+     *
+     * @author Daniel Li
+     * @since 19 October 2026
+     */
+    public static class DefaultHandlerFactory implements HandlerFactory {
+
+        private static final String KEY = "%key";
+
+        private final String fileNamePattern;
+        private final int bufferSize;
+        private final boolean useDirectMemory;
+        private final Clock clock;
+        private final ExceptionHandler handler;
+
+        public DefaultHandlerFactory(String fileNamePattern, int bufferSize, boolean useDirectMemory, Clock clock, ExceptionHandler handler) {
+            this.fileNamePattern = fileNamePattern;
+            this.bufferSize = bufferSize;
+            this.useDirectMemory = useDirectMemory;
+            this.clock = clock;
+            this.handler = handler;
+        }
+
+        @Override
+        public FileHandler create(String key) {
+            return new DefaultFileHandler(fileNamePattern.replace(KEY, key), true, bufferSize, useDirectMemory, clock, handler);
+        }
+    }
+
+    /**
+     * RingBuffer中的事件，携带写入线程计算的路由键。
+     */
+    private static class RoutedEvent implements LoggerEvent {
+
+        private static final long serialVersionUID = -3538404913520387046L;
+
+        private final String key;
+        private final LoggerEvent event;
+
+        RoutedEvent(String key, LoggerEvent event) {
+            this.key = key;
+            this.event = event;
+        }
+
+        @Override
+        public long getTimeMillis() {
+            return event.getTimeMillis();
+        }
+
+        @Override
+        public byte[] toByteArray() {
+            return event.toByteArray();
+        }
+    }
+
+    private static LoggerEvent unwrap(LoggerEvent event) {
+        return event instanceof RoutedEvent ? ((RoutedEvent) event).event : event;
+    }
+
+    /**
+     * 添加行为丢弃事件时报告原始事件。
+     */
+    private static class UnwrappingExceptionHandler implements ExceptionHandler {
+
+        private final ExceptionHandler handler;
+
+        UnwrappingExceptionHandler(ExceptionHandler handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public void handleEventException(String msg, Throwable e, LoggerEvent event) {
+            handler.handleEventException(msg, e, unwrap(event));
+        }
+
+        @Override
+        public void handleException(String msg, Throwable e) {
+            handler.handleException(msg, e);
+        }
+
+        @Override
+        public void handleEvent(String msg, LoggerEvent event) {
+            handler.handleEvent(msg, unwrap(event));
+        }
+
+        @Override
+        public void handle(String msg) {
+            handler.handle(msg);
+        }
+    }
+
+    private static class Entry {
+
+        private final FileHandler handler;
+        private long lastWriteTime;
+        private boolean dirty;
+        private boolean closed;
+
+        public Entry(FileHandler handler) {
+            this.handler = handler;
+        }
+    }
+
+    private class ShardListener implements InvokeFlusher.EventListener<LoggerEvent>, InvokeFlusher.FlushableListener {
+
+        private final HandlerFactory factory;
+        private final long idleTimeout;
+        private final Clock clock;
+        private final Map<String, Entry> entries;
+        private final List<Entry> dirtyEntries = Lists.newArrayList();
+        private long lastSweepTime;
+
+        public ShardListener(HandlerFactory factory, final int maxOpenFiles, long idleTimeout, Clock clock) {
+            this.factory = factory;
+            this.idleTimeout = idleTimeout;
+            this.clock = clock;
+            this.lastSweepTime = clock.currentTimeMillis();
+            this.entries = new LinkedHashMap<String, Entry>(16, 0.75F, true) {
+
+                private static final long serialVersionUID = 4185233409213468312L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                    if (size() > maxOpenFiles) {
+                        close(eldest.getValue());
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        private Entry get(String key) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                FileHandler fileHandler = factory.create(key);
+                if (fileHandler instanceof RollingFileHandler) {
+                    ((RollingFileHandler) fileHandler).initialize();
+                }
+                entry = new Entry(fileHandler);
+                entries.put(key, entry);
+            }
+            return entry;
+        }
+
+        private void close(Entry entry) {
+            entry.closed = true;
+            entry.handler.close();
+        }
+
+        public void close() {
+            for (Entry entry : entries.values()) {
+                close(entry);
+            }
+            entries.clear();
+        }
+
+        @Override
+        public void onException(Throwable e, long sequence, LoggerEvent event) {
+            RoutingLogger.this.handler.handleEventException(e.getMessage(), e, unwrap(event));
+        }
+
+        @Override
+        public void onEvent(LoggerEvent event, boolean endOfBatch) throws Exception {
+            try {
+                write(event);
+            } finally {
+                if (endOfBatch) {
+                    flush();
+                }
+            }
+        }
+
+        private void write(LoggerEvent event) {
+            RoutedEvent routed = (RoutedEvent) event;
+            event = routed.event;
+            Entry entry = get(routed.key);
+            byte[] bytes = event.toByteArray();
+            if (entry.handler instanceof RollingFileHandler) {
+                ((RollingFileHandler) entry.handler).checkRollover(event, bytes.length);
+            }
+            if (bytes.length > 0) {
+                entry.handler.write(bytes);
+                if (!entry.dirty) {
+                    entry.dirty = true;
+                    dirtyEntries.add(entry);
+                }
+            }
+            entry.lastWriteTime = clock.currentTimeMillis();
+        }
+
+        @Override
+        public void flush() {
+            for (Entry entry : dirtyEntries) {
+                if (!entry.closed) {
+                    entry.handler.flush();
+                }
+                entry.dirty = false;
+            }
+            dirtyEntries.clear();
+
+            long now = clock.currentTimeMillis();
+            if (now - lastSweepTime < idleTimeout) {
+                return;
+            }
+            lastSweepTime = now;
+            // 按访问顺序遍历，遇到未空闲的即停止
+            for (Iterator<Entry> iterator = entries.values().iterator(); iterator.hasNext(); ) {
+                Entry entry = iterator.next();
+                if (now - entry.lastWriteTime < idleTimeout) {
+                    break;
+                }
+                close(entry);
+                iterator.remove();
+            }
+        }
+    }
+}
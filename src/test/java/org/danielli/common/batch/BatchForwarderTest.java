@@ -0,0 +1,194 @@
+package org.danielli.common.batch;
+
+import org.danielli.common.clock.Clock;
+import org.danielli.common.concurrent.async.ParallelFlusher;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link BatchForwarder} 测试。
+ *
+ * @author Daniel Li
+ * @since 19 October 2026
+ */
+public class BatchForwarderTest {
+
+    @Test
+    public void testForward() {
+        final TestClock clock = new TestClock();
+        // processor拥有交给它的批量，不复制直接保留
+        final List<List<Integer>> batches = new ArrayList<>();
+        BatchForwarder<Integer> forwarder = new BatchForwarder<>(4, 10, TimeUnit.MILLISECONDS, 2, clock,
+                new BatchForwarder.Processor<Integer>() {
+                    @Override
+                    public void process(List<Integer> events) {
+                        batches.add(events);
+                    }
+                });
+
+        for (int i = 0; i < 9; i++) {
+            forwarder.add(i);
+        }
+        Assert.assertEquals(Arrays.asList(Arrays.asList(0, 1, 2, 3), Arrays.asList(4, 5, 6, 7)), batches);
+        Assert.assertEquals(1, forwarder.size());
+
+        // 只在每checkInterval次添加时检查时间
+        clock.time += 11;
+        Assert.assertTrue(forwarder.flushIfExpired());
+        Assert.assertEquals(Arrays.asList(8), batches.get(2));
+        forwarder.add(9);
+        clock.time += 11;
+        forwarder.add(10);
+        Assert.assertEquals(Arrays.asList(9, 10), batches.get(3));
+
+        forwarder.add(11, true);
+        Assert.assertEquals(Arrays.asList(11), batches.get(4));
+        forwarder.flush();
+        Assert.assertEquals(5, batches.size());
+        forwarder.add(12);
+        forwarder.flush();
+        Assert.assertEquals(Arrays.asList(12), batches.get(5));
+        Assert.assertEquals(Arrays.asList(Arrays.asList(0, 1, 2, 3), Arrays.asList(4, 5, 6, 7)), batches.subList(0, 2));
+    }
+
+    @Test
+    public void testRelease() {
+        final List<List<Integer>> batches = new ArrayList<>();
+        BatchForwarder<Integer> forwarder = new BatchForwarder<>(2, 10, TimeUnit.MILLISECONDS, new TestClock(),
+                new BatchForwarder.Processor<Integer>() {
+                    @Override
+                    public void process(List<Integer> events) {
+                        batches.add(events);
+                    }
+                });
+        forwarder.add(0);
+        forwarder.add(1);
+        // 未归还时使用新列表，已交出的批量不变
+        forwarder.add(2);
+        forwarder.add(3);
+        Assert.assertNotSame(batches.get(0), batches.get(1));
+        Assert.assertEquals(Arrays.asList(0, 1), batches.get(0));
+
+        // 归还后在聚合下一批时复用
+        BatchForwarder.release(batches.get(0));
+        try {
+            BatchForwarder.release(batches.get(0));
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            // 每个批量只能归还一次
+        }
+        for (int i = 4; i < 8; i++) {
+            forwarder.add(i);
+        }
+        Assert.assertSame(batches.get(0), batches.get(3));
+        Assert.assertEquals(Arrays.asList(6, 7), batches.get(3));
+        Assert.assertEquals(Arrays.asList(2, 3), batches.get(1));
+        Assert.assertEquals(Arrays.asList(4, 5), batches.get(2));
+    }
+
+    @Test
+    public void testListenerOwnsBatch() throws InterruptedException {
+        final int size = 1000;
+        final List<List<Integer>> kept = new ArrayList<>();
+        final CountDownLatch countDownLatch = new CountDownLatch(size);
+        ParallelFlusher<Integer> flusher = new ParallelFlusher.Builder<Integer>().setBufferSize(1024).setThreads(1)
+                .setListener(new ParallelFlusher.BatchEventListener<Integer>(10, 1, TimeUnit.HOURS, new TestClock()) {
+                    @Override
+                    public void onEvents(List<Integer> events) throws Exception {
+                        // 保留批量，不归还
+                        kept.add(events);
+                        for (int i = 0; i < events.size(); i++) {
+                            countDownLatch.countDown();
+                        }
+                    }
+
+                    @Override
+                    public void onException(Throwable e, long sequence, Integer event) {
+                        e.printStackTrace();
+                    }
+                }).build();
+        for (int i = 0; i < size; i++) {
+            flusher.add(i);
+        }
+        Assert.assertTrue(countDownLatch.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(0, flusher.shutdown());
+        // 保留的批量没有被后续事件覆盖
+        int next = 0;
+        for (List<Integer> events : kept) {
+            for (Integer event : events) {
+                Assert.assertEquals(next++, event.intValue());
+            }
+        }
+        Assert.assertEquals(size, next);
+    }
+
+    @Test
+    public void testDurationAtLowRate() {
+        TestClock clock = new TestClock();
+        final List<List<Integer>> batches = new ArrayList<>();
+        // 默认每次添加都检查时间
+        BatchForwarder<Integer> forwarder = new BatchForwarder<>(100, 10, TimeUnit.MILLISECONDS, clock,
+                new BatchForwarder.Processor<Integer>() {
+                    @Override
+                    public void process(List<Integer> events) {
+                        batches.add(events);
+                    }
+                });
+        forwarder.add(0);
+        clock.time += 11;
+        forwarder.add(1);
+        Assert.assertEquals(Arrays.asList(Arrays.asList(0, 1)), batches);
+        // 时间从批量中第一个元素开始计算
+        clock.time += 100;
+        forwarder.add(2);
+        Assert.assertEquals(1, batches.size());
+        Assert.assertEquals(1, forwarder.size());
+    }
+
+    @Test
+    public void testParallelFlusherTail() throws InterruptedException {
+        final int size = 1000;
+        final AtomicInteger received = new AtomicInteger();
+        final CountDownLatch countDownLatch = new CountDownLatch(size);
+        ParallelFlusher<Integer> flusher = new ParallelFlusher.Builder<Integer>().setBufferSize(1024).setThreads(1)
+                .setListener(new ParallelFlusher.BatchEventListener<Integer>(64, 1, TimeUnit.HOURS, new TestClock()) {
+                    @Override
+                    public void onEvents(List<Integer> events) throws Exception {
+                        for (int i = 0; i < events.size(); i++) {
+                            received.incrementAndGet();
+                            countDownLatch.countDown();
+                        }
+                        release(events);
+                    }
+
+                    @Override
+                    public void onException(Throwable e, long sequence, Integer event) {
+                        e.printStackTrace();
+                    }
+                }).build();
+        for (int i = 0; i < size; i++) {
+            flusher.add(i);
+        }
+        // 不足一个批量的剩余事件在消费者空闲时转发，无需等待下一个事件或duration
+        Assert.assertTrue(countDownLatch.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(0, flusher.shutdown());
+        Assert.assertEquals(size, received.get());
+    }
+
+    private static class TestClock implements Clock {
+
+        private long time;
+
+        @Override
+        public long currentTimeMillis() {
+            return time;
+        }
+    }
+}
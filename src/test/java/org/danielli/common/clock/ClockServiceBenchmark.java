@@ -0,0 +1,49 @@
+package org.danielli.common.clock;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link org.danielli.common.clock.ClockService} 多线程读取耗时，与{@link SystemClock}、{@link CachedClock}对比。
+ * 手动运行，不在单元测试中执行。
+ *
+ * @author Daniel Li
+ * @since 19 October 2026
+ */
+public class ClockServiceBenchmark {
+
+    private static final int THREADS = 8;
+    private static final int READS = 5000000;
+
+    public static void main(String[] args) throws InterruptedException {
+        benchmark("SystemClock", new SystemClock());
+        benchmark("CachedClock", new CachedClock());
+        ClockService service = new ClockService(1, TimeUnit.MILLISECONDS, false).start();
+        benchmark("ClockService", service);
+        service.stop();
+    }
+
+    private static void benchmark(String name, final Clock clock) throws InterruptedException {
+        final CountDownLatch countDownLatch = new CountDownLatch(THREADS);
+        final long[] sinks = new long[THREADS];
+        long start = System.nanoTime();
+        for (int i = 0; i < THREADS; i++) {
+            final int index = i;
+            new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    long sink = 0;
+                    for (int i = 0; i < READS; i++) {
+                        sink += clock.currentTimeMillis();
+                    }
+                    sinks[index] = sink;
+                    countDownLatch.countDown();
+                }
+            }).start();
+        }
+        countDownLatch.await();
+        long elapsed = System.nanoTime() - start;
+        System.out.println(name + ": " + TimeUnit.NANOSECONDS.toMillis(elapsed) + "ms, " + ((double) elapsed / READS) + " ns/read per thread");
+    }
+}
@@ -0,0 +1,71 @@
+package org.danielli.common.clock;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link org.danielli.common.clock.ClockService} 测试。多线程读取与{@link SystemClock}的对比见{@link ClockServiceBenchmark}。
+ *
+ * @author Daniel Li
+ * @since 19 October 2026
+ */
+public class ClockServiceTest {
+
+    private static final int THREADS = 8;
+
+    @Test
+    public void testLifecycle() throws InterruptedException {
+        ClockService service = new ClockService(1, TimeUnit.MILLISECONDS, true);
+        Assert.assertFalse(service.isRunning());
+        Assert.assertTrue(Math.abs(service.currentTimeMillis() - System.currentTimeMillis()) <= 1);
+
+        service.start();
+        Assert.assertTrue(service.isRunning());
+        long millis = service.currentTimeMillis();
+        long nanoTime = service.nanoTime();
+        Thread.sleep(50);
+        Assert.assertTrue(service.currentTimeMillis() > millis);
+        Assert.assertTrue(service.nanoTime() > nanoTime);
+        Assert.assertTrue(Math.abs(service.currentTimeMillis() - System.currentTimeMillis()) <= 20);
+
+        service.stop();
+        Assert.assertFalse(service.isRunning());
+        Assert.assertTrue(Math.abs(service.currentTimeMillis() - System.currentTimeMillis()) <= 1);
+    }
+
+    @Test
+    public void testCachedBetweenUpdates() throws InterruptedException {
+        // 一小时更新一次，更新线程启动时的更新之后，各线程读到的都是同一缓存时间
+        final ClockService service = new ClockService(1, TimeUnit.HOURS, true).start();
+        try {
+            Thread.sleep(20);
+            final long millis = service.currentTimeMillis();
+            final long nanoTime = service.nanoTime();
+            Thread.sleep(20);
+            final AtomicInteger mismatches = new AtomicInteger();
+            final CountDownLatch countDownLatch = new CountDownLatch(THREADS);
+            for (int i = 0; i < THREADS; i++) {
+                new Thread(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        for (int i = 0; i < 1000; i++) {
+                            if (service.currentTimeMillis() != millis || service.nanoTime() != nanoTime) {
+                                mismatches.incrementAndGet();
+                            }
+                        }
+                        countDownLatch.countDown();
+                    }
+                }).start();
+            }
+            Assert.assertTrue(countDownLatch.await(5, TimeUnit.SECONDS));
+            Assert.assertEquals(0, mismatches.get());
+        } finally {
+            service.stop();
+        }
+    }
+}
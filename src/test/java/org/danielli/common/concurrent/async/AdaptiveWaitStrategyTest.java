@@ -0,0 +1,93 @@
+package org.danielli.common.concurrent.async;
+
+import com.lmax.disruptor.EventFactory;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.Sequence;
+import com.lmax.disruptor.SequenceBarrier;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link AdaptiveWaitStrategy} 测试。
+ *
+ * @author Daniel Li
+ * @since 19 October 2026
+ */
+public class AdaptiveWaitStrategyTest {
+
+    private static final EventFactory<Object> FACTORY = new EventFactory<Object>() {
+        @Override
+        public Object newInstance() {
+            return new Object();
+        }
+    };
+
+    @Test
+    public void testBlockAndWakeUp() throws Exception {
+        // maxPark为1纳秒时仍会从自旋、睡眠进入阻塞
+        AdaptiveWaitStrategy waitStrategy = new AdaptiveWaitStrategy(10, 10, 1, 500, TimeUnit.MILLISECONDS);
+        RingBuffer<Object> ringBuffer = RingBuffer.createSingleProducer(FACTORY, 16, waitStrategy);
+        Waiter waiter = new Waiter(ringBuffer.newBarrier(), 0);
+        waiter.start();
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (waitStrategy.sleepers() == 0) {
+            Assert.assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+        Assert.assertTrue(waiter.isAlive());
+
+        // 生产者发布后唤醒阻塞的消费者，无需等待idleTimeout
+        long start = System.nanoTime();
+        ringBuffer.publish(ringBuffer.next());
+        waiter.join(10000);
+        Assert.assertEquals(0, waiter.available.get());
+        Assert.assertTrue(waiter.returned - start < TimeUnit.MILLISECONDS.toNanos(250));
+        Assert.assertEquals(0, waitStrategy.sleepers());
+    }
+
+    @Test
+    public void testWaitForDependent() throws Exception {
+        AdaptiveWaitStrategy waitStrategy = new AdaptiveWaitStrategy(10, 10, 1, 10, TimeUnit.MILLISECONDS);
+        RingBuffer<Object> ringBuffer = RingBuffer.createSingleProducer(FACTORY, 16, waitStrategy);
+        Sequence dependent = new Sequence();
+        ringBuffer.publish(ringBuffer.next());
+        Waiter waiter = new Waiter(ringBuffer.newBarrier(dependent), 0);
+        waiter.start();
+
+        // 等待前置消费者时只睡眠，不阻塞
+        Thread.sleep(100);
+        Assert.assertTrue(waiter.isAlive());
+        Assert.assertEquals(0, waitStrategy.sleepers());
+        dependent.set(0);
+        waiter.join(10000);
+        Assert.assertEquals(0, waiter.available.get());
+    }
+
+    private static class Waiter extends Thread {
+
+        private final SequenceBarrier barrier;
+        private final long sequence;
+        private final AtomicLong available = new AtomicLong(-1);
+        private volatile long returned;
+
+        Waiter(SequenceBarrier barrier, long sequence) {
+            this.barrier = barrier;
+            this.sequence = sequence;
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                available.set(barrier.waitFor(sequence));
+                returned = System.nanoTime();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
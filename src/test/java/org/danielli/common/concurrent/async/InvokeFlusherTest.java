@@ -1,7 +1,16 @@
 package org.danielli.common.concurrent.async;
 
+import com.lmax.disruptor.dsl.ProducerType;
+import org.danielli.common.clock.SystemClock;
+import org.junit.Assert;
 import org.junit.Test;
 
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -66,4 +75,351 @@ public class InvokeFlusherTest {
         }
         flusher.shutdown();
     }
+
+    @Test
+    public void testBatchAdd() throws InterruptedException {
+        final int size = 10000;
+        final AtomicInteger expected = new AtomicInteger();
+        final AtomicInteger errors = new AtomicInteger();
+        final CountDownLatch countDownLatch = new CountDownLatch(1);
+        InvokeFlusher.Builder<Integer> builder = new InvokeFlusher.Builder<Integer>().setBufferSize(1024).setNotifySize(128).setNamePrefix("test");
+        InvokeFlusher<Integer> flusher = builder.addListenerGroup(new InvokeFlusher.EventListener<Integer>() {
+            @Override
+            public void onException(Throwable e, long sequence, Integer event) {
+                errors.incrementAndGet();
+            }
+
+            @Override
+            public void onEvent(Integer event, boolean endOfBatch) throws Exception {
+                if (event != expected.getAndIncrement()) {
+                    errors.incrementAndGet();
+                }
+                if (event == size - 1) {
+                    countDownLatch.countDown();
+                }
+            }
+        }).build();
+
+        // 超过bufferSize时分段申请
+        flusher.add(size, new InvokeFlusher.Filler<Integer>() {
+            @Override
+            public Integer fill(int index) {
+                return index;
+            }
+        });
+        countDownLatch.await();
+        Assert.assertEquals(size, expected.get());
+        Assert.assertEquals(0, errors.get());
+        Assert.assertEquals(0, flusher.shutdown());
+        Assert.assertEquals(0, flusher.tryAdd(Arrays.asList(1, 2, 3)));
+    }
+
+    @Test
+    public void testUnfilledEndOfBatch() throws InterruptedException {
+        final List<Integer> received = new ArrayList<>();
+        final List<Boolean> endOfBatches = new ArrayList<>();
+        final CountDownLatch flushed = new CountDownLatch(1);
+        abstract class FlushableEventListener implements InvokeFlusher.EventListener<Integer>, InvokeFlusher.FlushableListener {
+        }
+        InvokeFlusher<Integer> flusher = new InvokeFlusher.Builder<Integer>().setBufferSize(1024).setNamePrefix("test")
+                .addListenerGroup(new FlushableEventListener() {
+                    @Override
+                    public void onException(Throwable e, long sequence, Integer event) {
+                        e.printStackTrace();
+                    }
+
+                    @Override
+                    public void onEvent(Integer event, boolean endOfBatch) throws Exception {
+                        received.add(event);
+                        endOfBatches.add(endOfBatch);
+                    }
+
+                    @Override
+                    public void flush() {
+                        flushed.countDown();
+                    }
+                }).build();
+
+        // 后两个槽位未填充，最后一个未填充的槽位结束批次
+        try {
+            flusher.add(4, new InvokeFlusher.Filler<Integer>() {
+                @Override
+                public Integer fill(int index) {
+                    if (index == 2) {
+                        throw new IllegalStateException();
+                    }
+                    return index;
+                }
+            });
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            // 异常继续抛出
+        }
+        Assert.assertTrue(flushed.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(0, flusher.shutdown());
+        Assert.assertEquals(Arrays.asList(0, 1), received);
+        Assert.assertFalse(endOfBatches.get(1));
+    }
+
+    @Test
+    public void testNullEvent() throws InterruptedException {
+        final List<Integer> received = new ArrayList<>();
+        final CountDownLatch latch = new CountDownLatch(3);
+        InvokeFlusher<Integer> flusher = new InvokeFlusher.Builder<Integer>().setBufferSize(1024).setNamePrefix("test")
+                .addListenerGroup(new InvokeFlusher.EventListener<Integer>() {
+                    @Override
+                    public void onException(Throwable e, long sequence, Integer event) {
+                        e.printStackTrace();
+                    }
+
+                    @Override
+                    public void onEvent(Integer event, boolean endOfBatch) throws Exception {
+                        received.add(event);
+                        latch.countDown();
+                    }
+                }).build();
+
+        // null事件不是未填充的槽位，照常交给监听器
+        flusher.add(Arrays.asList(0, null, 2));
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(0, flusher.shutdown());
+        Assert.assertEquals(Arrays.asList(0, null, 2), received);
+    }
+
+    @Test
+    public void testShutdown() {
+        final AtomicInteger value = new AtomicInteger();
+        final AtomicInteger errors = new AtomicInteger();
+        InvokeFlusher.EventListener<Integer> listener = new InvokeFlusher.EventListener<Integer>() {
+            @Override
+            public void onException(Throwable e, long sequence, Integer event) {
+                errors.incrementAndGet();
+            }
+
+            @Override
+            public void onEvent(Integer event, boolean endOfBatch) throws Exception {
+                value.incrementAndGet();
+            }
+        };
+        InvokeFlusher<Integer> flusher = new InvokeFlusher.Builder<Integer>().setBufferSize(1024).setNotifySize(128).setNamePrefix("test")
+                .addListenerGroup(listener).addListenerGroup(listener).build();
+
+        for (int i = 0; i < 100000; i++) {
+            flusher.add(i);
+        }
+        long start = System.nanoTime();
+        Assert.assertEquals(0, flusher.shutdown());
+        System.out.println("shutdown: " + TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start) + "us");
+        Assert.assertEquals(200000, value.get());
+        Assert.assertTrue(flusher.isShutdown());
+
+        Assert.assertFalse(flusher.tryAdd(1));
+        // 两个Group各报告一次
+        flusher.add(1);
+        Assert.assertEquals(2, errors.get());
+        Assert.assertEquals(0, flusher.shutdown());
+    }
+
+    @Test
+    public void testIdleTimeout() throws InterruptedException {
+        final int size = 1001;
+        final CountDownLatch countDownLatch = new CountDownLatch(size);
+        InvokeFlusher.EventListener<Integer>[] group = newGroup(2);
+        for (int i = 0; i < group.length; i++) {
+            group[i] = new InvokeFlusher.BatchEventListener<Integer>(64, 1, TimeUnit.HOURS, new SystemClock()) {
+                @Override
+                public void onEvents(List<Integer> events) throws Exception {
+                    for (int i = 0; i < events.size(); i++) {
+                        countDownLatch.countDown();
+                    }
+                }
+
+                @Override
+                public void onException(Throwable e, long sequence, Integer event) {
+                    e.printStackTrace();
+                }
+            };
+        }
+        // 条带化的批量监听器收不到其他条带的endOfBatch
+        InvokeFlusher<Integer> flusher = new InvokeFlusher.Builder<Integer>().setBufferSize(1024).setNamePrefix("test")
+                .setIdleTimeout(20, TimeUnit.MILLISECONDS).addStripedListenerGroup(group).build();
+        for (int i = 0; i < size; i++) {
+            flusher.add(i);
+        }
+        Assert.assertTrue(countDownLatch.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(0, flusher.shutdown());
+    }
+
+    @Test
+    public void testClearPolicy() throws InterruptedException {
+        // 突发写入后等待消费完，已消费的事件不应继续被RingBuffer引用
+        Assert.assertEquals(0, retained(InvokeFlusher.ClearPolicy.ALL, 1));
+        Assert.assertEquals(0, retained(InvokeFlusher.ClearPolicy.ALL, 2));
+        Assert.assertEquals(0, retained(InvokeFlusher.ClearPolicy.EVENT, 2));
+        Assert.assertEquals(512, retained(InvokeFlusher.ClearPolicy.NONE, 1));
+    }
+
+    private int retained(InvokeFlusher.ClearPolicy clearPolicy, int handlers) throws InterruptedException {
+        final int size = 512;
+        final CountDownLatch countDownLatch = new CountDownLatch(size * handlers);
+        InvokeFlusher.EventListener<byte[]>[] group = newGroup(handlers);
+        for (int i = 0; i < group.length; i++) {
+            group[i] = new InvokeFlusher.EventListener<byte[]>() {
+                @Override
+                public void onException(Throwable e, long sequence, byte[] event) {
+                    e.printStackTrace();
+                }
+
+                @Override
+                public void onEvent(byte[] event, boolean endOfBatch) throws Exception {
+                    countDownLatch.countDown();
+                }
+            };
+        }
+        InvokeFlusher<byte[]> flusher = new InvokeFlusher.Builder<byte[]>().setBufferSize(1024).setNamePrefix("test")
+                .setClearPolicy(clearPolicy).addListenerGroup(group).build();
+        List<WeakReference<byte[]>> references = new ArrayList<>(size);
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long before = runtime.totalMemory() - runtime.freeMemory();
+        for (int i = 0; i < size; i++) {
+            byte[] event = new byte[16 * 1024];
+            references.add(new WeakReference<>(event));
+            flusher.add(event);
+        }
+        Assert.assertTrue(countDownLatch.await(5, TimeUnit.SECONDS));
+
+        // 最后一个消费者在onEvent返回后才清除槽位
+        int retained = size;
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            System.gc();
+            retained = 0;
+            for (WeakReference<byte[]> reference : references) {
+                if (reference.get() != null) {
+                    retained++;
+                }
+            }
+            if (retained == 0 || clearPolicy == InvokeFlusher.ClearPolicy.NONE) {
+                break;
+            }
+            Thread.sleep(10);
+        }
+        long after = runtime.totalMemory() - runtime.freeMemory();
+        System.out.println(clearPolicy + "\thandlers: " + handlers + "\tretained events: " + retained + "\tretained heap: "
+                + Math.max(0, after - before) / 1024 + "KB");
+        Assert.assertEquals(0, flusher.shutdown());
+        return retained;
+    }
+
+    @Test
+    public void testGrow() throws InterruptedException {
+        final CountDownLatch gate = new CountDownLatch(1);
+        final List<Integer> received = new ArrayList<>();
+        InvokeFlusher.EventListener<Integer>[] group = newGroup(1);
+        group[0] = new InvokeFlusher.EventListener<Integer>() {
+            @Override
+            public void onException(Throwable e, long sequence, Integer event) {
+                e.printStackTrace();
+            }
+
+            @Override
+            public void onEvent(Integer event, boolean endOfBatch) throws Exception {
+                gate.await();
+                synchronized (received) {
+                    received.add(event);
+                }
+            }
+        };
+        InvokeFlusher<Integer> flusher = new InvokeFlusher.Builder<Integer>().setBufferSize(64).setMaxBufferSize(1024)
+                .setNamePrefix("test").addListenerGroup(group).build();
+        Assert.assertEquals(64, flusher.getBufferSize());
+
+        // 消费者阻塞时写满64后扩容为128，旧RingBuffer消费完之前不再扩容
+        int added = 0;
+        while (flusher.tryAdd(added)) {
+            added++;
+        }
+        Assert.assertEquals(64 + 128, added);
+        Assert.assertEquals(128, flusher.getBufferSize());
+
+        gate.countDown();
+        int size = 10000;
+        for (int i = added; i < size; i++) {
+            flusher.add(i);
+        }
+        Assert.assertEquals(0, flusher.shutdown());
+        Assert.assertTrue(flusher.getBufferSize() <= 1024);
+        // 扩容前后事件顺序不变
+        Assert.assertEquals(size, received.size());
+        for (int i = 0; i < size; i++) {
+            Assert.assertEquals(i, received.get(i).intValue());
+        }
+    }
+
+    @Test
+    public void testShutdownTimeoutAfterGrow() throws InterruptedException {
+        final CountDownLatch gate = new CountDownLatch(1);
+        final AtomicInteger received = new AtomicInteger();
+        InvokeFlusher<Integer> flusher = new InvokeFlusher.Builder<Integer>().setBufferSize(64).setMaxBufferSize(1024)
+                .setShutdownTimeout(200, TimeUnit.MILLISECONDS).setNamePrefix("test")
+                .addListenerGroup(new InvokeFlusher.EventListener<Integer>() {
+                    @Override
+                    public void onException(Throwable e, long sequence, Integer event) {
+                        e.printStackTrace();
+                    }
+
+                    @Override
+                    public void onEvent(Integer event, boolean endOfBatch) throws Exception {
+                        gate.await();
+                        received.incrementAndGet();
+                    }
+                }).build();
+
+        // 第一个事件阻塞消费者，旧Ring剩63个，扩容后的新Ring有128个
+        int added = 0;
+        while (flusher.tryAdd(added)) {
+            added++;
+        }
+        Assert.assertEquals(64 + 128, added);
+
+        // 关闭超时后放行，旧Ring和新Ring中未消费的事件都计入丢失个数
+        Thread releaser = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(300);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                gate.countDown();
+            }
+        });
+        releaser.start();
+        Assert.assertEquals(added - 1, flusher.shutdown());
+        releaser.join();
+        Assert.assertEquals(1, received.get());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIdleTimeoutWithSingleProducer() {
+        // 空闲事件由调度线程发布，SINGLE下会出现第二个生产者
+        InvokeFlusher.EventListener<Integer>[] group = newGroup(1);
+        group[0] = new InvokeFlusher.BatchEventListener<Integer>(64, 1, TimeUnit.SECONDS, new SystemClock()) {
+            @Override
+            public void onEvents(List<Integer> events) throws Exception {
+            }
+
+            @Override
+            public void onException(Throwable e, long sequence, Integer event) {
+            }
+        };
+        new InvokeFlusher.Builder<Integer>().setProducerType(ProducerType.SINGLE).setIdleTimeout(10, TimeUnit.MILLISECONDS)
+                .addListenerGroup(group).build();
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <E> InvokeFlusher.EventListener<E>[] newGroup(int size) {
+        return new InvokeFlusher.EventListener[size];
+    }
 }
@@ -0,0 +1,48 @@
+package org.danielli.common.concurrent.async;
+
+import com.lmax.disruptor.dsl.ProducerType;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link org.danielli.common.concurrent.async.ParallelFlusher} 不同claimSize下的吞吐量对比。手动运行，不在单元测试中执行。
+ *
+ * @author Daniel Li
+ * @since 19 October 2026
+ */
+public class ParallelFlusherBenchmark {
+
+    public static void main(String[] args) {
+        final int size = 5000000;
+        Integer[] events = new Integer[256];
+        for (int i = 0; i < events.length; i++) {
+            events[i] = i;
+        }
+        for (int claimSize : new int[]{1, 64, 1, 64}) {
+            final AtomicInteger value = new AtomicInteger();
+            ParallelFlusher<Integer> parallelFlusher = new ParallelFlusher.Builder<Integer>().setBufferSize(64 * 1024).setNamePrefix("test")
+                    .setThreads(4).setProducerType(ProducerType.SINGLE).setClaimSize(claimSize)
+                    .setListener(new ParallelFlusher.EventListener<Integer>() {
+                        @Override
+                        public void onException(Throwable e, long sequence, Integer event) {
+                            e.printStackTrace();
+                        }
+
+                        @Override
+                        public void onEvent(Integer event) throws Exception {
+                            if (event == 0) {
+                                value.incrementAndGet();
+                            }
+                        }
+                    }).build();
+
+            long start = System.nanoTime();
+            for (int i = 0; i < size; i += events.length) {
+                parallelFlusher.add(events);
+            }
+            long lost = parallelFlusher.shutdown();
+            long elapsed = System.nanoTime() - start;
+            System.out.println("claimSize: " + claimSize + "\t" + (size * 1000L / elapsed) + " ops/us, lost: " + lost);
+        }
+    }
+}
@@ -1,11 +1,22 @@
 package org.danielli.common.concurrent.async;
 
+import com.google.common.base.Function;
+import com.lmax.disruptor.dsl.ProducerType;
+import org.danielli.common.clock.SystemClock;
+import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 /**
- * {@link org.danielli.common.concurrent.async.ParallelFlusher} 测试。
+ * {@link org.danielli.common.concurrent.async.ParallelFlusher} 测试。claimSize的吞吐量对比见{@link ParallelFlusherBenchmark}。
  *
  * @author Daniel Li
  * @since 22 August 2015
@@ -35,4 +46,217 @@ public class ParallelFlusherTest {
         }
         parallelFlusher.shutdown();
     }
+
+    @Test
+    public void testShutdown() {
+        final AtomicInteger value = new AtomicInteger();
+        final AtomicInteger errors = new AtomicInteger();
+        ParallelFlusher<Integer> parallelFlusher = new ParallelFlusher.Builder<Integer>().setBufferSize(1024).setNamePrefix("test").setThreads(2).setListener(new ParallelFlusher.EventListener<Integer>() {
+
+            @Override
+            public void onException(Throwable e, long sequence, Integer event) {
+                errors.incrementAndGet();
+            }
+
+            @Override
+            public void onEvent(Integer event) throws Exception {
+                value.incrementAndGet();
+            }
+        }).build();
+
+        for (int i = 0; i < 100000; i++) {
+            parallelFlusher.add(i);
+        }
+        long start = System.nanoTime();
+        Assert.assertEquals(0, parallelFlusher.shutdown());
+        System.out.println("shutdown: " + TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start) + "us");
+        Assert.assertEquals(100000, value.get());
+        Assert.assertTrue(parallelFlusher.isShutdown());
+
+        Assert.assertFalse(parallelFlusher.tryAdd(1));
+        parallelFlusher.add(1);
+        Assert.assertEquals(1, errors.get());
+        Assert.assertEquals(0, parallelFlusher.shutdown());
+    }
+
+    @Test
+    public void testShutdownTimeout() {
+        ParallelFlusher<Integer> parallelFlusher = new ParallelFlusher.Builder<Integer>().setBufferSize(1024).setNamePrefix("test")
+                .setShutdownTimeout(50, TimeUnit.MILLISECONDS).setListener(new ParallelFlusher.EventListener<Integer>() {
+
+                    @Override
+                    public void onException(Throwable e, long sequence, Integer event) {
+                    }
+
+                    @Override
+                    public void onEvent(Integer event) throws Exception {
+                        Thread.sleep(10);
+                    }
+                }).build();
+
+        for (int i = 0; i < 100; i++) {
+            parallelFlusher.add(i);
+        }
+        long lost = parallelFlusher.shutdown();
+        System.out.println("lost: " + lost);
+        Assert.assertTrue(lost > 0 && lost < 100);
+    }
+
+    @Test
+    public void testIdleTimeout() throws InterruptedException {
+        final int size = 1000;
+        final CountDownLatch countDownLatch = new CountDownLatch(size);
+        ParallelFlusher<Integer> parallelFlusher = new ParallelFlusher.Builder<Integer>().setBufferSize(1024).setNamePrefix("test")
+                .setThreads(4).setIdleTimeout(20, TimeUnit.MILLISECONDS)
+                .setListener(new ParallelFlusher.BatchEventListener<Integer>(64, 1, TimeUnit.HOURS, new SystemClock()) {
+                    @Override
+                    public void onEvents(List<Integer> events) throws Exception {
+                        for (int i = 0; i < events.size(); i++) {
+                            countDownLatch.countDown();
+                        }
+                    }
+
+                    @Override
+                    public void onException(Throwable e, long sequence, Integer event) {
+                        e.printStackTrace();
+                    }
+                }).build();
+
+        for (int i = 0; i < size; i++) {
+            parallelFlusher.add(i);
+        }
+        // 没有新事件，各消费线程的剩余事件在idleTimeout后转发
+        Assert.assertTrue(countDownLatch.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(0, parallelFlusher.shutdown());
+    }
+
+    @Test
+    public void testClaimSize() throws InterruptedException {
+        final int size = 100000;
+        final AtomicIntegerArray seen = new AtomicIntegerArray(size);
+        final CountDownLatch countDownLatch = new CountDownLatch(size);
+        ParallelFlusher<Integer> parallelFlusher = new ParallelFlusher.Builder<Integer>().setBufferSize(1024).setNamePrefix("test")
+                .setThreads(4).setClaimSize(64)
+                .setListener(new ParallelFlusher.BatchEventListener<Integer>(100, 1, TimeUnit.HOURS, new SystemClock()) {
+                    @Override
+                    public void onEvents(List<Integer> events) throws Exception {
+                        for (Integer event : events) {
+                            seen.incrementAndGet(event);
+                            countDownLatch.countDown();
+                        }
+                    }
+
+                    @Override
+                    public void onException(Throwable e, long sequence, Integer event) {
+                        e.printStackTrace();
+                    }
+                }).build();
+
+        for (int i = 0; i < size; i++) {
+            parallelFlusher.add(i);
+        }
+        // 消费者即将等待时转发剩余事件，无需idleTimeout
+        Assert.assertTrue(countDownLatch.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(0, parallelFlusher.shutdown());
+        for (int i = 0; i < size; i++) {
+            Assert.assertEquals(1, seen.get(i));
+        }
+    }
+
+    @Test
+    public void testClaimSizeWithBatchAdd() {
+        final int size = 10000;
+        Integer[] events = new Integer[256];
+        for (int i = 0; i < events.length; i++) {
+            events[i] = i;
+        }
+        final AtomicInteger value = new AtomicInteger();
+        final AtomicInteger total = new AtomicInteger();
+        ParallelFlusher<Integer> parallelFlusher = new ParallelFlusher.Builder<Integer>().setBufferSize(1024).setNamePrefix("test")
+                .setThreads(4).setProducerType(ProducerType.SINGLE).setClaimSize(64)
+                .setListener(new ParallelFlusher.EventListener<Integer>() {
+                    @Override
+                    public void onException(Throwable e, long sequence, Integer event) {
+                        e.printStackTrace();
+                    }
+
+                    @Override
+                    public void onEvent(Integer event) throws Exception {
+                        total.incrementAndGet();
+                        if (event == 0) {
+                            value.incrementAndGet();
+                        }
+                    }
+                }).build();
+
+        int batches = 0;
+        for (int i = 0; i < size; i += events.length) {
+            parallelFlusher.add(events);
+            batches++;
+        }
+        // 批量申请的区间跨过多个消费者的claimSize时，每个事件仍只被处理一次
+        Assert.assertEquals(0, parallelFlusher.shutdown());
+        Assert.assertEquals(batches, value.get());
+        Assert.assertEquals(batches * events.length, total.get());
+    }
+
+    @Test
+    public void testKeyFunction() throws InterruptedException {
+        final int keys = 16;
+        final int size = 100000;
+        final ConcurrentMap<Integer, Thread> owners = new ConcurrentHashMap<>();
+        final int[] last = new int[keys];
+        final AtomicInteger errors = new AtomicInteger();
+        final CountDownLatch countDownLatch = new CountDownLatch(size);
+        ParallelFlusher<Integer> parallelFlusher = new ParallelFlusher.Builder<Integer>().setBufferSize(1024).setNamePrefix("test")
+                .setThreads(4).setKeyFunction(new Function<Integer, Integer>() {
+                    @Override
+                    public Integer apply(Integer input) {
+                        return input % keys;
+                    }
+                }).setListener(new ParallelFlusher.BatchEventListener<Integer>(64, 1, TimeUnit.HOURS, new SystemClock()) {
+                    @Override
+                    public void onEvents(List<Integer> events) throws Exception {
+                        for (Integer event : events) {
+                            int key = event % keys;
+                            // 同一键总在同一线程，按写入顺序处理，无需加锁
+                            Thread owner = owners.putIfAbsent(key, Thread.currentThread());
+                            if (owner != null && owner != Thread.currentThread() || event < last[key]) {
+                                errors.incrementAndGet();
+                            }
+                            last[key] = event;
+                            countDownLatch.countDown();
+                        }
+                    }
+
+                    @Override
+                    public void onException(Throwable e, long sequence, Integer event) {
+                        errors.incrementAndGet();
+                    }
+                }).build();
+
+        for (int i = 0; i < size; i++) {
+            parallelFlusher.add(i);
+        }
+        // 批次结束时转发剩余事件
+        Assert.assertTrue(countDownLatch.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(0, parallelFlusher.shutdown());
+        Assert.assertEquals(0, errors.get());
+        Assert.assertTrue(new HashSet<>(owners.values()).size() > 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIdleTimeoutWithSingleProducer() {
+        // 空闲事件由调度线程发布，SINGLE下会出现第二个生产者
+        new ParallelFlusher.Builder<Integer>().setProducerType(ProducerType.SINGLE).setIdleTimeout(10, TimeUnit.MILLISECONDS)
+                .setListener(new ParallelFlusher.BatchEventListener<Integer>(64, 1, TimeUnit.SECONDS, new SystemClock()) {
+                    @Override
+                    public void onEvents(List<Integer> events) throws Exception {
+                    }
+
+                    @Override
+                    public void onException(Throwable e, long sequence, Integer event) {
+                    }
+                }).build();
+    }
 }
@@ -0,0 +1,115 @@
+package org.danielli.common.io;
+
+import com.google.common.io.ByteStreams;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link IoThrottle} 测试。
+ *
+ * @author Daniel Li
+ * @since 19 October 2026
+ */
+public class IoThrottleTest {
+
+    @Test
+    public void testRate() {
+        IoThrottle throttle = new IoThrottle(1024 * 1024);
+        long start = System.nanoTime();
+        for (int i = 0; i < 6; i++) {
+            throttle.acquire(100 * 1024);
+        }
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        // 突发量为100ms，其余500KB按1MB/s限速
+        Assert.assertTrue(elapsed >= 400);
+        Assert.assertEquals(600 * 1024, throttle.getBytes());
+        Assert.assertTrue(throttle.getThrottledCount() > 0);
+        Assert.assertTrue(throttle.getThrottledTime(TimeUnit.MILLISECONDS) >= 400);
+    }
+
+    @Test
+    public void testParent() {
+        IoThrottle parent = new IoThrottle(1024 * 1024);
+        IoThrottle child = new IoThrottle(100 * 1024 * 1024, parent);
+        for (int i = 0; i < 6; i++) {
+            child.acquire(100 * 1024);
+        }
+        Assert.assertEquals(600 * 1024, parent.getBytes());
+        Assert.assertEquals(0, child.getThrottledCount());
+        Assert.assertTrue(parent.getThrottledTime(TimeUnit.MILLISECONDS) >= 400);
+    }
+
+    @Test
+    public void testThrottledCopy() throws IOException {
+        byte[] data = new byte[3 * 1024 * 1024 + 17];
+        new Random(1).nextBytes(data);
+        File source = File.createTempFile("throttle", ".src");
+        File destination = File.createTempFile("throttle", ".dst");
+        try {
+            FileOutputStream output = new FileOutputStream(source);
+            output.write(data);
+            output.close();
+
+            IoThrottle throttle = new IoThrottle(16 * 1024 * 1024);
+            Files.copyFile(source, destination, throttle);
+            InputStream input = new FileInputStream(destination);
+            try {
+                Assert.assertArrayEquals(data, ByteStreams.toByteArray(input));
+            } finally {
+                input.close();
+            }
+            Assert.assertEquals(data.length, throttle.getBytes());
+        } finally {
+            source.delete();
+            destination.delete();
+        }
+    }
+
+    @Test
+    public void testShortCopy() throws IOException {
+        final File source = File.createTempFile("throttle", ".src");
+        File destination = File.createTempFile("throttle", ".dst");
+        try {
+            FileOutputStream output = new FileOutputStream(source);
+            output.write(new byte[3 * 1024 * 1024]);
+            output.close();
+
+            // 复制过程中源文件被截断，复制不完整
+            IoThrottle throttle = new IoThrottle(1024 * 1024 * 1024) {
+                private int acquired;
+
+                @Override
+                public void acquire(long length) {
+                    if (++acquired == 2) {
+                        try {
+                            RandomAccessFile file = new RandomAccessFile(source, "rw");
+                            file.setLength(1024 * 1024);
+                            file.close();
+                        } catch (IOException e) {
+                            throw new AssertionError(e);
+                        }
+                    }
+                    super.acquire(length);
+                }
+            };
+            try {
+                Files.copyFile(source, destination, throttle);
+                Assert.fail();
+            } catch (IOException e) {
+                // 调用方据此保留源文件
+            }
+        } finally {
+            source.delete();
+            destination.delete();
+        }
+    }
+}
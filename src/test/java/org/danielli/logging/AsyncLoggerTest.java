@@ -1,13 +1,21 @@
 package org.danielli.logging;
 
+import com.lmax.disruptor.BlockingWaitStrategy;
+import com.lmax.disruptor.dsl.ProducerType;
 import org.danielli.common.clock.CachedClock;
 import org.danielli.common.clock.Clock;
 import org.danielli.logging.exception.ExceptionHandler;
+import org.danielli.logging.support.AsyncLogger;
+import org.danielli.logging.support.FilterableLogger;
+import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * {@link org.danielli.logging.Logger} 测试。
@@ -41,6 +49,150 @@ public class AsyncLoggerTest {
         logger.close();
     }
 
+    @Test
+    public void testFilterAndEncoderStages() {
+        final AtomicInteger encoded = new AtomicInteger();
+        Logger.Filter even = new Logger.Filter() {
+            @Override
+            public boolean isWrite(LoggerEvent event) {
+                return ((IndexedEvent) event).index % 2 == 0;
+            }
+        };
+        RecordingLogger plain = new RecordingLogger();
+        RecordingEncodedLogger encodedLogger = new RecordingEncodedLogger();
+        final RecordingEncodedLogger filtered = new RecordingEncodedLogger();
+        // 下游的过滤器看到的是原始事件
+        Logger filterable = new FilterableLogger(filtered, new Logger.Filter[]{new Logger.Filter() {
+            @Override
+            public boolean isWrite(LoggerEvent event) {
+                return ((IndexedEvent) event).index % 4 == 0;
+            }
+        }});
+        Logger logger = new AsyncLogger(new Logger[]{plain, encodedLogger, filterable}, new Logger.Filter[]{even}, 2, 3,
+                new BlockingWaitStrategy(), ProducerType.MULTI, 64, 64, new AsyncLogger.DefaultAddAction(-1), new TestExceptionHandler());
+        int size = 1000;
+        for (int i = 0; i < size; i++) {
+            logger.write(new IndexedEvent(i, encoded));
+        }
+        logger.close();
+
+        // 过滤阶段丢弃奇数，编码阶段对每个保留的事件只编码一次
+        Assert.assertEquals(size / 2, encoded.get());
+        for (RecordingLogger recording : new RecordingLogger[]{plain, encodedLogger}) {
+            Assert.assertEquals(size / 2, recording.events.size());
+            for (int i = 0; i < recording.events.size(); i++) {
+                Assert.assertEquals(i * 2, ((IndexedEvent) recording.events.get(i)).index);
+            }
+            Assert.assertTrue(recording.flushed);
+        }
+        Assert.assertEquals(size / 2, encodedLogger.bytes.size());
+        Assert.assertEquals("2\n", new String(encodedLogger.bytes.get(1)));
+        Assert.assertEquals(size / 4, filtered.events.size());
+        Assert.assertEquals(size / 4, filtered.bytes.size());
+    }
+
+    @Test
+    public void testFilterException() {
+        final AtomicInteger errors = new AtomicInteger();
+        Logger.Filter failing = new Logger.Filter() {
+            @Override
+            public boolean isWrite(LoggerEvent event) {
+                if (((IndexedEvent) event).index % 3 == 0) {
+                    throw new IllegalStateException();
+                }
+                return true;
+            }
+        };
+        RecordingLogger recording = new RecordingLogger();
+        Logger logger = new AsyncLogger(new Logger[]{recording}, new Logger.Filter[]{failing}, 1, 1,
+                new BlockingWaitStrategy(), ProducerType.MULTI, 64, 64, new AsyncLogger.DefaultAddAction(-1), new TestExceptionHandler() {
+            @Override
+            public void handleEventException(String msg, Throwable e, LoggerEvent event) {
+                errors.incrementAndGet();
+            }
+        });
+        int size = 1000;
+        for (int i = 0; i < size; i++) {
+            logger.write(new IndexedEvent(i, new AtomicInteger()));
+        }
+        logger.close();
+
+        // 过滤器抛出异常的事件丢弃，槽位复用时不沿用上一个事件的结果
+        Assert.assertEquals((size + 2) / 3, errors.get());
+        Assert.assertEquals(size - (size + 2) / 3, recording.events.size());
+        for (LoggerEvent event : recording.events) {
+            Assert.assertTrue(((IndexedEvent) event).index % 3 != 0);
+        }
+    }
+
+    private static class IndexedEvent implements LoggerEvent {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int index;
+        private final AtomicInteger encoded;
+
+        IndexedEvent(int index, AtomicInteger encoded) {
+            this.index = index;
+            this.encoded = encoded;
+        }
+
+        @Override
+        public long getTimeMillis() {
+            return 0;
+        }
+
+        @Override
+        public byte[] toByteArray() {
+            encoded.incrementAndGet();
+            return (index + "\n").getBytes();
+        }
+    }
+
+    /**
+     * 只实现Logger（不实现BatchLogger），写入线程逐个交给它原始事件。
+     */
+    private static class RecordingLogger implements Logger {
+
+        final List<LoggerEvent> events = new ArrayList<>();
+        volatile boolean flushed;
+
+        @Override
+        public void write(LoggerEvent event) {
+            write(event, true);
+        }
+
+        @Override
+        public void write(LoggerEvent event, boolean endOfBatch) {
+            Assert.assertTrue(event instanceof IndexedEvent);
+            events.add(event);
+            if (endOfBatch) {
+                flushed = true;
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static class RecordingEncodedLogger extends RecordingLogger implements Logger.EncodedWriter {
+
+        final List<byte[]> bytes = new ArrayList<>();
+
+        @Override
+        public void write(LoggerEvent event, boolean endOfBatch) {
+            // 编码阶段已编码，不会再调用
+            throw new AssertionError();
+        }
+
+        @Override
+        public void write(LoggerEvent event, byte[] bytes, boolean endOfBatch) {
+            this.bytes.add(bytes);
+            super.write(event, endOfBatch);
+        }
+    }
+
     private static class TestLoggerEvent implements LoggerEvent {
 
         private static Clock clock = new CachedClock();
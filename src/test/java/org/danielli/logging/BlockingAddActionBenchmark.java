@@ -0,0 +1,65 @@
+package org.danielli.logging;
+
+import com.lmax.disruptor.YieldingWaitStrategy;
+import com.lmax.disruptor.dsl.ProducerType;
+import org.danielli.logging.support.AsyncLogger;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link org.danielli.logging.support.AsyncLogger.BlockingAddAction} 吞吐量对比，平台线程与虚拟线程（JDK 21+运行时）生产者。
+ * 手动运行，不在单元测试中执行。
+ *
+ * @author Daniel Li
+ * @since 19 October 2026
+ */
+public class BlockingAddActionBenchmark {
+
+    private static final int PRODUCERS = 32;
+    private static final int EVENTS = 50000;
+
+    public static void main(String[] args) throws InterruptedException {
+        ThreadFactory threadFactory = Executors.defaultThreadFactory();
+        benchmark("platform/spin", threadFactory, new AsyncLogger.DefaultAddAction(-1));
+        benchmark("platform/blocking", threadFactory, new AsyncLogger.BlockingAddAction(-1, TimeUnit.MILLISECONDS));
+
+        threadFactory = BlockingAddActionTest.virtualThreadFactory();
+        if (threadFactory == null) {
+            System.out.println("Virtual threads are not supported by this runtime, skipped.");
+            return;
+        }
+        benchmark("virtual/spin", threadFactory, new AsyncLogger.DefaultAddAction(-1));
+        benchmark("virtual/blocking", threadFactory, new AsyncLogger.BlockingAddAction(-1, TimeUnit.MILLISECONDS));
+    }
+
+    private static void benchmark(String name, ThreadFactory threadFactory, AsyncLogger.AddAction addAction) throws InterruptedException {
+        BlockingAddActionTest.CountingLogger counter = new BlockingAddActionTest.CountingLogger(new CountDownLatch(0));
+        final Logger logger = new AsyncLogger(counter, new YieldingWaitStrategy(), ProducerType.MULTI, 1024, 128, addAction,
+                new BlockingAddActionTest.TestExceptionHandler());
+        final CountDownLatch countDownLatch = new CountDownLatch(PRODUCERS);
+        final LoggerEvent event = new BlockingAddActionTest.TestLoggerEvent();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < PRODUCERS; i++) {
+            threadFactory.newThread(new Runnable() {
+
+                @Override
+                public void run() {
+                    for (int i = 0; i < EVENTS; i++) {
+                        logger.write(event);
+                    }
+                    countDownLatch.countDown();
+                }
+            }).start();
+        }
+        countDownLatch.await();
+        long elapsed = System.nanoTime() - start;
+        logger.close();
+
+        System.out.println(name + ": " + TimeUnit.NANOSECONDS.toMillis(elapsed) + "ms, " + (PRODUCERS * (long) EVENTS * 1000000000L / elapsed)
+                + " ops/s, " + counter.count.get() + " written");
+    }
+}
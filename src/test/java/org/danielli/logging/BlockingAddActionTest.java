@@ -0,0 +1,199 @@
+package org.danielli.logging;
+
+import com.lmax.disruptor.YieldingWaitStrategy;
+import com.lmax.disruptor.dsl.ProducerType;
+import org.danielli.logging.exception.ExceptionHandler;
+import org.danielli.logging.support.AsyncLogger;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link org.danielli.logging.support.AsyncLogger.BlockingAddAction} 测试，平台线程与虚拟线程（JDK 21+运行时）生产者。
+ * 吞吐量对比见{@link BlockingAddActionBenchmark}。
+ *
+ * @author Daniel Li
+ * @since 19 October 2026
+ */
+public class BlockingAddActionTest {
+
+    private static final int BUFFER_SIZE = 16;
+
+    static ThreadFactory virtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    @Test
+    public void testPlatformThreads() throws InterruptedException {
+        testBlocking(Executors.defaultThreadFactory());
+    }
+
+    @Test
+    public void testVirtualThreads() throws InterruptedException {
+        ThreadFactory threadFactory = virtualThreadFactory();
+        if (threadFactory == null) {
+            System.out.println("Virtual threads are not supported by this runtime, skipped.");
+            return;
+        }
+        testBlocking(threadFactory);
+    }
+
+    @Test
+    public void testTimeout() throws InterruptedException {
+        CountDownLatch gate = new CountDownLatch(1);
+        CountingLogger counter = new CountingLogger(gate);
+        TestExceptionHandler handler = new TestExceptionHandler();
+        Logger logger = new AsyncLogger(counter, new YieldingWaitStrategy(), ProducerType.MULTI, BUFFER_SIZE, 1,
+                new AsyncLogger.BlockingAddAction(20, TimeUnit.MILLISECONDS), handler);
+
+        // 消费者阻塞在第一个事件上，写满后每个事件等待20ms后丢弃
+        logger.write(new TestLoggerEvent());
+        List<LoggerEvent> events = new ArrayList<>();
+        for (int i = 0; i < BUFFER_SIZE + 1; i++) {
+            events.add(new TestLoggerEvent());
+        }
+        ((BatchLogger) logger).write(events);
+        Assert.assertEquals(2, handler.discarded.get());
+
+        gate.countDown();
+        logger.close();
+        Assert.assertEquals(BUFFER_SIZE, counter.count.get());
+    }
+
+    private void testBlocking(ThreadFactory threadFactory) throws InterruptedException {
+        CountDownLatch gate = new CountDownLatch(1);
+        CountingLogger counter = new CountingLogger(gate);
+        TestExceptionHandler handler = new TestExceptionHandler();
+        final Logger logger = new AsyncLogger(counter, new YieldingWaitStrategy(), ProducerType.MULTI, BUFFER_SIZE, 1,
+                new AsyncLogger.BlockingAddAction(-1, TimeUnit.MILLISECONDS), handler);
+        final AtomicInteger written = new AtomicInteger();
+        final LoggerEvent event = new TestLoggerEvent();
+        Thread producer = threadFactory.newThread(new Runnable() {
+
+            @Override
+            public void run() {
+                for (int i = 0; i < 2 * BUFFER_SIZE; i++) {
+                    logger.write(event);
+                    written.incrementAndGet();
+                }
+            }
+        });
+        producer.start();
+
+        // 消费者阻塞在第一个事件上，写满后生产者挂起而不是自旋或丢弃
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (written.get() < BUFFER_SIZE || !isParked(producer)) {
+            Assert.assertTrue(System.nanoTime() < deadline);
+            Thread.sleep(1);
+        }
+        Assert.assertEquals(BUFFER_SIZE, written.get());
+
+        gate.countDown();
+        producer.join(TimeUnit.SECONDS.toMillis(5));
+        Assert.assertEquals(2 * BUFFER_SIZE, written.get());
+        logger.close();
+        Assert.assertEquals(2 * BUFFER_SIZE, counter.count.get());
+        Assert.assertEquals(0, handler.discarded.get());
+    }
+
+    private static boolean isParked(Thread thread) {
+        Thread.State state = thread.getState();
+        return state == Thread.State.WAITING || state == Thread.State.TIMED_WAITING;
+    }
+
+    static class CountingLogger implements BatchLogger {
+
+        final AtomicLong count = new AtomicLong();
+        private final CountDownLatch gate;
+
+        CountingLogger(CountDownLatch gate) {
+            this.gate = gate;
+        }
+
+        @Override
+        public void write(LoggerEvent event) {
+            write(event, true);
+        }
+
+        @Override
+        public void write(LoggerEvent event, boolean endOfBatch) {
+            await();
+            count.incrementAndGet();
+        }
+
+        @Override
+        public void write(List<LoggerEvent> events) {
+            await();
+            count.addAndGet(events.size());
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        private void await() {
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    static class TestLoggerEvent implements LoggerEvent {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public long getTimeMillis() {
+            return 0;
+        }
+
+        @Override
+        public byte[] toByteArray() {
+            return new byte[0];
+        }
+    }
+
+    static class TestExceptionHandler implements ExceptionHandler {
+
+        final AtomicInteger discarded = new AtomicInteger();
+
+        @Override
+        public void handleEventException(String msg, Throwable e, LoggerEvent event) {
+            e.printStackTrace();
+        }
+
+        @Override
+        public void handleException(String msg, Throwable e) {
+            e.printStackTrace();
+        }
+
+        @Override
+        public void handleEvent(String msg, LoggerEvent event) {
+            discarded.incrementAndGet();
+        }
+
+        @Override
+        public void handle(String msg) {
+            System.out.println(msg);
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package org.danielli.logging;
+
+import org.danielli.common.clock.SystemClock;
+import org.danielli.logging.exception.ExceptionHandler;
+import org.danielli.logging.handler.FileHandler;
+import org.danielli.logging.handler.support.DefaultFileHandler;
+import org.danielli.logging.support.OffHeapAsyncLogger;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link OffHeapAsyncLogger} 测试。
+ *
+ * @author Daniel Li
+ * @since 19 October 2026
+ */
+public class OffHeapAsyncLoggerTest {
+
+    @Test
+    public void testWrite() throws IOException, InterruptedException {
+        final int producers = 4;
+        final int events = 20000;
+        File file = File.createTempFile("offheap", ".log");
+        try {
+            TestExceptionHandler exceptionHandler = new TestExceptionHandler();
+            // 队列远小于写入量，反复回绕、写满等待；大记录超过文件缓冲区，直接写入文件
+            DefaultFileHandler fileHandler = new DefaultFileHandler(file.getPath(), false, 1024, true, new SystemClock(), exceptionHandler);
+            final Logger logger = new OffHeapAsyncLogger(fileHandler, false, false, 8192, true, exceptionHandler);
+            char[] padding = new char[3000];
+            Arrays.fill(padding, 'x');
+            final String large = new String(padding);
+
+            final CountDownLatch countDownLatch = new CountDownLatch(producers);
+            for (int p = 0; p < producers; p++) {
+                final int producer = p;
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int i = 0; i < events; i++) {
+                            logger.write(new TestLoggerEvent(producer + " " + i + (i % 1000 == 0 ? " " + large : "")));
+                        }
+                        countDownLatch.countDown();
+                    }
+                }).start();
+            }
+            countDownLatch.await();
+            logger.close();
+            Assert.assertEquals(0, exceptionHandler.count.get());
+
+            // 每个生产者的记录完整且有序
+            int[] next = new int[producers];
+            int lines = 0;
+            BufferedReader reader = new BufferedReader(new FileReader(file));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] parts = line.split(" ");
+                    int producer = Integer.parseInt(parts[0]);
+                    int i = Integer.parseInt(parts[1]);
+                    Assert.assertEquals(next[producer]++, i);
+                    Assert.assertEquals(i % 1000 == 0 ? 3 : 2, parts.length);
+                    lines++;
+                }
+            } finally {
+                reader.close();
+            }
+            Assert.assertEquals(producers * events, lines);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testDiscard() throws IOException {
+        File file = File.createTempFile("offheap", ".log");
+        try {
+            TestExceptionHandler exceptionHandler = new TestExceptionHandler();
+            DefaultFileHandler fileHandler = new DefaultFileHandler(file.getPath(), false, 1024, true, new SystemClock(), exceptionHandler);
+            Logger logger = new OffHeapAsyncLogger(fileHandler, false, false, 64, false, exceptionHandler);
+            // 超过队列容量的记录丢弃
+            logger.write(new TestLoggerEvent(new String(new char[64])));
+            Assert.assertEquals(1, exceptionHandler.count.get());
+            logger.write(new TestLoggerEvent("a"));
+            logger.close();
+            // 关闭后丢弃
+            logger.write(new TestLoggerEvent("b"));
+            Assert.assertEquals(2, exceptionHandler.count.get());
+            Assert.assertEquals(2, file.length());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testWrapBoundary() throws IOException {
+        for (boolean blockWhenFull : new boolean[]{true, false}) {
+            File file = File.createTempFile("offheap", ".log");
+            try {
+                TestExceptionHandler exceptionHandler = new TestExceptionHandler();
+                DefaultFileHandler fileHandler = new DefaultFileHandler(file.getPath(), false, 1024, true, new SystemClock(), exceptionHandler);
+                Logger logger = new OffHeapAsyncLogger(fileHandler, false, false, 1024, blockWhenFull, exceptionHandler);
+                // 第一条记录消费后剩余的末尾区域加第二条记录超过capacity，第二条记录仍能从开头写入
+                logger.write(new TestLoggerEvent(new String(new char[200 - 12 - 1])));
+                long deadline = System.currentTimeMillis() + 10000;
+                while (file.length() < 200 - 12) {
+                    Assert.assertTrue(System.currentTimeMillis() < deadline);
+                    Thread.yield();
+                }
+                logger.write(new TestLoggerEvent(new String(new char[900 - 12 - 1])));
+                logger.close();
+                Assert.assertEquals(0, exceptionHandler.count.get());
+                Assert.assertEquals(200 - 12 + 900 - 12, file.length());
+            } finally {
+                file.delete();
+            }
+        }
+    }
+
+    @Test
+    public void testCloseWithSteadyProducer() throws IOException, InterruptedException {
+        File file = File.createTempFile("offheap", ".log");
+        try {
+            TestExceptionHandler exceptionHandler = new TestExceptionHandler();
+            final Logger logger = LoggerBuilder.of(file.getPath(), exceptionHandler).setAppend(false).offHeap().setCapacity(64 * 1024)
+                    .setBlockWhenFull(false).build();
+            final AtomicBoolean running = new AtomicBoolean(true);
+            Thread producer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    while (running.get()) {
+                        logger.write(new TestLoggerEvent("a"));
+                    }
+                }
+            });
+            producer.start();
+            Thread.sleep(100);
+            // 队列未满时也立即拒绝新的申请，不会因持续写入而等到超时
+            long start = System.nanoTime();
+            logger.close();
+            Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+            running.set(false);
+            producer.join();
+            Assert.assertEquals(0, exceptionHandler.handled.get());
+            Assert.assertTrue(file.length() > 0);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testCloseTimeout() throws InterruptedException {
+        TestExceptionHandler exceptionHandler = new TestExceptionHandler();
+        BlockingFileHandler fileHandler = new BlockingFileHandler();
+        Logger logger = new OffHeapAsyncLogger(fileHandler, false, false, 1024, true, 50, TimeUnit.MILLISECONDS, exceptionHandler);
+        for (int i = 0; i < 3; i++) {
+            logger.write(new TestLoggerEvent("a"));
+        }
+        Assert.assertTrue(fileHandler.writing.await(10, TimeUnit.SECONDS));
+        Thread consumer = null;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("offheap-asynclogger-") && thread.isAlive()) {
+                consumer = thread;
+            }
+        }
+        Assert.assertNotNull(consumer);
+        Assert.assertTrue(consumer.isDaemon());
+
+        // 超时后停止消费线程，写入未完成时不关闭日志文件
+        logger.close();
+        Assert.assertEquals(1, exceptionHandler.handled.get());
+        Assert.assertFalse(fileHandler.closed);
+        fileHandler.release.countDown();
+        consumer.join(10000);
+        Assert.assertFalse(consumer.isAlive());
+        Assert.assertTrue(fileHandler.closed);
+        // 停止后不再写入剩余的记录
+        Assert.assertEquals(1, fileHandler.writes.get());
+        Assert.assertFalse(fileHandler.writeAfterClose);
+    }
+
+    private static class BlockingFileHandler implements FileHandler {
+
+        private final CountDownLatch writing = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final AtomicInteger writes = new AtomicInteger();
+        private volatile boolean closed;
+        private volatile boolean writeAfterClose;
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        @Override
+        public void write(byte[] data) {
+            write(ByteBuffer.wrap(data));
+        }
+
+        @Override
+        public void write(byte[] data, int offset, int length) {
+            write(ByteBuffer.wrap(data, offset, length));
+        }
+
+        @Override
+        public void write(long timeMillis, byte[] data, int offset, int length) {
+            write(ByteBuffer.wrap(data, offset, length));
+        }
+
+        @Override
+        public void write(ByteBuffer data) {
+            writes.incrementAndGet();
+            writing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            writeAfterClose |= closed;
+            data.position(data.limit());
+        }
+
+        @Override
+        public void write(long timeMillis, ByteBuffer data) {
+            write(data);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public String getName() {
+            return "blocking";
+        }
+
+        @Override
+        public long length() {
+            return 0;
+        }
+
+        @Override
+        public long initialTime() {
+            return 0;
+        }
+    }
+
+    private static class TestLoggerEvent implements LoggerEvent {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long timeMillis = System.currentTimeMillis();
+        private final String message;
+
+        public TestLoggerEvent(String message) {
+            this.message = message;
+        }
+
+        @Override
+        public long getTimeMillis() {
+            return timeMillis;
+        }
+
+        @Override
+        public byte[] toByteArray() {
+            return (message + "\n").getBytes();
+        }
+    }
+
+    private static class TestExceptionHandler implements ExceptionHandler {
+
+        private final AtomicInteger count = new AtomicInteger();
+        private final AtomicInteger handled = new AtomicInteger();
+
+        @Override
+        public void handleEventException(String msg, Throwable e, LoggerEvent event) {
+            count.incrementAndGet();
+            e.printStackTrace();
+        }
+
+        @Override
+        public void handleException(String msg, Throwable e) {
+            count.incrementAndGet();
+            e.printStackTrace();
+        }
+
+        @Override
+        public void handleEvent(String msg, LoggerEvent event) {
+            count.incrementAndGet();
+        }
+
+        @Override
+        public void handle(String msg) {
+            count.incrementAndGet();
+            handled.incrementAndGet();
+        }
+    }
+}
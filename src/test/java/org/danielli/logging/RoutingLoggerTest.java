@@ -0,0 +1,302 @@
+package org.danielli.logging;
+
+import org.danielli.common.clock.Clock;
+import org.danielli.logging.exception.ExceptionHandler;
+import org.danielli.logging.handler.FileHandler;
+import org.danielli.logging.support.RoutingLogger;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link RoutingLogger} 测试。
+ *
+ * @author Daniel Li
+ * @since 19 October 2026
+ */
+public class RoutingLoggerTest {
+
+    @Test
+    public void testRouteOnce() {
+        TestHandlerFactory factory = new TestHandlerFactory();
+        final AtomicInteger routes = new AtomicInteger();
+        // 每个事件只能路由一次，第二次返回null
+        BatchLogger logger = build(new RoutingLogger.Router() {
+            @Override
+            public String route(LoggerEvent event) {
+                routes.incrementAndGet();
+                TestLoggerEvent testEvent = (TestLoggerEvent) event;
+                return testEvent.routed++ == 0 ? testEvent.key : null;
+            }
+        }, factory, 2, 64, new TestClock());
+        for (int i = 0; i < 100; i++) {
+            logger.write(new TestLoggerEvent("key" + (i % 4), String.valueOf(i)));
+        }
+        logger.close();
+
+        Assert.assertEquals(100, routes.get());
+        for (int k = 0; k < 4; k++) {
+            StringBuilder expected = new StringBuilder();
+            for (int i = k; i < 100; i += 4) {
+                expected.append(i).append('\n');
+            }
+            Assert.assertEquals(expected.toString(), factory.content("key" + k));
+        }
+    }
+
+    @Test
+    public void testWriteList() {
+        TestHandlerFactory factory = new TestHandlerFactory();
+        BatchLogger logger = build(new KeyRouter(), factory, 3, 64, new TestClock());
+        List<LoggerEvent> events = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            events.add(new TestLoggerEvent("key" + (i % 7), String.valueOf(i)));
+            if (events.size() == 50) {
+                logger.write(events);
+                events.clear();
+            }
+        }
+        // 没有路由键的事件被丢弃
+        events.add(new TestLoggerEvent(null, "discard"));
+        logger.write(events);
+        logger.close();
+
+        Assert.assertEquals(1, factory.exceptionHandler.count.get());
+        for (int k = 0; k < 7; k++) {
+            StringBuilder expected = new StringBuilder();
+            for (int i = k; i < 300; i += 7) {
+                expected.append(i).append('\n');
+            }
+            Assert.assertEquals(expected.toString(), factory.content("key" + k));
+        }
+    }
+
+    @Test
+    public void testIdleAndLru() throws InterruptedException {
+        TestHandlerFactory factory = new TestHandlerFactory();
+        TestClock clock = new TestClock();
+        Logger logger = build(new KeyRouter(), factory, 1, 2, clock);
+
+        write(logger, factory, "a", 1);
+        clock.time += 100;
+        // 批次结束时a已空闲超过idleTimeout，被关闭
+        write(logger, factory, "b", 1);
+        awaitClosed(factory.handlers.get("a").get(0));
+        Assert.assertFalse(factory.handlers.get("b").get(0).closed);
+
+        // 重新打开a，打开c时超过maxOpenFiles，按LRU关闭b
+        write(logger, factory, "a", 2);
+        write(logger, factory, "c", 1);
+        Assert.assertEquals(2, factory.handlers.get("a").size());
+        awaitClosed(factory.handlers.get("b").get(0));
+        Assert.assertFalse(factory.handlers.get("a").get(1).closed);
+        logger.close();
+        Assert.assertTrue(factory.handlers.get("a").get(1).closed);
+        Assert.assertTrue(factory.handlers.get("c").get(0).closed);
+    }
+
+    private static void write(Logger logger, TestHandlerFactory factory, String key, int opened) throws InterruptedException {
+        logger.write(new TestLoggerEvent(key, key));
+        long deadline = System.currentTimeMillis() + 10000;
+        while (factory.opened(key) < opened || factory.handlers.get(key).get(opened - 1).length() == 0) {
+            Assert.assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+        // 等待批次结束的刷新
+        while (!factory.handlers.get(key).get(opened - 1).flushed) {
+            Assert.assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    private static void awaitClosed(TestFileHandler handler) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!handler.closed) {
+            Assert.assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    private static BatchLogger build(RoutingLogger.Router router, TestHandlerFactory factory, int shards, int maxOpenFiles, Clock clock) {
+        return LoggerBuilder.routing("%key", router, factory.exceptionHandler).setHandlerFactory(factory).setShards(shards)
+                .setMaxOpenFiles(maxOpenFiles).setIdleTimeout(10, TimeUnit.MILLISECONDS).setClock(clock).setBufferSize(1024).build();
+    }
+
+    private static class KeyRouter implements RoutingLogger.Router {
+
+        @Override
+        public String route(LoggerEvent event) {
+            return ((TestLoggerEvent) event).key;
+        }
+    }
+
+    private static class TestHandlerFactory implements RoutingLogger.HandlerFactory {
+
+        private final Map<String, List<TestFileHandler>> handlers = new HashMap<>();
+        private final TestExceptionHandler exceptionHandler = new TestExceptionHandler();
+
+        @Override
+        public synchronized FileHandler create(String key) {
+            Assert.assertNotNull(key);
+            List<TestFileHandler> list = handlers.get(key);
+            if (list == null) {
+                handlers.put(key, list = new ArrayList<>());
+            }
+            TestFileHandler handler = new TestFileHandler(key);
+            list.add(handler);
+            return handler;
+        }
+
+        synchronized int opened(String key) {
+            List<TestFileHandler> list = handlers.get(key);
+            return list == null ? 0 : list.size();
+        }
+
+        synchronized String content(String key) {
+            StringBuilder buf = new StringBuilder();
+            for (TestFileHandler handler : handlers.get(key)) {
+                buf.append(handler.content());
+            }
+            return buf.toString();
+        }
+    }
+
+    private static class TestFileHandler implements FileHandler {
+
+        private final String name;
+        private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        private volatile boolean flushed;
+        private volatile boolean closed;
+
+        TestFileHandler(String name) {
+            this.name = name;
+        }
+
+        synchronized String content() {
+            return output.toString();
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        @Override
+        public void write(byte[] data) {
+            write(data, 0, data.length);
+        }
+
+        @Override
+        public synchronized void write(byte[] data, int offset, int length) {
+            Assert.assertFalse(closed);
+            output.write(data, offset, length);
+        }
+
+        @Override
+        public void write(long timeMillis, byte[] data, int offset, int length) {
+            write(data, offset, length);
+        }
+
+        @Override
+        public void write(ByteBuffer data) {
+            byte[] bytes = new byte[data.remaining()];
+            data.get(bytes);
+            write(bytes);
+        }
+
+        @Override
+        public void write(long timeMillis, ByteBuffer data) {
+            write(data);
+        }
+
+        @Override
+        public void flush() {
+            flushed = true;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public synchronized long length() {
+            return output.size();
+        }
+
+        @Override
+        public long initialTime() {
+            return 0;
+        }
+    }
+
+    private static class TestClock implements Clock {
+
+        private volatile long time;
+
+        @Override
+        public long currentTimeMillis() {
+            return time;
+        }
+    }
+
+    private static class TestLoggerEvent implements LoggerEvent {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String key;
+        private final String message;
+        private int routed;
+
+        TestLoggerEvent(String key, String message) {
+            this.key = key;
+            this.message = message;
+        }
+
+        @Override
+        public long getTimeMillis() {
+            // 事件时间与clock无关，空闲检查只使用clock
+            return 0;
+        }
+
+        @Override
+        public byte[] toByteArray() {
+            return (message + "\n").getBytes();
+        }
+    }
+
+    private static class TestExceptionHandler implements ExceptionHandler {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public void handleEventException(String msg, Throwable e, LoggerEvent event) {
+            throw new AssertionError(msg);
+        }
+
+        @Override
+        public void handleException(String msg, Throwable e) {
+            throw new AssertionError(msg);
+        }
+
+        @Override
+        public void handleEvent(String msg, LoggerEvent event) {
+            // 报告原始事件
+            Assert.assertTrue(event instanceof TestLoggerEvent);
+            count.incrementAndGet();
+        }
+
+        @Override
+        public void handle(String msg) {
+            throw new AssertionError(msg);
+        }
+    }
+}
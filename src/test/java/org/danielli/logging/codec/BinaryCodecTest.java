@@ -0,0 +1,232 @@
+package org.danielli.logging.codec;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.danielli.logging.Logger;
+import org.danielli.logging.LoggerBuilder;
+import org.danielli.logging.LoggerEvent;
+import org.danielli.logging.exception.ExceptionHandler;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.BitSet;
+
+/**
+ * {@link BinaryEncoder} 和 {@link BinaryDecoder} 测试。
+ *
+ * @author Daniel Li
+ * @since 19 October 2026
+ */
+public class BinaryCodecTest {
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        BinaryEncoder encoder = new BinaryEncoder(2, 2);
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        for (int i = 0; i < 10; i++) {
+            int length = encoder.encode(new TestEvent(i));
+            first.write(encoder.array(), encoder.offset(), length);
+        }
+        // 模拟轮转，第二个文件独立解码
+        encoder.reset();
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        int length = encoder.encode(new TestEvent(10));
+        second.write(encoder.array(), encoder.offset(), length);
+        length = encoder.encode(new TextEvent(11));
+        second.write(encoder.array(), encoder.offset(), length);
+
+        BinaryDecoder decoder = new BinaryDecoder(new ByteArrayInputStream(first.toByteArray()));
+        for (int i = 0; i < 10; i++) {
+            assertEvent(decoder.next(), i);
+        }
+        Assert.assertNull(decoder.next());
+
+        decoder = new BinaryDecoder(new ByteArrayInputStream(second.toByteArray()));
+        assertEvent(decoder.next(), 10);
+        BinaryDecoder.Record record = decoder.next();
+        Assert.assertEquals(11, record.getTimeMillis());
+        Assert.assertEquals(BinaryEncoder.MESSAGE, record.getKey(0));
+        Assert.assertEquals("text-11\n", new String((byte[]) record.getValue(0), Charsets.UTF_8));
+        Assert.assertNull(decoder.next());
+    }
+
+    @Test
+    public void testRollingFiles() throws IOException {
+        File dir = Files.createTempDir();
+        Logger logger = LoggerBuilder.of(new File(dir, "binary.log").getPath(), new TestExceptionHandler())
+                .setBinary(true).rolling(new File(dir, "binary.%index.log").getPath()).setMaxFileSize(1024).build();
+        for (int i = 0; i < 500; i++) {
+            logger.write(new TestEvent(i));
+        }
+        logger.close();
+
+        BitSet seen = new BitSet();
+        File[] files = dir.listFiles();
+        Assert.assertTrue(files.length > 2);
+        for (File file : files) {
+            BinaryDecoder decoder = new BinaryDecoder(new FileInputStream(file));
+            BinaryDecoder.Record record;
+            while ((record = decoder.next()) != null) {
+                int i = (int) record.getTimeMillis();
+                assertEvent(record, i);
+                seen.set(i);
+            }
+            decoder.close();
+            file.delete();
+        }
+        dir.delete();
+        Assert.assertEquals(500, seen.cardinality());
+    }
+
+    @Test
+    public void testTemplate() throws IOException {
+        BinaryEncoder encoder = new BinaryEncoder();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int[] lengths = new int[3];
+        for (int i = 0; i < 3; i++) {
+            lengths[i] = encoder.encode(new TestTemplateEvent(i));
+            out.write(encoder.array(), encoder.offset(), lengths[i]);
+        }
+        // 模板只在首次出现时写入
+        Assert.assertTrue(lengths[1] < lengths[0] - TestTemplateEvent.TEMPLATE.length());
+
+        BinaryDecoder decoder = new BinaryDecoder(new ByteArrayInputStream(out.toByteArray()));
+        for (int i = 0; i < 3; i++) {
+            BinaryDecoder.Record record = decoder.next();
+            Assert.assertEquals(2, record.size());
+            Assert.assertEquals(BinaryEncoder.MESSAGE, record.getKey(0));
+            Assert.assertEquals("user " + i + " paid 1.5 via card in {}", record.getValue(0));
+            Assert.assertEquals("id", record.getKey(1));
+            Assert.assertEquals((long) i, record.getValue(1));
+        }
+        Assert.assertNull(decoder.next());
+    }
+
+    private void assertEvent(BinaryDecoder.Record record, int i) {
+        Assert.assertEquals(i, record.getTimeMillis());
+        Assert.assertEquals(4, record.size());
+        Assert.assertEquals("id", record.getKey(0));
+        Assert.assertEquals((long) -i, record.getValue(0));
+        Assert.assertEquals("ratio", record.getKey(1));
+        Assert.assertEquals(i / 3.0, record.getValue(1));
+        Assert.assertEquals("name", record.getKey(2));
+        Assert.assertEquals("事件-" + i + "😀", record.getValue(2));
+        Assert.assertEquals("bytes", record.getKey(3));
+        Assert.assertArrayEquals(new byte[]{(byte) i}, (byte[]) record.getValue(3));
+    }
+
+    private static class TestEvent implements StructuredEvent {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int i;
+
+        TestEvent(int i) {
+            this.i = i;
+        }
+
+        @Override
+        public void writeFields(FieldWriter writer) {
+            writer.write("id", (long) -i);
+            writer.write("ratio", i / 3.0);
+            writer.write("name", "事件-" + i + "😀");
+            writer.write("bytes", new byte[]{(byte) i});
+        }
+
+        @Override
+        public long getTimeMillis() {
+            return i;
+        }
+
+        @Override
+        public byte[] toByteArray() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static class TestTemplateEvent implements TemplateEvent, StructuredEvent {
+
+        private static final long serialVersionUID = 1L;
+        private static final String TEMPLATE = "user {} paid {} via {} in {}";
+
+        private final int i;
+
+        TestTemplateEvent(int i) {
+            this.i = i;
+        }
+
+        @Override
+        public String getTemplate() {
+            return TEMPLATE;
+        }
+
+        @Override
+        public Object[] getArguments() {
+            return new Object[]{i, 1.5f, "card"};
+        }
+
+        @Override
+        public void writeFields(FieldWriter writer) {
+            writer.write("id", (long) i);
+        }
+
+        @Override
+        public long getTimeMillis() {
+            return i;
+        }
+
+        @Override
+        public byte[] toByteArray() {
+            return MessageTemplate.format(TEMPLATE, getArguments()).getBytes(Charsets.UTF_8);
+        }
+    }
+
+    private static class TextEvent implements LoggerEvent {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int i;
+
+        TextEvent(int i) {
+            this.i = i;
+        }
+
+        @Override
+        public long getTimeMillis() {
+            return i;
+        }
+
+        @Override
+        public byte[] toByteArray() {
+            return ("text-" + i + "\n").getBytes(Charsets.UTF_8);
+        }
+    }
+
+    private static class TestExceptionHandler implements ExceptionHandler {
+
+        @Override
+        public void handleEventException(String msg, Throwable e, LoggerEvent event) {
+            throw new AssertionError(msg);
+        }
+
+        @Override
+        public void handleException(String msg, Throwable e) {
+            throw new AssertionError(msg);
+        }
+
+        @Override
+        public void handleEvent(String msg, LoggerEvent event) {
+            throw new AssertionError(msg);
+        }
+
+        @Override
+        public void handle(String msg) {
+            throw new AssertionError(msg);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package org.danielli.logging.handler.support;
+
+import org.danielli.common.clock.SystemClock;
+import org.danielli.logging.LoggerEvent;
+import org.danielli.logging.exception.ExceptionHandler;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link DefaultFileHandler} 测试。
+ *
+ * @author Daniel Li
+ * @since 19 October 2026
+ */
+public class DefaultFileHandlerTest {
+
+    @Test
+    public void testMaxFlushLatency() throws IOException, InterruptedException {
+        File file = File.createTempFile("handler", ".log");
+        try {
+            long maxFlushLatency = 100;
+            DefaultFileHandler handler = new DefaultFileHandler(file.getPath(), false, 1024, true, new SystemClock(),
+                    new TestExceptionHandler());
+            handler.setMaxFlushLatency(maxFlushLatency, TimeUnit.MILLISECONDS);
+            for (int round = 0; round < 3; round++) {
+                long length = file.length();
+                byte[] bytes = ("line-" + round + "\n").getBytes();
+                long start = System.nanoTime();
+                handler.write(bytes);
+                // 缓冲区未满，不会立即刷新
+                Assert.assertEquals(length, file.length());
+                while (file.length() < length + bytes.length) {
+                    Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10));
+                    Thread.sleep(1);
+                }
+                // 每maxFlushLatency / 2检查一次，最多保留约1.5倍maxFlushLatency，另加调度误差
+                long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                Assert.assertTrue("flushed after " + elapsed + "ms", elapsed < maxFlushLatency * 3 / 2 + 100);
+                Assert.assertTrue("flushed after " + elapsed + "ms", elapsed >= maxFlushLatency / 2);
+            }
+            handler.close();
+            Assert.assertEquals("line-0\nline-1\nline-2\n".length(), file.length());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testBlockedHandlerDoesNotDelayOthers() throws IOException, InterruptedException {
+        File blockedFile = File.createTempFile("handler", ".log");
+        File file = File.createTempFile("handler", ".log");
+        try {
+            final DefaultFileHandler blocked = new DefaultFileHandler(blockedFile.getPath(), false, 1024, true, new SystemClock(),
+                    new TestExceptionHandler());
+            blocked.setMaxFlushLatency(10, TimeUnit.MILLISECONDS);
+            DefaultFileHandler handler = new DefaultFileHandler(file.getPath(), false, 1024, true, new SystemClock(),
+                    new TestExceptionHandler());
+            handler.setMaxFlushLatency(10, TimeUnit.MILLISECONDS);
+
+            // 模拟慢磁盘：持有blocked的锁，它的刷新一直等待
+            final CountDownLatch locked = new CountDownLatch(1);
+            final CountDownLatch release = new CountDownLatch(1);
+            Thread holder = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (blocked) {
+                        locked.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                }
+            });
+            blocked.write("blocked\n".getBytes());
+            holder.start();
+            Assert.assertTrue(locked.await(10, TimeUnit.SECONDS));
+            Thread.sleep(50);
+
+            // 另一个文件的后台刷新不受影响
+            long start = System.nanoTime();
+            handler.write("line\n".getBytes());
+            while (file.length() == 0) {
+                Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10));
+                Thread.sleep(1);
+            }
+            Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+            Assert.assertEquals(0, blockedFile.length());
+
+            release.countDown();
+            holder.join();
+            handler.close();
+            blocked.close();
+            Assert.assertEquals("blocked\n".length(), blockedFile.length());
+        } finally {
+            blockedFile.delete();
+            file.delete();
+        }
+    }
+
+    private static class TestExceptionHandler implements ExceptionHandler {
+
+        @Override
+        public void handleEventException(String msg, Throwable e, LoggerEvent event) {
+            throw new AssertionError(msg);
+        }
+
+        @Override
+        public void handleException(String msg, Throwable e) {
+            throw new AssertionError(msg);
+        }
+
+        @Override
+        public void handleEvent(String msg, LoggerEvent event) {
+            throw new AssertionError(msg);
+        }
+
+        @Override
+        public void handle(String msg) {
+            throw new AssertionError(msg);
+        }
+    }
+}
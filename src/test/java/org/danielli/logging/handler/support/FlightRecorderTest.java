@@ -0,0 +1,51 @@
+package org.danielli.logging.handler.support;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * {@link org.danielli.logging.handler.support.FlightRecorder} 测试。
+ *
+ * @author Daniel Li
+ * @since 19 October 2026
+ */
+public class FlightRecorderTest {
+
+    @Test
+    public void testWrapAndReopen() throws IOException {
+        File file = File.createTempFile("flight", ".ring");
+        file.deleteOnExit();
+
+        FlightRecorder recorder = new FlightRecorder(file.getPath(), 100);
+        for (int i = 0; i < 1000; i++) {
+            byte[] bytes = ("line-" + i + "\n").getBytes();
+            recorder.append(bytes, 0, bytes.length);
+        }
+        recorder.close();
+        assertTail(FlightRecorderReader.read(file.getPath()), 999);
+
+        // 重新打开后继续追加
+        recorder = new FlightRecorder(file.getPath(), 100);
+        byte[] bytes = "line-1000\n".getBytes();
+        recorder.append(bytes, 0, bytes.length);
+        recorder.close();
+        assertTail(FlightRecorderReader.read(file.getPath()), 1000);
+    }
+
+    private void assertTail(List<byte[]> records, int last) {
+        Assert.assertFalse(records.isEmpty());
+        int total = 0;
+        for (int i = 0; i < records.size(); i++) {
+            int expected = last - (records.size() - 1 - i);
+            Assert.assertEquals("line-" + expected + "\n", new String(records.get(i)));
+            total += 4 + records.get(i).length;
+        }
+        Assert.assertTrue(total <= 100);
+        // 至少保留了容量的一半
+        Assert.assertTrue(total > 50);
+    }
+}
@@ -0,0 +1,136 @@
+package org.danielli.logging.handler.support;
+
+import com.google.common.io.Files;
+import org.danielli.logging.BatchLogger;
+import org.danielli.logging.LoggerBuilder;
+import org.danielli.logging.LoggerEvent;
+import org.danielli.logging.exception.ExceptionHandler;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+
+/**
+ * {@link PreallocatedRollingFileHandler} 测试。
+ *
+ * @author Daniel Li
+ * @since 19 October 2026
+ */
+public class PreallocatedRollingFileHandlerTest {
+
+    private static final int MAX_FILE_SIZE = 4096;
+
+    @Test
+    public void testReopenAfterCrash() throws Exception {
+        File dir = Files.createTempDir();
+        File active = new File(dir, "app.log");
+        try {
+            BatchLogger logger = build(dir);
+            File preallocated = new File(dir, "app.log.preallocate");
+            for (int i = 0; i < 100 && preallocated.length() < MAX_FILE_SIZE; i++) {
+                Thread.sleep(10);
+            }
+            Assert.assertEquals(MAX_FILE_SIZE, preallocated.length());
+            // 长度达到后预分配任务还要关闭文件，轮转时未完成的预分配不会被使用
+            Thread.sleep(100);
+            // 第41条记录轮转到预分配文件，之后写入10条以0结尾的记录
+            for (int i = 0; i < 50; i++) {
+                logger.write(new TestEvent());
+            }
+            // 距上次记录长度超过1秒的刷新记录长度
+            Thread.sleep(1100);
+            logger.flush();
+            Assert.assertEquals(MAX_FILE_SIZE, active.length());
+            Assert.assertTrue(new File(dir, "app.log.length").exists());
+            // 1秒内的刷新不记录长度，这5条记录从数据中恢复
+            for (int i = 0; i < 5; i++) {
+                logger.write(new TestEvent());
+            }
+            logger.flush();
+
+            // 不关闭logger，模拟异常退出后重新打开
+            BatchLogger reopened = build(dir);
+            reopened.close();
+            // 记录长度之前以0结尾的记录保留，之后的只截去尾部的0字节
+            Assert.assertEquals(15 * TestEvent.RECORD.length - 1, active.length());
+            byte[] content = Files.toByteArray(active);
+            Assert.assertEquals(0, content[10 * TestEvent.RECORD.length - 1]);
+            Assert.assertFalse(new File(dir, "app.log.length").exists());
+        } finally {
+            for (File file : dir.listFiles()) {
+                file.delete();
+            }
+            dir.delete();
+        }
+    }
+
+    @Test
+    public void testReopenWithoutLength() throws Exception {
+        File dir = Files.createTempDir();
+        File active = new File(dir, "app.log");
+        try {
+            // 未使用预分配的文件恰好写满maxFileSize且以0结尾，不截断
+            byte[] content = new byte[MAX_FILE_SIZE];
+            content[0] = 'x';
+            Files.write(content, active);
+            build(dir).close();
+            Assert.assertArrayEquals(content, Files.toByteArray(active));
+        } finally {
+            for (File file : dir.listFiles()) {
+                file.delete();
+            }
+            dir.delete();
+        }
+    }
+
+    private static BatchLogger build(File dir) {
+        return LoggerBuilder.of(new File(dir, "app.log").getPath(), new TestExceptionHandler())
+                .rolling(new File(dir, "app.%index.log").getPath())
+                .setMaxFileSize(MAX_FILE_SIZE).setPreallocate(true).build();
+    }
+
+    private static class TestEvent implements LoggerEvent {
+
+        private static final long serialVersionUID = 1L;
+        private static final byte[] RECORD = new byte[100];
+
+        static {
+            // 二进制记录，以0字节结尾
+            Arrays.fill(RECORD, 0, RECORD.length - 1, (byte) 'x');
+        }
+
+        @Override
+        public long getTimeMillis() {
+            return System.currentTimeMillis();
+        }
+
+        @Override
+        public byte[] toByteArray() {
+            return RECORD;
+        }
+    }
+
+    private static class TestExceptionHandler implements ExceptionHandler {
+
+        @Override
+        public void handleEventException(String msg, Throwable e, LoggerEvent event) {
+            throw new AssertionError(msg);
+        }
+
+        @Override
+        public void handleException(String msg, Throwable e) {
+            throw new AssertionError(msg);
+        }
+
+        @Override
+        public void handleEvent(String msg, LoggerEvent event) {
+            throw new AssertionError(msg);
+        }
+
+        @Override
+        public void handle(String msg) {
+            throw new AssertionError(msg);
+        }
+    }
+}
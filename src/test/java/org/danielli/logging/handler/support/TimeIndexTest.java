@@ -0,0 +1,140 @@
+package org.danielli.logging.handler.support;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import org.danielli.logging.Logger;
+import org.danielli.logging.LoggerBuilder;
+import org.danielli.logging.LoggerEvent;
+import org.danielli.logging.exception.ExceptionHandler;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.BitSet;
+
+/**
+ * {@link TimeIndex} 测试。
+ *
+ * @author Daniel Li
+ * @since 19 October 2026
+ */
+public class TimeIndexTest {
+
+    private static final int EVENTS = 20000;
+
+    @Test
+    public void testPendingEntries() throws IOException {
+        File dir = Files.createTempDir();
+        File file = new File(dir, "pending.log");
+        try {
+            TimeIndex index = new TimeIndex(file.getPath(), 0, 16);
+            File indexFile = new File(file.getPath() + TimeIndex.SUFFIX);
+            // 超过128个块仍不写入，直到日志文件刷新
+            for (int i = 0; i <= 200; i++) {
+                index.mark(i * 16, i);
+            }
+            Assert.assertEquals(TimeIndex.HEADER_SIZE, indexFile.length());
+            index.flush();
+            Assert.assertEquals(TimeIndex.HEADER_SIZE + 200 * TimeIndex.ENTRY_SIZE, indexFile.length());
+            index.close(201 * 16);
+            Assert.assertEquals(TimeIndex.HEADER_SIZE + 201 * TimeIndex.ENTRY_SIZE, indexFile.length());
+        } finally {
+            for (File child : dir.listFiles()) {
+                child.delete();
+            }
+            dir.delete();
+        }
+    }
+
+    @Test
+    public void testRangeRead() throws IOException {
+        File dir = Files.createTempDir();
+        Logger logger = LoggerBuilder.of(new File(dir, "index.log").getPath(), new TestExceptionHandler())
+                .setIndexInterval(4 * 1024).rolling(new File(dir, "index.%index.log.gz").getPath())
+                .setMaxFileSize(256 * 1024).build();
+        for (int i = 0; i < EVENTS; i++) {
+            logger.write(new TestEvent(i));
+        }
+        logger.close();
+
+        long from = 12000;
+        long to = 12100;
+        BitSet seen = new BitSet();
+        long read = 0;
+        int indexed = 0;
+        for (File file : dir.listFiles()) {
+            if (file.getName().endsWith(TimeIndex.SUFFIX)) {
+                indexed++;
+                continue;
+            }
+            InputStream inputStream = TimeIndexReader.open(file.getPath(), from, to);
+            String content = new String(ByteStreams.toByteArray(inputStream), Charsets.UTF_8);
+            inputStream.close();
+            read += content.length();
+            for (String line : content.split("\n")) {
+                if (!line.isEmpty()) {
+                    seen.set(Integer.parseInt(line.substring(0, line.indexOf(' '))));
+                }
+            }
+        }
+        Assert.assertEquals(dir.listFiles().length, indexed * 2);
+        for (int i = (int) from; i <= to; i++) {
+            Assert.assertTrue(seen.get(i));
+        }
+        // 只读取了相交的块
+        Assert.assertTrue(read < 4 * (4 * 1024 + 128));
+
+        for (File file : dir.listFiles()) {
+            file.delete();
+        }
+        dir.delete();
+    }
+
+    private static class TestEvent implements LoggerEvent {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int i;
+
+        TestEvent(int i) {
+            this.i = i;
+        }
+
+        @Override
+        public long getTimeMillis() {
+            return i;
+        }
+
+        @Override
+        public byte[] toByteArray() {
+            return (i + " " + Strings.repeat("x", 64) + "\n").getBytes(Charsets.UTF_8);
+        }
+    }
+
+    private static class TestExceptionHandler implements ExceptionHandler {
+
+        @Override
+        public void handleEventException(String msg, Throwable e, LoggerEvent event) {
+            throw new AssertionError(msg);
+        }
+
+        @Override
+        public void handleException(String msg, Throwable e) {
+            throw new AssertionError(msg);
+        }
+
+        @Override
+        public void handleEvent(String msg, LoggerEvent event) {
+            throw new AssertionError(msg);
+        }
+
+        @Override
+        public void handle(String msg) {
+            throw new AssertionError(msg);
+        }
+    }
+}
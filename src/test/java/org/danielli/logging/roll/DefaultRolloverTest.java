@@ -0,0 +1,145 @@
+package org.danielli.logging.roll;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+import com.google.common.io.BaseEncoding;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import org.danielli.common.clock.SystemClock;
+import org.danielli.logging.Logger;
+import org.danielli.logging.LoggerBuilder;
+import org.danielli.logging.LoggerEvent;
+import org.danielli.logging.exception.ExceptionHandler;
+import org.danielli.logging.roll.action.ChecksumAction;
+import org.danielli.logging.roll.pattern.FilePattern;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * {@link DefaultRollover} 测试。
+ *
+ * @author Daniel Li
+ * @since 19 October 2026
+ */
+public class DefaultRolloverTest {
+
+    @Test
+    public void testPatternWithDirectory() {
+        FilePattern pattern = new FilePattern("archive/%d{yyyy-MM}/app.%index.log.gz", new SystemClock());
+        StringBuilder buf = new StringBuilder();
+        pattern.format(buf, 3);
+        String month = new SimpleDateFormat("yyyy-MM").format(new Date());
+        Assert.assertEquals("archive/" + month + "/app.3.log.gz", buf.toString());
+        Assert.assertTrue(pattern.containDate());
+        Assert.assertTrue(pattern.isGunZip());
+    }
+
+    @Test
+    public void testStagedArchive() throws Exception {
+        File dir = Files.createTempDir();
+        File archive = new File(dir, "archive");
+        Logger logger = LoggerBuilder.of(new File(dir, "app.log").getPath(), new TestExceptionHandler())
+                .rolling(new File(archive, "%d{yyyy-MM}/app.%index.log.gz").getPath())
+                .setMaxFileSize(64 * 1024).setStaged(true).setChecksum(true)
+                .setCompressBandwidth(4 * 1024 * 1024).setMoveBandwidth(4 * 1024 * 1024).build();
+        int events = 3000;
+        for (int i = 0; i < events; i++) {
+            logger.write(new TestEvent());
+        }
+        logger.close();
+
+        // 本地只保留当前日志文件
+        String[] local = dir.list();
+        Assert.assertEquals(2, local.length);
+        File active = new File(dir, "app.log");
+        long lines = active.length() / TestEvent.LINE.length;
+
+        File[] months = archive.listFiles();
+        Assert.assertEquals(1, months.length);
+        int archived = 0;
+        for (File file : months[0].listFiles()) {
+            if (file.getName().endsWith(ChecksumAction.SUFFIX)) {
+                continue;
+            }
+            archived++;
+            byte[] content = ByteStreams.toByteArray(new GZIPInputStream(new FileInputStream(file)));
+            lines += content.length / TestEvent.LINE.length;
+
+            String checksum = Files.toString(new File(file.getPath() + ChecksumAction.SUFFIX), Charsets.UTF_8);
+            Assert.assertEquals(sha256(file) + "  " + file.getName() + "\n", checksum);
+        }
+        Assert.assertTrue(archived > 2);
+        Assert.assertEquals(events, lines);
+
+        delete(dir);
+    }
+
+    private static String sha256(File file) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        InputStream input = new FileInputStream(file);
+        try {
+            digest.update(ByteStreams.toByteArray(input));
+        } finally {
+            input.close();
+        }
+        return BaseEncoding.base16().lowerCase().encode(digest.digest());
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static class TestEvent implements LoggerEvent {
+
+        private static final long serialVersionUID = 1L;
+        private static final byte[] LINE = (Strings.repeat("x", 99) + "\n").getBytes(Charsets.UTF_8);
+
+        @Override
+        public long getTimeMillis() {
+            return System.currentTimeMillis();
+        }
+
+        @Override
+        public byte[] toByteArray() {
+            return LINE;
+        }
+    }
+
+    private static class TestExceptionHandler implements ExceptionHandler {
+
+        @Override
+        public void handleEventException(String msg, Throwable e, LoggerEvent event) {
+            throw new AssertionError(msg);
+        }
+
+        @Override
+        public void handleException(String msg, Throwable e) {
+            throw new AssertionError(msg);
+        }
+
+        @Override
+        public void handleEvent(String msg, LoggerEvent event) {
+            throw new AssertionError(msg);
+        }
+
+        @Override
+        public void handle(String msg) {
+            throw new AssertionError(msg);
+        }
+    }
+}